@@ -0,0 +1,509 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A max heap stored implicitly in a single array instead of linked Nodes.
+ * The children of the item at index i live at 2i + 1 and 2i + 2, and its parent at (i - 1) / 2,
+ * so no per-item objects are needed and sifting walks contiguous memory.
+ * Like Heap, it can order items by a Comparator and can be made a min heap with HeapOrder.MIN.
+ * @param <T> : The type of item stored in the heap. It must implement
+ *           the Comparable<T> interface, so that the data structure
+ *           knows how to compare two items, unless a Comparator is supplied.
+ */
+public class ArrayHeap<T> implements PriorityHeap<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // some VMs reserve header words in an array
+
+    private Object[] items;
+    private int currentSize;
+    private final Comparator<? super T> comparator; // null means the items' natural ordering
+    private int modCount; // bumped by every insert and removal, so sortedIterator can detect changes
+
+    /**
+     * Construct a max heap that is initially empty.
+     */
+    public ArrayHeap() {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * Construct a max heap that is initially empty but can hold the given number of items before growing.
+     * @param initialCapacity the number of items to reserve room for
+     */
+    public ArrayHeap(int initialCapacity) {
+        this(initialCapacity, null);
+    }
+
+    /**
+     * Construct a max heap that is initially empty and orders its items with the given comparator.
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public ArrayHeap(Comparator<? super T> comparator) {
+        this(DEFAULT_CAPACITY, comparator);
+    }
+
+    /**
+     * Construct an empty max heap (HeapOrder.MAX) or min heap (HeapOrder.MIN) over the items' natural ordering.
+     * @param order which end of the ordering is kept at the root
+     */
+    public ArrayHeap(HeapOrder order) {
+        this(DEFAULT_CAPACITY, order.<T>applyTo(null));
+    }
+
+    /**
+     * Construct an empty heap with room for the given number of items that orders them with the given comparator.
+     * @param initialCapacity the number of items to reserve room for
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public ArrayHeap(int initialCapacity, Comparator<? super T> comparator) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0: " + initialCapacity);
+        }
+        items = new Object[Math.max(initialCapacity, 1)];
+        currentSize = 0;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Construct a heap around an array that already holds size items in valid heap order (used by HeapSnapshot).
+     * The array is adopted, not copied, and nothing is re-sifted.
+     * @param items the backing array, in level order
+     * @param size the number of items at the start of the array that belong to the heap
+     * @param comparator the ordering the items were arranged by (null for their natural ordering)
+     */
+    ArrayHeap(Object[] items, int size, Comparator<? super T> comparator) {
+        if (size < 0 || size > items.length) {
+            throw new IllegalArgumentException("size out of range: " + size);
+        }
+        this.items = items.length == 0 ? new Object[1] : items;
+        currentSize = size;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Construct a max heap holding the given items, built bottom-up in linear time.
+     * @param items the items to place in the heap
+     */
+    public ArrayHeap(Collection<? extends T> items) {
+        this(items.size(), null);
+        insertAll(items);
+    }
+
+    /**
+     * Returns the maximum item in the heap.
+     * @return : The maximum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T findMax() throws Exception {
+        // if the heap has no items/is empty throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return itemAt(0);
+    }
+
+    /**
+     * Removes the maximum item from this heap.
+     * @return : The maximum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T extractMax() throws Exception {
+        // if the heap is empty then throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return removeRoot();
+    }
+
+    /**
+     * Removes up to n of the largest items and stores them in dst from index 0, largest first.
+     * The emptiness check of extractMax is paid once for the whole batch.
+     * @param n the most items to remove
+     * @param dst the array to fill (at least n long)
+     * @return : the number of items removed, min(n, size())
+     */
+    @Override
+    public int extractTop(int n, T[] dst) {
+        PriorityHeap.checkBatch(n, dst);
+        int count = Math.min(n, currentSize);
+        for (int i = 0; i < count; i++) {
+            dst[i] = removeRoot();
+        }
+        return count;
+    }
+
+    /**
+     * Removes every item from the heap and adds them to the collection, largest first.
+     * @param dst the collection to add the items to
+     * @return : the number of items moved
+     */
+    @Override
+    public int drainTo(Collection<? super T> dst) {
+        int count = currentSize;
+        for (int i = 0; i < count; i++) {
+            dst.add(removeRoot());
+        }
+        return count;
+    }
+
+    /**
+     * Returns an iterator over the items from greatest to least that leaves the heap unchanged.
+     * It keeps a small frontier heap of array indexes (a plain int[], so nothing is boxed): the root to begin
+     * with, and each time an item is returned its two children take its place. Every child is smaller than its
+     * parent, so the frontier's maximum is always the next item overall. The k-th item costs O(log k).
+     * The heap must not be modified while the iterator is in use (next then throws ConcurrentModificationException).
+     * @return : a non-destructive iterator in heap order
+     */
+    public Iterator<T> sortedIterator() {
+        int expectedModCount = modCount;
+
+        return new Iterator<T>() {
+            // a max heap of indexes into items, ordered by the items they point at
+            private int[] frontier = new int[DEFAULT_CAPACITY];
+            private int frontierSize = currentSize > 0 ? 1 : 0; // frontier[0] is 0, the root
+
+            @Override
+            public boolean hasNext() {
+                return frontierSize > 0;
+            }
+
+            @Override
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (frontierSize == 0) {
+                    throw new NoSuchElementException();
+                }
+                int index = frontier[0];
+                int child = 2 * index + 1;
+                // the first child takes the returned index's place at the top of the frontier, or the last index does
+                if (child < currentSize) {
+                    siftDownFrom(child);
+                    if (child + 1 < currentSize) {
+                        siftUpFrom(child + 1);
+                    }
+                } else if (--frontierSize > 0) {
+                    siftDownFrom(frontier[frontierSize]);
+                }
+                return itemAt(index);
+            }
+
+            /**
+             * Places an index in the hole at the top of the frontier and sifts it down.
+             */
+            private void siftDownFrom(int entry) {
+                T item = itemAt(entry);
+                int hole = 0;
+                int half = frontierSize >>> 1;
+                while (hole < half) {
+                    int child = 2 * hole + 1;
+                    int right = child + 1;
+                    if (right < frontierSize && compare(itemAt(frontier[right]), itemAt(frontier[child])) > 0) {
+                        child = right;
+                    }
+                    if (compare(item, itemAt(frontier[child])) >= 0) {
+                        break;
+                    }
+                    frontier[hole] = frontier[child];
+                    hole = child;
+                }
+                frontier[hole] = entry;
+            }
+
+            /**
+             * Appends an index to the frontier and sifts it up.
+             */
+            private void siftUpFrom(int entry) {
+                if (frontierSize == frontier.length) {
+                    frontier = Arrays.copyOf(frontier, 2 * frontier.length);
+                }
+                T item = itemAt(entry);
+                int hole = frontierSize++;
+                while (hole > 0) {
+                    int parent = (hole - 1) >>> 1;
+                    if (compare(item, itemAt(frontier[parent])) <= 0) {
+                        break;
+                    }
+                    frontier[hole] = frontier[parent];
+                    hole = parent;
+                }
+                frontier[hole] = entry;
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream over the items from greatest to least that leaves the heap unchanged (see sortedIterator).
+     * @return : a non-destructive stream in heap order
+     */
+    public Stream<T> sortedStream() {
+        return StreamSupport.stream(Spliterators.spliterator(sortedIterator(), currentSize, Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Moves the last item into the hole at the root and sifts it down.
+     * @return : the item that was at the root
+     * @precondition : Heap is not empty.
+     */
+    private T removeRoot() {
+        T max = itemAt(0);
+        int last = --currentSize;
+        modCount++;
+        T moved = itemAt(last);
+        items[last] = null; // drop the reference so the removed slot does not keep the item alive
+
+        // the last item fills the hole left at the root and is sifted down from there
+        if (last > 0) {
+            siftDown(0, moved);
+        }
+        return max;
+    }
+
+    /**
+     * Inserts the given item into the Heap.
+     * @param item : The item to insert into the heap.
+     */
+    @Override
+    public void insert(T item) {
+        if (currentSize == items.length) {
+            grow();
+        }
+        siftUp(currentSize, item);
+        currentSize++;
+        modCount++;
+    }
+
+    /**
+     * Inserts every item in the collection.
+     * When the batch is large compared to the heap, the items are appended unordered and the whole array
+     * is rebuilt bottom-up (Floyd's method, O(n + k)); otherwise each item is sifted up on its own.
+     * @param items the items to insert
+     */
+    @Override
+    public void insertAll(Collection<? extends T> items) {
+        int count = items.size();
+        long finalSize = (long) currentSize + count;
+        int finalHeight = 63 - Long.numberOfLeadingZeros(Math.max(finalSize, 1));
+        // sift-ups cost up to one height per item, a rebuild about one step per item in the heap
+        if ((long) count * finalHeight < finalSize) {
+            for (T item : items) {
+                insert(item);
+            }
+            return;
+        }
+
+        ensureCapacity((int) Math.min(finalSize, MAX_CAPACITY));
+        for (T item : items) {
+            if (currentSize == this.items.length) {
+                grow(); // the collection grew while being copied
+            }
+            this.items[currentSize++] = item;
+        }
+        modCount++;
+        heapify();
+    }
+
+    /**
+     * Inserts len items of the array, starting at index off.
+     * Like insertAll, a batch that is large compared to the heap is copied in with one arraycopy and
+     * rebuilt bottom-up, and a small one is sifted up item by item.
+     * @param src the array holding the items
+     * @param off the index of the first item to insert
+     * @param len the number of items to insert
+     */
+    @Override
+    public void insertBatch(T[] src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        long finalSize = (long) currentSize + len;
+        if (finalSize > MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        ensureCapacity((int) finalSize);
+        modCount++;
+
+        int finalHeight = 31 - Integer.numberOfLeadingZeros(Math.max((int) finalSize, 1));
+        if ((long) len * finalHeight < finalSize) {
+            for (int i = off; i < off + len; i++) {
+                siftUp(currentSize++, src[i]);
+            }
+            return;
+        }
+
+        System.arraycopy(src, off, items, currentSize, len);
+        currentSize += len;
+        heapify();
+    }
+
+    /**
+     * Restores heap order over the whole array bottom-up, sifting down every item that has children.
+     */
+    private void heapify() {
+        for (int i = (currentSize >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, itemAt(i));
+        }
+    }
+
+    /**
+     * Moves a hole up from the given index until the item fits, then places the item there.
+     * @param index the index of the hole (initially the first free slot)
+     * @param item the item being placed
+     */
+    private void siftUp(int index, T item) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            T parentItem = itemAt(parent);
+            // stop once the parent is at least as large as the item
+            if (compare(item, parentItem) <= 0) {
+                break;
+            }
+            items[index] = parentItem; // pull the parent down into the hole
+            index = parent;
+        }
+        items[index] = item;
+    }
+
+    /**
+     * Moves a hole down from the given index until the item fits, then places the item there.
+     * @param index the index of the hole (the root after a removal)
+     * @param item the item being placed
+     */
+    private void siftDown(int index, T item) {
+        int half = currentSize >>> 1; // items at or past this index are leaves
+        while (index < half) {
+            int child = 2 * index + 1;
+            T childItem = itemAt(child);
+            int right = child + 1;
+            // pick the larger of the two children
+            if (right < currentSize && compare(itemAt(right), childItem) > 0) {
+                child = right;
+                childItem = itemAt(right);
+            }
+            // stop once the item is at least as large as both children
+            if (compare(item, childItem) >= 0) {
+                break;
+            }
+            items[index] = childItem; // pull the child up into the hole
+            index = child;
+        }
+        items[index] = item;
+    }
+
+    /**
+     * Grows the backing array so it can hold at least the given number of items.
+     * @param minCapacity the number of items needed
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > items.length) {
+            items = Arrays.copyOf(items, Math.max(minCapacity, (int) Math.min((long) items.length * 2, MAX_CAPACITY)));
+        }
+    }
+
+    /**
+     * Doubles the backing array (geometric growth keeps insert amortized O(1) apart from sifting).
+     */
+    private void grow() {
+        int oldCapacity = items.length;
+        if (oldCapacity == MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        int newCapacity = oldCapacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : oldCapacity * 2;
+        items = Arrays.copyOf(items, newCapacity);
+    }
+
+    /**
+     * Compares two items with the heap's comparator, or their natural ordering if there is none.
+     * @return : a positive number if a belongs above b, a negative number if below, 0 if they are equal
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator == null) {
+            return ((Comparable<? super T>) a).compareTo(b);
+        }
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * Returns the comparator this heap orders its items with.
+     * @return : the comparator, or null if the items' natural ordering is used
+     */
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns the backing array (not a copy): the first size() entries are the items in level order.
+     * @return : the backing array
+     */
+    Object[] levelOrder() {
+        return items;
+    }
+
+    /**
+     * Checks heap order along every edge and that no slot past the last item still holds a reference.
+     * For the testers; it walks the whole array.
+     * @throws IllegalStateException at the first inconsistency found
+     */
+    void checkStructure() {
+        for (int i = 1; i < currentSize; i++) {
+            if (compare(itemAt(i), itemAt((i - 1) >>> 1)) > 0) {
+                throw new IllegalStateException("item " + i + " is larger than its parent");
+            }
+        }
+        for (int i = currentSize; i < items.length; i++) {
+            if (items[i] != null) {
+                throw new IllegalStateException("slot " + i + " is past the last item but not empty");
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int index) {
+        return (T) items[index];
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    @Override
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    @Override
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap.
+     * @return : The number of levels in this heap.
+     */
+    @Override
+    public int height() {
+        // the heap is a complete binary tree, so its height is floor(log2(size))
+        if (currentSize == 0) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(currentSize);
+    }
+}
@@ -0,0 +1,233 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * The measurement loop shared by every HeapBenchmark suite, so a suite only has to say what to prepare and what to time.
+ *
+ * A case is a setup and a body: the setup builds fresh state for one invocation (untimed), the body runs the operation
+ * on it (timed) and returns how many operations it did. Every case gets warmup iterations and measured iterations,
+ * each repeating invocations until ITERATION_NANOS have been timed, and the bytes allocated per operation are read
+ * from the per-thread allocation counter. State that is AutoCloseable is closed after its invocation, outside the
+ * timed region.
+ *
+ * These numbers are not JMH results. Every suite runs in the same JVM, one after another, without forks or
+ * blackholes, so the profile one case leaves behind can slow down the next, and a body the JIT could partly
+ * eliminate is only kept alive by its returned count. Use them to compare cases run together, not as absolute
+ * figures. Only the matrix also runs under JMH (see HeapMatrixBenchmark).
+ */
+final class BenchmarkHarness {
+
+    // C2 only settles on the insert loop of a 1M-item heap after a few dozen invocations; fewer warmup rounds time
+    // the interpreted and C1 code instead
+    static final int WARMUP_ROUNDS = 5;
+    static final int MEASURED_ROUNDS = 5;
+
+    // each iteration repeats the body until at least this much time has been measured
+    static final long ITERATION_NANOS = 500_000_000L;
+    static final long SETUP_LIMIT_NANOS = 10 * ITERATION_NANOS; // ...or once this much time, setup included, has passed
+
+    private BenchmarkHarness() {
+    }
+
+    /**
+     * Builds the state for one invocation (untimed), e.g. the heap the body will drain.
+     */
+    interface Setup<S> {
+        S prepare() throws Exception;
+    }
+
+    /**
+     * The timed part of one invocation. Returns the number of operations done.
+     */
+    interface Body<S> {
+        long run(S state) throws Exception;
+    }
+
+    /**
+     * A body that needs no per-invocation state.
+     */
+    interface Invocation {
+        long run() throws Exception;
+    }
+
+    /**
+     * A setup and its body, for cases that are built in one place and run from another (the matrix, and its JMH build).
+     */
+    static final class Case<S> {
+        final Setup<S> setup;
+        final Body<S> body;
+
+        Case(Setup<S> setup, Body<S> body) {
+            this.setup = setup;
+            this.body = body;
+        }
+
+        /**
+         * Runs the setup and returns the body bound to the state it built, ready to be timed.
+         */
+        Callable<Long> prepare() throws Exception {
+            S state = setup.prepare();
+            return () -> body.run(state);
+        }
+    }
+
+    /**
+     * Measures a case and prints its throughput, spread and bytes allocated per operation.
+     * @return : {mean ops/s, standard deviation of ops/s, bytes allocated per operation}
+     */
+    static <S> double[] measure(String name, Setup<S> setup, Body<S> body) throws Exception {
+        double[] result = run(setup, body);
+        report(name, result);
+        return result;
+    }
+
+    /**
+     * Measures a case that has no setup, such as building a heap from scratch.
+     * @return : {mean ops/s, standard deviation of ops/s, bytes allocated per operation}
+     */
+    static double[] measure(String name, Invocation body) throws Exception {
+        return measure(name, () -> null, state -> body.run());
+    }
+
+    /**
+     * Like measure(), and also prints how many collections ran and how long they took over the whole case, setup included.
+     */
+    static <S> void measureWithGc(String name, Setup<S> setup, Body<S> body) throws Exception {
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        measure(name, setup, body);
+        System.out.printf("    %d collections, %d ms in GC%n", gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+    }
+
+    /**
+     * Runs warmup iterations, then measured ones, without printing anything.
+     * @return : {mean ops/s, standard deviation of ops/s, bytes allocated per operation}
+     */
+    static <S> double[] run(Setup<S> setup, Body<S> body) throws Exception {
+        double[] rates = new double[MEASURED_ROUNDS];
+        long measuredOps = 0;
+        long measuredBytes = 0;
+
+        for (int iteration = -WARMUP_ROUNDS; iteration < MEASURED_ROUNDS; iteration++) {
+            long timed = 0;
+            long ops = 0;
+            long bytes = 0;
+            long iterationStart = System.nanoTime();
+            // an operation much cheaper than its setup (such as meld) ends the iteration on wall-clock time instead
+            while (timed < ITERATION_NANOS && System.nanoTime() - iterationStart < SETUP_LIMIT_NANOS) {
+                S state = setup.prepare();
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                ops += body.run(state);
+                timed += System.nanoTime() - start;
+                bytes += allocatedBytes() - allocatedBefore;
+                if (state instanceof AutoCloseable) {
+                    ((AutoCloseable) state).close();
+                }
+                Reference.reachabilityFence(state); // keeps what the body built from being collected inside the timed region
+            }
+            if (iteration >= 0) {
+                rates[iteration] = opsPerSecond(ops, timed);
+                measuredOps += ops;
+                measuredBytes += bytes;
+            }
+        }
+
+        double mean = 0;
+        for (double rate : rates) {
+            mean += rate;
+        }
+        mean /= rates.length;
+        double variance = 0;
+        for (double rate : rates) {
+            variance += (rate - mean) * (rate - mean);
+        }
+        return new double[] {mean, Math.sqrt(variance / rates.length), (double) measuredBytes / measuredOps};
+    }
+
+    /**
+     * Runs a Case like run(setup, body).
+     * @return : {mean ops/s, standard deviation of ops/s, bytes allocated per operation}
+     */
+    static <S> double[] run(Case<S> measured) throws Exception {
+        return run(measured.setup, measured.body);
+    }
+
+    /**
+     * Prints a result of run() as throughput, spread and bytes allocated per operation.
+     */
+    static void report(String name, double[] result) {
+        System.out.printf("%-44s %8.2f Mops/s  (+/- %.2f)  %8.1f B/op%n", name, result[0] / 1e6, result[1] / 1e6, result[2]);
+    }
+
+    /**
+     * Returns the bytes of Java heap that what build() returns keeps reachable, per item.
+     * @param items how many items the built structure holds
+     */
+    static double retainedBytes(Setup<?> build, int items) throws Exception {
+        long before = usedMemory();
+        Object built = build.prepare();
+        long retained = usedMemory() - before;
+        Reference.reachabilityFence(built);
+        return (double) retained / items;
+    }
+
+    /**
+     * Reads a comma-separated list parameter, such as --sizes=1000,1000000.
+     */
+    static List<String> listParam(Map<String, String> params, String name, String defaults) {
+        return Arrays.asList(params.getOrDefault(name, defaults).split(","));
+    }
+
+    /**
+     * Reads an int parameter; underscores are allowed as in Java literals (--size=10_000_000).
+     */
+    static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value.replace("_", ""));
+    }
+
+    /**
+     * Returns the bytes of Java heap in use after asking the collector to run.
+     */
+    static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread (the same counter JMH's gc profiler reads).
+     */
+    static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(collector.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    private static double opsPerSecond(long ops, long nanos) {
+        return ops * 1e9 / nanos;
+    }
+}
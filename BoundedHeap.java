@@ -0,0 +1,203 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps only the K greatest items of a stream, in O(K) memory however long the stream is.
+ * The items are held in an array-backed min heap, so the root is the smallest item kept (the
+ * threshold to beat). A new item that is not above the threshold is rejected after one comparison;
+ * one that is replaces the root and is sifted down in O(log K).
+ * The array starts small and doubles up to K as items arrive, so a large K (such as HeapSorter --top
+ * on a short input) only costs memory for the items actually kept.
+ * @param <T> : The type of item stored in the heap. It must implement
+ *           the Comparable<T> interface, so that the data structure
+ *           knows how to compare two items, unless a Comparator is supplied.
+ */
+public class BoundedHeap<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // some VMs reserve header words in an array
+
+    private Object[] items;
+    private final int capacity; // K: the array grows up to this many items, then insert starts replacing the root
+    private final Comparator<? super T> comparator; // null means the items' natural ordering
+    private int currentSize;
+
+    /**
+     * Construct an empty heap that keeps the capacity greatest items, by their natural ordering.
+     * @param capacity K, the number of items to keep
+     */
+    public BoundedHeap(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Construct an empty heap that keeps the capacity greatest items, by the given comparator.
+     * @param capacity K, the number of items to keep
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public BoundedHeap(int capacity, Comparator<? super T> comparator) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        items = new Object[Math.min(capacity, DEFAULT_CAPACITY)];
+        this.comparator = comparator;
+        currentSize = 0;
+    }
+
+    /**
+     * Offers an item to the heap.
+     * @param item : The item to consider.
+     * @return : true if the item is now among the kept items, false if it was rejected
+     */
+    public boolean insert(T item) {
+        if (currentSize < capacity) {
+            if (currentSize == items.length) {
+                grow();
+            }
+            siftUp(currentSize++, item);
+            return true;
+        }
+
+        // full: the item must beat the smallest one kept (equal items keep the one that came first)
+        if (compare(item, itemAt(0)) <= 0) {
+            return false;
+        }
+        siftDown(0, item);
+        return true;
+    }
+
+    /**
+     * Returns the smallest item kept, which any new item has to exceed once the heap is full.
+     * @return : The smallest item kept.
+     * @precondition : Heap is not empty.
+     */
+    public T findMin() throws Exception {
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return itemAt(0);
+    }
+
+    /**
+     * Removes every item from the heap and returns them from greatest to least.
+     * @return : the kept items in sorted order
+     */
+    public List<T> drainSorted() {
+        Object[] sorted = new Object[currentSize];
+        // the root is the smallest remaining item, so fill the result from the back
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = itemAt(0);
+            int last = --currentSize;
+            T moved = itemAt(last);
+            items[last] = null;
+            if (last > 0) {
+                siftDown(0, moved);
+            }
+        }
+
+        List<T> result = new ArrayList<>(sorted.length);
+        for (Object item : sorted) {
+            result.add(castItem(item));
+        }
+        return result;
+    }
+
+    /**
+     * Moves a hole up from the given index until the item fits (min-heap order), then places the item there.
+     */
+    private void siftUp(int index, T item) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            T parentItem = itemAt(parent);
+            if (compare(item, parentItem) >= 0) {
+                break;
+            }
+            items[index] = parentItem;
+            index = parent;
+        }
+        items[index] = item;
+    }
+
+    /**
+     * Moves a hole down from the given index until the item fits (min-heap order), then places the item there.
+     */
+    private void siftDown(int index, T item) {
+        int half = currentSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            T childItem = itemAt(child);
+            int right = child + 1;
+            // pick the smaller of the two children
+            if (right < currentSize && compare(itemAt(right), childItem) < 0) {
+                child = right;
+                childItem = itemAt(right);
+            }
+            if (compare(item, childItem) <= 0) {
+                break;
+            }
+            items[index] = childItem;
+            index = child;
+        }
+        items[index] = item;
+    }
+
+    /**
+     * Doubles the backing array, but never past K.
+     */
+    private void grow() {
+        int oldCapacity = items.length;
+        if (oldCapacity == MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        int newCapacity = oldCapacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : oldCapacity * 2;
+        items = Arrays.copyOf(items, Math.min(newCapacity, capacity));
+    }
+
+    /**
+     * Compares two items with the heap's comparator, or their natural ordering if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator == null) {
+            return ((Comparable<? super T>) a).compareTo(b);
+        }
+        return comparator.compare(a, b);
+    }
+
+    private T itemAt(int index) {
+        return castItem(items[index]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T castItem(Object item) {
+        return (T) item;
+    }
+
+    /**
+     * Returns K, the most items this heap keeps.
+     * @return : the capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    public int size() {
+        return currentSize;
+    }
+}
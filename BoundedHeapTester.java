@@ -0,0 +1,58 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class BoundedHeapTester {
+    private static final int ROUNDS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // A K far larger than the input only allocates for the items that arrive
+        BoundedHeap<Integer> huge = new BoundedHeap<>(2_000_000_000);
+        for (int i = 0; i < 1_000; i++) {
+            huge.insert(i);
+        }
+        if (huge.capacity() != 2_000_000_000 || huge.size() != 1_000 || huge.findMin() != 0) {
+            throw new AssertionError("a huge K did not keep every item");
+        }
+        System.out.println("K of 2,000,000,000 with 1,000 items: ok");
+
+        // Random K and stream lengths (both sides of K and of the initial array), with many duplicates
+        for (int round = 0; round < ROUNDS; round++) {
+            int k = 1 + random.nextInt(round % 2 == 0 ? 8 : 200);
+            int n = random.nextInt(3 * k + 40);
+            BoundedHeap<Integer> heap = new BoundedHeap<>(k);
+            List<Integer> stream = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                int item = random.nextInt(1 + random.nextInt(100));
+                stream.add(item);
+                heap.insert(item);
+                if (heap.size() != Math.min(i + 1, k)) {
+                    throw new AssertionError("size " + heap.size() + " after " + (i + 1) + " items with K " + k);
+                }
+            }
+            stream.sort(Collections.reverseOrder());
+            List<Integer> expected = stream.subList(0, Math.min(n, k));
+            List<Integer> actual = heap.drainSorted();
+            if (!actual.equals(expected)) {
+                throw new AssertionError("top " + k + " of " + n + " was " + actual + ", expected " + expected);
+            }
+            if (!heap.isEmpty()) {
+                throw new AssertionError("drainSorted left items behind");
+            }
+        }
+        System.out.println(ROUNDS + " random top-K rounds: ok");
+
+        // A full heap rejects anything not above its smallest item, including an equal one
+        BoundedHeap<Integer> full = new BoundedHeap<>(3);
+        for (int item : new int[] {5, 6, 7}) {
+            full.insert(item);
+        }
+        if (full.insert(5) || full.insert(1) || !full.insert(8) || full.findMin() != 6) {
+            throw new AssertionError("a full heap kept the wrong items");
+        }
+        System.out.println("threshold and ties: ok");
+    }
+}
@@ -0,0 +1,389 @@
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe max priority queue for many producers and consumers.
+ * STRICT mode keeps the items in a lock-free skip list, so poll always returns the current maximum.
+ * RELAXED mode is a MultiQueue: items are spread over several small ArrayHeaps with one lock each,
+ * and poll takes the larger top of two randomly chosen heaps. That returns an item close to the
+ * maximum (not always the maximum itself), but threads rarely touch the same lock, so it scales with cores.
+ * offer and poll never block; take and poll(timeout, unit) wait for an item to arrive.
+ * @param <T> : The type of item stored in the heap. It must implement
+ *           the Comparable<T> interface, so that the data structure
+ *           knows how to compare two items, unless a Comparator is supplied.
+ */
+public class ConcurrentHeap<T> {
+
+    /**
+     * How exactly poll follows the heap order.
+     */
+    public enum Mode {
+        /** poll always returns the maximum item. */
+        STRICT,
+        /** poll returns an item near the maximum, in exchange for much less contention. */
+        RELAXED
+    }
+
+    private static final int QUEUES_PER_CORE = 2;
+
+    private final Mode mode;
+    private final Comparator<? super T> comparator; // null means the items' natural ordering
+    private final AtomicInteger count = new AtomicInteger();
+
+    // STRICT mode
+    private final ConcurrentSkipListSet<Entry<T>> skipList;
+    private final AtomicLong sequence = new AtomicLong(); // keeps equal items distinct (and in FIFO order) in the skip list
+
+    // RELAXED mode
+    private final ArrayHeap<T>[] queues;
+    private final ReentrantLock[] queueLocks;
+    private final AtomicReferenceArray<T> queueTops; // each queue's max, readable without taking its lock
+
+    // blocking consumers park here; producers only touch the lock when someone is waiting
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * An item in the STRICT skip list, tagged with its arrival order.
+     */
+    private static final class Entry<T> {
+        final T item;
+        final long sequence;
+
+        Entry(T item, long sequence) {
+            this.item = item;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Construct an empty concurrent heap over the items' natural ordering.
+     * @param mode STRICT or RELAXED
+     */
+    public ConcurrentHeap(Mode mode) {
+        this(mode, null);
+    }
+
+    /**
+     * Construct an empty concurrent heap that orders its items with the given comparator.
+     * @param mode STRICT or RELAXED
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public ConcurrentHeap(Mode mode, Comparator<? super T> comparator) {
+        this(mode, comparator, QUEUES_PER_CORE * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct an empty concurrent heap.
+     * @param mode STRICT or RELAXED
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     * @param queueCount the number of internal heaps used in RELAXED mode (ignored for STRICT)
+     */
+    public ConcurrentHeap(Mode mode, Comparator<? super T> comparator, int queueCount) {
+        if (mode == null) {
+            throw new NullPointerException();
+        }
+        this.mode = mode;
+        this.comparator = comparator;
+
+        if (mode == Mode.STRICT) {
+            // largest item first, and among equal items the oldest first
+            skipList = new ConcurrentSkipListSet<Entry<T>>((a, b) -> {
+                int result = compare(b.item, a.item);
+                return result != 0 ? result : Long.compare(a.sequence, b.sequence);
+            });
+            queues = null;
+            queueLocks = null;
+            queueTops = null;
+        } else {
+            int n = Math.max(queueCount, 2); // poll needs two queues to choose between
+            skipList = null;
+            @SuppressWarnings("unchecked") // every slot is filled with an ArrayHeap<T> just below
+            ArrayHeap<T>[] shards = (ArrayHeap<T>[]) new ArrayHeap<?>[n];
+            queues = shards;
+            queueLocks = new ReentrantLock[n];
+            queueTops = new AtomicReferenceArray<T>(n);
+            for (int i = 0; i < n; i++) {
+                queues[i] = new ArrayHeap<T>(comparator);
+                queueLocks[i] = new ReentrantLock();
+            }
+        }
+    }
+
+    /**
+     * Inserts the given item. Never blocks.
+     * @param item : The item to insert (not null).
+     * @return : true (the heap is unbounded)
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+
+        // counted before it is published, so a poll that takes it right away can never drive count below zero
+        // (poll already tolerates count saying there is an item it cannot find yet)
+        count.incrementAndGet();
+        if (mode == Mode.STRICT) {
+            skipList.add(new Entry<T>(item, sequence.getAndIncrement()));
+        } else {
+            offerRelaxed(item);
+        }
+
+        // only pay for the lock when a consumer is actually parked
+        if (waiters.get() > 0) {
+            signalWaiter();
+        }
+        return true;
+    }
+
+    /**
+     * Removes and returns the maximum item (an item near the maximum in RELAXED mode). Never blocks.
+     * @return : the removed item, or null if the heap is empty
+     */
+    public T poll() {
+        if (count.get() == 0) {
+            return null;
+        }
+
+        T item;
+        if (mode == Mode.STRICT) {
+            Entry<T> entry = skipList.pollFirst();
+            item = entry == null ? null : entry.item;
+        } else {
+            item = pollRelaxed();
+        }
+
+        if (item != null) {
+            count.decrementAndGet();
+        }
+        return item;
+    }
+
+    /**
+     * Removes and returns the maximum item, waiting for one to be offered if the heap is empty.
+     * @return : the removed item
+     */
+    public T take() throws InterruptedException {
+        T item = poll();
+        while (item == null) {
+            awaitItem(Long.MAX_VALUE);
+            item = poll();
+        }
+        return item;
+    }
+
+    /**
+     * Removes and returns the maximum item, waiting up to the given time for one to be offered.
+     * @param timeout how long to wait
+     * @param unit the unit of timeout
+     * @return : the removed item, or null if none arrived in time
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long start = System.nanoTime();
+        T item = poll();
+        while (item == null) {
+            long remaining = nanos - (System.nanoTime() - start); // differences of nanoTime cannot overflow
+            if (remaining <= 0) {
+                return null;
+            }
+            awaitItem(remaining);
+            item = poll();
+        }
+        return item;
+    }
+
+    /**
+     * Returns the maximum item without removing it (an approximation in RELAXED mode, and possibly
+     * already out of date when it returns if other threads are polling).
+     * @return : the item, or null if the heap is empty
+     */
+    public T peek() {
+        if (mode == Mode.STRICT) {
+            try {
+                return skipList.first().item;
+            } catch (NoSuchElementException e) {
+                return null;
+            }
+        }
+
+        T best = null;
+        for (int i = 0; i < queues.length; i++) {
+            T top = queueTops.get(i);
+            if (top != null && (best == null || compare(top, best) > 0)) {
+                best = top;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the number of items in the heap (a snapshot while other threads are working).
+     * @return : the number of items stored in this heap.
+     */
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    public boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    /**
+     * Returns the mode this heap was created with.
+     * @return : STRICT or RELAXED
+     */
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Puts the item into a random internal heap, moving on to another one if its lock is busy.
+     */
+    private void offerRelaxed(T item) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            int i = random.nextInt(queues.length);
+            ReentrantLock lock = queueLocks[i];
+            if (lock.tryLock()) {
+                try {
+                    ArrayHeap<T> queue = queues[i];
+                    queue.insert(item);
+                    queueTops.set(i, queue.findMax());
+                    return;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e); // findMax right after insert cannot see an empty heap
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the larger top of two random internal heaps. After repeated misses (heaps found empty or
+     * locked), every heap is tried in turn so an item is never missed while count says there is one.
+     */
+    private T pollRelaxed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int n = queues.length;
+
+        for (int attempt = 0; attempt < n; attempt++) {
+            if (count.get() == 0) {
+                return null;
+            }
+            int a = random.nextInt(n);
+            int b = random.nextInt(n - 1);
+            if (b >= a) {
+                b++; // two different queues
+            }
+            T topA = queueTops.get(a);
+            T topB = queueTops.get(b);
+            if (topA == null && topB == null) {
+                continue;
+            }
+            int pick = (topB == null || (topA != null && compare(topA, topB) >= 0)) ? a : b;
+
+            ReentrantLock lock = queueLocks[pick];
+            if (lock.tryLock()) {
+                try {
+                    T item = takeFrom(pick);
+                    if (item != null) {
+                        return item;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        // fall back to a full sweep, waiting for each lock
+        int start = random.nextInt(n);
+        for (int k = 0; k < n; k++) {
+            int i = (start + k) % n;
+            if (queueTops.get(i) == null) {
+                continue;
+            }
+            ReentrantLock lock = queueLocks[i];
+            lock.lock();
+            try {
+                T item = takeFrom(i);
+                if (item != null) {
+                    return item;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extracts the max of one internal heap and republishes its new top. The caller holds that heap's lock.
+     * @return : the extracted item, or null if that heap was empty
+     */
+    private T takeFrom(int index) {
+        ArrayHeap<T> queue = queues[index];
+        if (queue.isEmpty()) {
+            return null;
+        }
+        try {
+            T item = queue.extractMax();
+            queueTops.set(index, queue.isEmpty() ? null : queue.findMax());
+            return item;
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // the queue was checked to be non-empty under its lock
+        }
+    }
+
+    /**
+     * Parks the calling thread until an item may be available or the time runs out.
+     * The waiter is registered before count is re-checked, and offer bumps count before checking for
+     * waiters, so one side always sees the other and a wake-up cannot be lost.
+     */
+    private void awaitItem(long nanos) throws InterruptedException {
+        waitLock.lock();
+        waiters.incrementAndGet();
+        try {
+            if (count.get() == 0) {
+                notEmpty.awaitNanos(nanos);
+            }
+        } finally {
+            waiters.decrementAndGet();
+            waitLock.unlock();
+        }
+    }
+
+    private void signalWaiter() {
+        waitLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Compares two items with the heap's comparator, or their natural ordering if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator == null) {
+            return ((Comparable<? super T>) a).compareTo(b);
+        }
+        return comparator.compare(a, b);
+    }
+}
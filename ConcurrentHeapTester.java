@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrentHeapTester {
+    private static final int ITEMS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+
+        // Check that a strict heap drained by one thread comes out in order
+        ConcurrentHeap<Integer> ordered = new ConcurrentHeap<>(ConcurrentHeap.Mode.STRICT);
+        ArrayList<Integer> numList = new ArrayList<>();
+        for (int i = 1; i <= 100_000; i++) {
+            numList.add(i);
+        }
+        Collections.shuffle(numList); // Shuffle the numList array
+        for (Integer number : numList) {
+            ordered.offer(number);
+        }
+        for (int i = 100_000; i >= 1; i--) {
+            if (ordered.poll() != i) {
+                throw new AssertionError("STRICT heap returned an item out of order");
+            }
+        }
+        System.out.println("STRICT single-thread order: ok");
+
+        // Check that take() times out on an empty heap and wakes up when an item arrives
+        if (ordered.poll(10, TimeUnit.MILLISECONDS) != null) {
+            throw new AssertionError("poll with timeout returned an item from an empty heap");
+        }
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ordered.offer(42);
+        });
+        producer.start();
+        if (ordered.take() != 42) {
+            throw new AssertionError("take returned the wrong item");
+        }
+        producer.join();
+        System.out.println("blocking take / timed poll: ok");
+
+        // Stress and throughput: equal numbers of producers and consumers, every item must come out exactly once
+        System.out.println("-------------------------------");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            stress("STRICT ", new ConcurrentHeap<>(ConcurrentHeap.Mode.STRICT), threads);
+            stress("RELAXED", new ConcurrentHeap<>(ConcurrentHeap.Mode.RELAXED), threads);
+            lockedBaseline(threads);
+            System.out.println("-------------------------------");
+        }
+    }
+
+    /**
+     * Run the given number of producers and consumers against one heap and print the throughput.
+     */
+    private static void stress(String label, ConcurrentHeap<Integer> heap, int threads) throws Exception {
+        AtomicIntegerArray seen = new AtomicIntegerArray(ITEMS);
+        AtomicLong consumed = new AtomicLong();
+        AtomicLong negativeSizes = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            // producers offer every threads-th number so that together they cover 0 .. ITEMS - 1
+            workers.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = first; i < ITEMS; i += threads) {
+                    heap.offer(i);
+                }
+            }));
+            workers.add(new Thread(() -> {
+                awaitQuietly(start);
+                try {
+                    while (consumed.get() < ITEMS) {
+                        Integer item = heap.poll(1, TimeUnit.MILLISECONDS);
+                        if (item != null) {
+                            if (seen.getAndIncrement(item) != 0) {
+                                throw new AssertionError("item " + item + " was returned twice");
+                            }
+                            consumed.incrementAndGet();
+                        }
+                        if (heap.size() < 0) {
+                            negativeSizes.incrementAndGet(); // an item taken before offer counted it
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+
+        long begin = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        for (int i = 0; i < ITEMS; i++) {
+            if (seen.get(i) != 1) {
+                throw new AssertionError("item " + i + " was returned " + seen.get(i) + " times");
+            }
+        }
+        if (negativeSizes.get() != 0) {
+            throw new AssertionError("size() was negative " + negativeSizes.get() + " times");
+        }
+        System.out.printf("%s producers=%-3d consumers=%-3d %8.2f Mops/s (offer+poll pairs), empty after: %b%n",
+                label, threads, threads, ITEMS * 1e3 / elapsed, heap.isEmpty());
+    }
+
+    /**
+     * The same workload against a plain Heap behind one lock, for comparison.
+     */
+    private static void lockedBaseline(int threads) throws Exception {
+        Heap<Integer> heap = new Heap<>();
+        AtomicLong consumed = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            workers.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = first; i < ITEMS; i += threads) {
+                    synchronized (heap) {
+                        heap.insert(i);
+                    }
+                }
+            }));
+            workers.add(new Thread(() -> {
+                awaitQuietly(start);
+                while (consumed.get() < ITEMS) {
+                    synchronized (heap) {
+                        if (!heap.isEmpty()) {
+                            try {
+                                heap.extractMax();
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                            consumed.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+
+        long begin = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        System.out.printf("%s producers=%-3d consumers=%-3d %8.2f Mops/s (offer+poll pairs)%n",
+                "LOCKED ", threads, threads, ITEMS * 1e3 / elapsed);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
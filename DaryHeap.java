@@ -0,0 +1,296 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * A max heap stored in a single array where every item has up to d children (a d-ary heap).
+ * The children of the item at index i live at d*i + 1 .. d*i + d and its parent at (i - 1) / d.
+ * A wider heap is shallower (log_d n levels instead of log_2 n), so insert sifts up past fewer parents,
+ * and the d children of an item sit next to each other in memory. extractMax pays for that by comparing
+ * d children on every level, so small arities suit extract-heavy work and larger ones insert-heavy work.
+ * @param <T> : The type of item stored in the heap. It must implement
+ *           the Comparable<T> interface, so that the data structure
+ *           knows how to compare two items, unless a Comparator is supplied.
+ */
+public class DaryHeap<T> implements PriorityHeap<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // some VMs reserve header words in an array
+
+    private final int arity;
+    private Object[] items;
+    private int currentSize;
+    private final Comparator<? super T> comparator; // null means the items' natural ordering
+
+    /**
+     * Construct a max heap with the given number of children per item that is initially empty.
+     * @param arity the number of children per item (at least 2)
+     */
+    public DaryHeap(int arity) {
+        this(arity, (Comparator<? super T>) null);
+    }
+
+    /**
+     * Construct an empty max heap (HeapOrder.MAX) or min heap (HeapOrder.MIN) over the items' natural ordering.
+     * @param arity the number of children per item (at least 2)
+     * @param order which end of the ordering is kept at the root
+     */
+    public DaryHeap(int arity, HeapOrder order) {
+        this(arity, order.<T>applyTo(null));
+    }
+
+    /**
+     * Construct a max heap that is initially empty and orders its items with the given comparator.
+     * @param arity the number of children per item (at least 2)
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public DaryHeap(int arity, Comparator<? super T> comparator) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("arity must be at least 2: " + arity);
+        }
+        this.arity = arity;
+        items = new Object[DEFAULT_CAPACITY];
+        currentSize = 0;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns the maximum item in the heap.
+     * @return : The maximum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T findMax() throws Exception {
+        // if the heap has no items/is empty throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return itemAt(0);
+    }
+
+    /**
+     * Removes the maximum item from this heap.
+     * @return : The maximum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T extractMax() throws Exception {
+        // if the heap is empty then throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        T max = itemAt(0);
+        int last = --currentSize;
+        T moved = itemAt(last);
+        items[last] = null; // drop the reference so the removed slot does not keep the item alive
+
+        // the last item fills the hole left at the root and is sifted down from there
+        if (last > 0) {
+            siftDown(0, moved);
+        }
+        return max;
+    }
+
+    /**
+     * Inserts the given item into the Heap.
+     * @param item : The item to insert into the heap.
+     */
+    @Override
+    public void insert(T item) {
+        if (currentSize == items.length) {
+            grow();
+        }
+        siftUp(currentSize, item);
+        currentSize++;
+    }
+
+    /**
+     * Inserts every item in the collection.
+     * When the batch is large compared to the heap, the items are appended unordered and the whole array
+     * is rebuilt bottom-up (Floyd's method, O(n + k)); otherwise each item is sifted up on its own.
+     * @param items the items to insert
+     */
+    @Override
+    public void insertAll(Collection<? extends T> items) {
+        int count = items.size();
+        long finalSize = (long) currentSize + count;
+        // sift-ups cost up to one height per item, a rebuild about one step per item in the heap
+        if ((long) count * heightOf(finalSize) < finalSize) {
+            for (T item : items) {
+                insert(item);
+            }
+            return;
+        }
+
+        ensureCapacity((int) Math.min(finalSize, MAX_CAPACITY));
+        for (T item : items) {
+            if (currentSize == this.items.length) {
+                grow(); // the collection grew while being copied
+            }
+            this.items[currentSize++] = item;
+        }
+        heapify();
+    }
+
+    /**
+     * Restores heap order over the whole array bottom-up, sifting down every item that has children.
+     */
+    private void heapify() {
+        if (currentSize < 2) {
+            return;
+        }
+        for (int i = (currentSize - 2) / arity; i >= 0; i--) {
+            siftDown(i, itemAt(i));
+        }
+    }
+
+    /**
+     * Moves a hole up from the given index until the item fits, then places the item there.
+     * @param index the index of the hole (initially the first free slot)
+     * @param item the item being placed
+     */
+    private void siftUp(int index, T item) {
+        while (index > 0) {
+            int parent = (index - 1) / arity;
+            T parentItem = itemAt(parent);
+            // stop once the parent is at least as large as the item
+            if (compare(item, parentItem) <= 0) {
+                break;
+            }
+            items[index] = parentItem; // pull the parent down into the hole
+            index = parent;
+        }
+        items[index] = item;
+    }
+
+    /**
+     * Moves a hole down from the given index until the item fits, then places the item there.
+     * @param index the index of the hole (the root after a removal)
+     * @param item the item being placed
+     */
+    private void siftDown(int index, T item) {
+        while (true) {
+            long firstChild = (long) arity * index + 1; // long: d * i + 1 can pass Integer.MAX_VALUE
+            if (firstChild >= currentSize) {
+                break; // a leaf
+            }
+            int child = (int) firstChild;
+            int end = (int) Math.min(firstChild + arity, currentSize);
+            T childItem = itemAt(child);
+            // pick the largest of the (up to d) children, which are stored side by side
+            for (int sibling = child + 1; sibling < end; sibling++) {
+                T siblingItem = itemAt(sibling);
+                if (compare(siblingItem, childItem) > 0) {
+                    child = sibling;
+                    childItem = siblingItem;
+                }
+            }
+            // stop once the item is at least as large as every child
+            if (compare(item, childItem) >= 0) {
+                break;
+            }
+            items[index] = childItem; // pull the child up into the hole
+            index = child;
+        }
+        items[index] = item;
+    }
+
+    /**
+     * Grows the backing array so it can hold at least the given number of items.
+     * @param minCapacity the number of items needed
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > items.length) {
+            items = Arrays.copyOf(items, Math.max(minCapacity, (int) Math.min((long) items.length * 2, MAX_CAPACITY)));
+        }
+    }
+
+    /**
+     * Doubles the backing array (geometric growth keeps insert amortized O(1) apart from sifting).
+     */
+    private void grow() {
+        int oldCapacity = items.length;
+        if (oldCapacity == MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        int newCapacity = oldCapacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : oldCapacity * 2;
+        items = Arrays.copyOf(items, newCapacity);
+    }
+
+    /**
+     * Compares two items with the heap's comparator, or their natural ordering if there is none.
+     * @return : a positive number if a belongs above b, a negative number if below, 0 if they are equal
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator == null) {
+            return ((Comparable<? super T>) a).compareTo(b);
+        }
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * Returns the comparator this heap orders its items with.
+     * @return : the comparator, or null if the items' natural ordering is used
+     */
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns the number of children each item can have.
+     * @return : d
+     */
+    public int arity() {
+        return arity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int index) {
+        return (T) items[index];
+    }
+
+    /**
+     * Returns the height of a complete d-ary tree with the given number of items.
+     */
+    private int heightOf(long size) {
+        int height = 0;
+        long levelWidth = 1;
+        long filled = 1; // items that fit in the levels counted so far
+        while (filled < size) {
+            levelWidth *= arity;
+            filled += levelWidth;
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    @Override
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    @Override
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap, about log_d(size).
+     * @return : The number of levels in this heap.
+     */
+    @Override
+    public int height() {
+        return heightOf(currentSize);
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class DaryHeapTester {
+    private static final int ROUNDS = 500;
+    private static final int[] ARITIES = {2, 3, 4, 8, 16};
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // An arity below 2 is rejected, and an empty heap has no max
+        for (int arity : new int[] {-1, 0, 1}) {
+            try {
+                new DaryHeap<Integer>(arity);
+                throw new AssertionError("arity " + arity + " was accepted");
+            } catch (IllegalArgumentException expected) {
+                // at least two children per item
+            }
+        }
+        for (int arity : ARITIES) {
+            expectEmpty(new DaryHeap<Integer>(arity));
+        }
+        System.out.println("bad arities and empty heaps: ok");
+
+        // Random insert / insertAll / extractMax mixes against a PriorityQueue, for every arity and for the natural,
+        // HeapOrder.MIN and comparator constructors. insertAll batches range from a few items (sifted up one by one)
+        // to hundreds, often many times the heap's size (appended and rebuilt with Floyd's method).
+        Comparator<Integer> byLastDigit = Comparator.comparingInt((Integer item) -> Math.floorMod(item, 10)).thenComparing(item -> item);
+        for (int round = 0; round < ROUNDS; round++) {
+            int arity = ARITIES[round % ARITIES.length];
+            switch (round / ARITIES.length % 3) {
+                case 0:
+                    randomRound(random, new DaryHeap<>(arity), new PriorityQueue<>(Collections.reverseOrder()));
+                    break;
+                case 1:
+                    randomRound(random, new DaryHeap<>(arity, HeapOrder.MIN), new PriorityQueue<>());
+                    break;
+                default:
+                    randomRound(random, new DaryHeap<>(arity, byLastDigit), new PriorityQueue<>(byLastDigit.reversed()));
+                    break;
+            }
+        }
+        System.out.println(ROUNDS + " random insert/insertAll/extractMax rounds, arities 2-16, three orderings: ok");
+
+        // height() is the depth of the last item, for every arity and size
+        for (int arity : ARITIES) {
+            DaryHeap<Integer> heap = new DaryHeap<>(arity);
+            for (int size = 0; size <= 2_000; size++) {
+                int depth = 0;
+                for (int index = size - 1; index > 0; index = (index - 1) / arity) {
+                    depth++;
+                }
+                if (heap.height() != depth) {
+                    throw new AssertionError("arity " + arity + " with " + size + " items has height " + heap.height() + ", expected " + depth);
+                }
+                heap.insert(size);
+            }
+            if (heap.arity() != arity || heap.comparator() != null) {
+                throw new AssertionError("arity() or comparator() does not report the constructor's arguments");
+            }
+        }
+        System.out.println("height and arity: ok");
+    }
+
+    private static void randomRound(Random random, DaryHeap<Integer> heap, PriorityQueue<Integer> expected) throws Exception {
+        int range = 1 + random.nextInt(random.nextBoolean() ? 5 : 1_000);
+        for (int op = random.nextInt(200); op > 0; op--) {
+            int choice = random.nextInt(10);
+            if (choice < 4) {
+                int item = random.nextInt(range) - range / 2;
+                heap.insert(item);
+                expected.add(item);
+            } else if (choice == 4) {
+                List<Integer> batch = new ArrayList<>();
+                for (int i = random.nextBoolean() ? random.nextInt(4) : random.nextInt(300); i > 0; i--) {
+                    batch.add(random.nextInt(range) - range / 2);
+                }
+                heap.insertAll(batch);
+                expected.addAll(batch);
+            } else if (!expected.isEmpty()) {
+                check(heap, expected);
+                if (!heap.extractMax().equals(expected.poll())) {
+                    throw new AssertionError("extractMax disagrees with the reference");
+                }
+            }
+            if (heap.size() != expected.size()) {
+                throw new AssertionError("size " + heap.size() + ", expected " + expected.size());
+            }
+        }
+        while (!expected.isEmpty()) {
+            check(heap, expected);
+            if (!heap.extractMax().equals(expected.poll())) {
+                throw new AssertionError("draining disagrees with the reference");
+            }
+        }
+        expectEmpty(heap);
+    }
+
+    private static void check(DaryHeap<Integer> heap, PriorityQueue<Integer> expected) throws Exception {
+        if (!heap.findMax().equals(expected.peek())) {
+            throw new AssertionError("arity " + heap.arity() + ": findMax " + heap.findMax() + ", expected " + expected.peek());
+        }
+    }
+
+    private static void expectEmpty(DaryHeap<Integer> heap) {
+        if (!heap.isEmpty() || heap.size() != 0) {
+            throw new AssertionError("the heap should be empty");
+        }
+        try {
+            heap.findMax();
+            throw new AssertionError("findMax on an empty heap returned");
+        } catch (AssertionError e) {
+            throw e;
+        } catch (Exception expected) {
+            // empty heap
+        }
+        try {
+            heap.extractMax();
+            throw new AssertionError("extractMax on an empty heap returned");
+        } catch (AssertionError e) {
+            throw e;
+        } catch (Exception expected) {
+            // empty heap
+        }
+    }
+}
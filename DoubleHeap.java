@@ -0,0 +1,185 @@
+import java.util.Arrays;
+
+/**
+ * A max heap of primitive doubles stored implicitly in a double[].
+ * Unlike Heap<Double>, nothing is boxed, so once the array has grown to its working size
+ * insert and extractMax allocate nothing at all. Items are ordered by Double.compare, the same
+ * order Heap<Double> uses (so -0.0 is below 0.0 and NaN is above every other value).
+ */
+public class DoubleHeap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // some VMs reserve header words in an array
+
+    private double[] items;
+    private int currentSize;
+
+    /**
+     * Construct a max heap that is initially empty.
+     */
+    public DoubleHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct a max heap that is initially empty but can hold the given number of items before growing.
+     * @param initialCapacity the number of items to reserve room for
+     */
+    public DoubleHeap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0: " + initialCapacity);
+        }
+        items = new double[Math.max(initialCapacity, 1)];
+        currentSize = 0;
+    }
+
+    /**
+     * Construct a heap around an array that already holds size items in valid heap order (used by HeapSnapshot).
+     * The array is adopted, not copied, and nothing is re-sifted.
+     * @param items the backing array, in level order
+     * @param size the number of items at the start of the array that belong to the heap
+     */
+    DoubleHeap(double[] items, int size) {
+        if (size < 0 || size > items.length) {
+            throw new IllegalArgumentException("size out of range: " + size);
+        }
+        this.items = items.length == 0 ? new double[1] : items;
+        currentSize = size;
+    }
+
+    /**
+     * Returns the backing array (not a copy): the first size() entries are the items in level order.
+     * @return : the backing array
+     */
+    double[] levelOrder() {
+        return items;
+    }
+
+    /**
+     * Returns the maximum item in the heap.
+     * @return : The maximum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    public double findMax() throws Exception {
+        // if the heap has no items/is empty throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return items[0];
+    }
+
+    /**
+     * Removes the maximum item from this heap.
+     * @return : The maximum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    public double extractMax() throws Exception {
+        // if the heap is empty then throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        double max = items[0];
+        int last = --currentSize;
+
+        // the last item fills the hole left at the root and is sifted down from there
+        if (last > 0) {
+            siftDown(0, items[last]);
+        }
+        return max;
+    }
+
+    /**
+     * Inserts the given item into the Heap.
+     * @param item : The item to insert into the heap.
+     */
+    public void insert(double item) {
+        if (currentSize == items.length) {
+            grow();
+        }
+        siftUp(currentSize, item);
+        currentSize++;
+    }
+
+    /**
+     * Moves a hole up from the given index until the item fits, then places the item there.
+     */
+    private void siftUp(int index, double item) {
+        double[] heap = items;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            double parentItem = heap[parent];
+            if (Double.compare(item, parentItem) <= 0) {
+                break;
+            }
+            heap[index] = parentItem;
+            index = parent;
+        }
+        heap[index] = item;
+    }
+
+    /**
+     * Moves a hole down from the given index until the item fits, then places the item there.
+     */
+    private void siftDown(int index, double item) {
+        double[] heap = items;
+        int size = currentSize;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            double childItem = heap[child];
+            int right = child + 1;
+            if (right < size && Double.compare(heap[right], childItem) > 0) {
+                child = right;
+                childItem = heap[right];
+            }
+            if (Double.compare(item, childItem) >= 0) {
+                break;
+            }
+            heap[index] = childItem;
+            index = child;
+        }
+        heap[index] = item;
+    }
+
+    /**
+     * Doubles the backing array (geometric growth keeps insert amortized O(1) apart from sifting).
+     */
+    private void grow() {
+        int oldCapacity = items.length;
+        if (oldCapacity == MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        int newCapacity = oldCapacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : oldCapacity * 2;
+        items = Arrays.copyOf(items, newCapacity);
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap.
+     * @return : The number of levels in this heap.
+     */
+    public int height() {
+        // the heap is a complete binary tree, so its height is floor(log2(size))
+        if (currentSize == 0) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(currentSize);
+    }
+}
@@ -0,0 +1,272 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorts more lines than fit in memory (greatest to least, as HeapSorter does).
+ * Sorted runs are produced with replacement selection: a heap holding about memoryBudget bytes of
+ * lines streams out its maximum, and each line read in afterwards joins the current run if it still
+ * fits below the last line written, or waits in the heap for the next run otherwise. On random input
+ * this makes runs about twice the size of memory. The runs are spilled to temporary files and then
+ * combined with a k-way merge driven by a small heap of run cursors.
+ */
+public class ExternalHeapSort {
+
+    /**
+     * Receives the sorted lines.
+     */
+    public interface LineWriter {
+        void write(String line) throws IOException;
+    }
+
+    // rough per-line cost on the Java heap: String and array headers, the heap entry and its array slot
+    private static final int LINE_OVERHEAD_BYTES = 64;
+    private static final int MAX_MERGE_FAN_IN = 128; // runs merged at once (each needs an open file and a buffer)
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+
+    private final long memoryBudget;
+    private final Path tempDirectory;
+
+    /**
+     * A line waiting in the replacement-selection heap, tagged with the run it belongs to.
+     */
+    private static final class RunEntry {
+        final int run;
+        final String line;
+
+        RunEntry(int run, String line) {
+            this.run = run;
+            this.line = line;
+        }
+    }
+
+    /**
+     * The current (largest remaining) line of one sorted run during the merge.
+     */
+    private static final class RunCursor {
+        final BufferedReader reader;
+        String line;
+
+        RunCursor(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            this.line = reader.readLine();
+        }
+    }
+
+    /**
+     * @param memoryBudget roughly how many bytes of lines to hold in memory while building runs
+     * @param tempDirectory where run files are written (null for the system default)
+     */
+    public ExternalHeapSort(long memoryBudget, Path tempDirectory) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("memoryBudget must be positive: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Sorts every line from the input and hands them to the output from greatest to least.
+     * If the whole input fits in the memory budget nothing is written to disk.
+     * @param input the lines to sort
+     * @param output receives the lines in sorted order
+     */
+    public void sort(Iterator<String> input, LineWriter output) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        try {
+            boolean spilled = buildRuns(input, output, runs);
+            if (spilled) {
+                mergeRuns(runs, output);
+            }
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * Replacement selection. Returns false (having already written the output) if everything fit in memory.
+     */
+    private boolean buildRuns(Iterator<String> input, LineWriter output, List<Path> runs) throws IOException {
+        // lower run numbers first, then the greatest line
+        ArrayHeap<RunEntry> heap = new ArrayHeap<>((a, b) -> {
+            if (a.run != b.run) {
+                return Integer.compare(b.run, a.run);
+            }
+            return a.line.compareTo(b.line);
+        });
+
+        long used = 0;
+        while (used < memoryBudget && input.hasNext()) {
+            String line = input.next();
+            heap.insert(new RunEntry(0, line));
+            used += lineBytes(line);
+        }
+
+        try {
+            // Everything fit: this is an ordinary in-memory heap sort
+            if (!input.hasNext()) {
+                while (!heap.isEmpty()) {
+                    output.write(heap.extractMax().line);
+                }
+                return false;
+            }
+
+            int currentRun = -1;
+            BufferedWriter writer = null;
+            String lastWritten = null;
+            try {
+                while (!heap.isEmpty()) {
+                    RunEntry top = heap.extractMax();
+                    used -= lineBytes(top.line);
+
+                    // the heap holds only lines for later runs: start the next file
+                    if (top.run != currentRun) {
+                        if (writer != null) {
+                            writer.close();
+                        }
+                        Path file = createTempFile("heapsort-run-");
+                        runs.add(file);
+                        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                        currentRun = top.run;
+                    }
+                    writer.write(top.line);
+                    writer.newLine();
+                    lastWritten = top.line;
+
+                    // refill the space that line freed
+                    while (used < memoryBudget && input.hasNext()) {
+                        String line = input.next();
+                        // a line above the last one written can no longer go into this (descending) run
+                        int run = line.compareTo(lastWritten) <= 0 ? currentRun : currentRun + 1;
+                        heap.insert(new RunEntry(run, line));
+                        used += lineBytes(line);
+                    }
+                }
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // extractMax is only called on a non-empty heap
+        }
+    }
+
+    /**
+     * Merges the run files, first in groups of MAX_MERGE_FAN_IN if there are too many to open at once.
+     */
+    private void mergeRuns(List<Path> runs, LineWriter output) throws IOException {
+        while (runs.size() > MAX_MERGE_FAN_IN) {
+            List<Path> group = new ArrayList<>(runs.subList(0, MAX_MERGE_FAN_IN));
+            Path merged = createTempFile("heapsort-merge-");
+            runs.add(merged); // registered first so it is cleaned up even if the merge fails
+            try (BufferedWriter writer = Files.newBufferedWriter(merged, StandardCharsets.UTF_8)) {
+                merge(group, line -> {
+                    writer.write(line);
+                    writer.newLine();
+                });
+            }
+            for (Path run : group) {
+                Files.deleteIfExists(run);
+            }
+            runs.subList(0, MAX_MERGE_FAN_IN).clear();
+        }
+        merge(runs, output);
+    }
+
+    /**
+     * k-way merge: a heap of cursors ordered by their current line repeatedly yields the greatest one.
+     */
+    private void merge(List<Path> runs, LineWriter output) throws IOException {
+        ArrayHeap<RunCursor> cursors = new ArrayHeap<>(runs.size(), Comparator.comparing((RunCursor cursor) -> cursor.line));
+        List<BufferedReader> readers = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                BufferedReader reader = new BufferedReader(Files.newBufferedReader(run, StandardCharsets.UTF_8), IO_BUFFER_BYTES);
+                readers.add(reader);
+                RunCursor cursor = new RunCursor(reader);
+                if (cursor.line != null) {
+                    cursors.insert(cursor);
+                }
+            }
+
+            while (!cursors.isEmpty()) {
+                RunCursor cursor = cursors.extractMax();
+                output.write(cursor.line);
+                cursor.line = cursor.reader.readLine();
+                if (cursor.line != null) {
+                    cursors.insert(cursor);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // extractMax is only called on a non-empty heap
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private Path createTempFile(String prefix) throws IOException {
+        if (tempDirectory == null) {
+            return Files.createTempFile(prefix, ".txt");
+        }
+        return Files.createTempFile(tempDirectory, prefix, ".txt");
+    }
+
+    private static long lineBytes(String line) {
+        return 2L * line.length() + LINE_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Wraps a reader as an iterator over its lines (stopping at end of input or, if asked, at an empty line).
+     * @param reader the source of lines
+     * @param stopAtEmptyLine whether an empty line ends the input (as it does for HeapSorter's prompt)
+     * @return : an iterator over the lines; read errors are rethrown as UncheckedIOException
+     */
+    public static Iterator<String> lines(BufferedReader reader, boolean stopAtEmptyLine) {
+        return new Iterator<String>() {
+            private String next = advance();
+
+            private String advance() {
+                try {
+                    String line = reader.readLine();
+                    return (line == null || (stopAtEmptyLine && line.isEmpty())) ? null : line;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                String line = next;
+                next = advance();
+                return line;
+            }
+        };
+    }
+}
@@ -0,0 +1,153 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class ExternalHeapSortTester {
+    // about two lines fit in memory at once, so replacement selection makes runs of a handful of lines
+    private static final long TINY_BUDGET = 200;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+        Path directory = Files.createTempDirectory("heapsort-tester-");
+        try {
+            // Enough runs (hundreds) that they are merged in groups of 128 before the final merge
+            List<String> lines = randomLines(random, 3_000);
+            boolean[] sawGroupMerge = new boolean[1];
+            List<String> sorted = new ArrayList<>();
+            new ExternalHeapSort(TINY_BUDGET, directory).sort(lines.iterator(), line -> {
+                if (sorted.isEmpty()) {
+                    // by the final merge the first groups have been combined into merge files
+                    sawGroupMerge[0] = fileNames(directory).stream().anyMatch(name -> name.startsWith("heapsort-merge-"));
+                }
+                sorted.add(line);
+            });
+            checkSorted(lines, sorted, "3,000 lines with a " + TINY_BUDGET + "-byte budget");
+            if (!sawGroupMerge[0]) {
+                throw new AssertionError("more than 128 runs were not merged in groups");
+            }
+            checkEmpty(directory, "a multi-pass merge");
+            System.out.println("more than 128 runs, multi-pass merge, duplicates and empty lines: ok");
+
+            // Sizes around the budget, including input that just fits and input that just spills
+            for (int round = 0; round < 200; round++) {
+                List<String> input = randomLines(random, random.nextInt(60));
+                List<String> output = new ArrayList<>();
+                new ExternalHeapSort(1 + random.nextInt(2_000), directory).sort(input.iterator(), output::add);
+                checkSorted(input, output, input.size() + " random lines");
+                checkEmpty(directory, "a random round");
+            }
+            System.out.println("200 random inputs around the budget: ok");
+
+            // Everything fits: sorted in memory and nothing touches the disk, not even a missing directory
+            Path missing = directory.resolve("missing");
+            for (List<String> input : List.of(new ArrayList<String>(), randomLines(random, 1), randomLines(random, 1_000))) {
+                List<String> output = new ArrayList<>();
+                new ExternalHeapSort(1 << 20, missing).sort(input.iterator(), output::add);
+                checkSorted(input, output, input.size() + " lines in memory");
+            }
+            checkEmpty(directory, "the in-memory path");
+            System.out.println("all-in-memory path: ok");
+
+            // Failures leave no run files behind: an output that fails during the merge, input that fails while
+            // runs are being written, and a temporary directory that cannot be written to
+            List<String> spilling = randomLines(random, 2_000);
+            int[] written = new int[1];
+            expectFailure(() -> new ExternalHeapSort(TINY_BUDGET, directory).sort(spilling.iterator(), line -> {
+                if (++written[0] == 100) {
+                    throw new IOException("disk full");
+                }
+            }), IOException.class, "a failing output");
+            checkEmpty(directory, "a failing output");
+            Iterator<String> failingInput = new Iterator<String>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public String next() {
+                    if (next == 500) {
+                        throw new UncheckedIOException(new IOException("read error"));
+                    }
+                    return spilling.get(next++);
+                }
+            };
+            expectFailure(() -> new ExternalHeapSort(TINY_BUDGET, directory).sort(failingInput, line -> { }),
+                    UncheckedIOException.class, "failing input");
+            checkEmpty(directory, "failing input");
+            expectFailure(() -> new ExternalHeapSort(TINY_BUDGET, missing).sort(spilling.iterator(), line -> { }),
+                    IOException.class, "a missing temporary directory");
+            System.out.println("run files cleaned up after failures: ok");
+        } finally {
+            for (String name : fileNames(directory)) {
+                Files.delete(directory.resolve(name)); // only after a failed check
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private interface Sort {
+        void run() throws Exception;
+    }
+
+    /**
+     * Lines from a small alphabet (so many repeat), about one in ten of them empty.
+     */
+    private static List<String> randomLines(Random random, int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int length = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(4); length > 0; length--) {
+                line.append((char) ('a' + random.nextInt(3)));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private static void checkSorted(List<String> input, List<String> actual, String what) {
+        List<String> expected = new ArrayList<>(input);
+        expected.sort(Collections.reverseOrder());
+        if (!actual.equals(expected)) {
+            throw new AssertionError(what + " sorted wrongly: " + actual.size() + " lines out, " + expected.size() + " in");
+        }
+    }
+
+    private static List<String> fileNames(Path directory) {
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> names.add(file.getFileName().toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return names;
+    }
+
+    private static void checkEmpty(Path directory, String after) {
+        List<String> left = fileNames(directory);
+        if (!left.isEmpty()) {
+            throw new AssertionError(after + " left " + left.size() + " files behind, e.g. " + left.get(0));
+        }
+    }
+
+    private static void expectFailure(Sort sort, Class<? extends Exception> expected, String what) throws Exception {
+        try {
+            sort.run();
+        } catch (Exception e) {
+            if (expected.isInstance(e)) {
+                return;
+            }
+            throw e;
+        }
+        throw new AssertionError(what + " did not fail the sort");
+    }
+}
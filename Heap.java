@@ -1,23 +1,170 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * A data structure that represents a max heap.
+ * Items are ordered by their natural ordering or by a supplied Comparator, and HeapOrder.MIN
+ * turns it into a min heap (findMax/extractMax then return the smallest item).
  * @param <T> : The type of item stored in the heap. It must implement
  *           the Comparable<T> interface, so that the data structure
- *           knows how to compare two items.
+ *           knows how to compare two items, unless a Comparator is supplied.
  *           Note: String already implements Comparable.
  */
-public class Heap<T extends Comparable<T>> {
+public class Heap<T> implements PriorityHeap<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
 
     private Node<T> rootNode;
     private Node<T> lastNode;
     private int currentSize;
 
+    /*
+     * Every node in level order (the node at index i has its children at 2i + 1 and 2i + 2).
+     * The tree is still linked through the Nodes; this table only lets insert and extractMax
+     * jump straight to the next parent and to the previous last node instead of walking the tree.
+     */
+    private Node<T>[] levelOrder;
+
+    private int modCount; // bumped whenever a node is added or removed, so sortedIterator can detect changes
+
+    /*
+     * Optional pool of detached nodes, chained through their parent pointers. extractMax returns the node it
+     * unlinks here (with its item cleared, so the pool never keeps items alive) and insert takes one back,
+     * so under steady insert/extract churn the heap stops allocating nodes. Off (a capacity of 0) by default.
+     */
+    private Node<T> freeNodes;
+    private int freeNodeCount;
+    private int freeNodeCapacity;
+
+    private final Comparator<? super T> comparator; // null means the items' natural ordering
+
+    // instrumentation counters, only created (and only touched) when HeapStats.ENABLED (-Dheap.stats=true)
+    private final HeapStats.Recorder stats;
+
     /**
      * Construct a max heap that is initially empty.
      */
     public Heap() {
+        this((Comparator<? super T>) null);
+    }
+
+    /**
+     * Construct a max heap that is initially empty and orders its items with the given comparator.
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public Heap(Comparator<? super T> comparator) {
         rootNode = null;
         lastNode = null;
         currentSize = 0;
+        @SuppressWarnings("unchecked") // only Node<T>s are ever stored in the table
+        Node<T>[] table = (Node<T>[]) new Node<?>[DEFAULT_CAPACITY];
+        levelOrder = table;
+        this.comparator = comparator;
+        stats = HeapStats.ENABLED ? new HeapStats.Recorder() : null;
+    }
+
+    /**
+     * Construct an empty max heap (HeapOrder.MAX) or min heap (HeapOrder.MIN) over the items' natural ordering.
+     * @param order which end of the ordering is kept at the root
+     */
+    public Heap(HeapOrder order) {
+        this(order.<T>applyTo(null));
+    }
+
+    /**
+     * Construct a max heap holding the given items, built bottom-up in linear time.
+     * @param items the items to place in the heap
+     */
+    public Heap(Collection<? extends T> items) {
+        this();
+        insertAll(items);
+    }
+
+    /**
+     * Construct a heap holding the given items, ordered by the given comparator and built bottom-up in linear time.
+     * @param items the items to place in the heap
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public Heap(Collection<? extends T> items, Comparator<? super T> comparator) {
+        this(comparator);
+        insertAll(items);
+    }
+
+    /**
+     * Returns the comparator this heap orders its items with.
+     * @return : the comparator, or null if the items' natural ordering is used
+     */
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Builds a max heap from a collection in O(n) (see insertAll).
+     * @param items the items to place in the heap
+     * @return : a heap holding every item
+     */
+    public static <T extends Comparable<T>> Heap<T> fromCollection(Collection<? extends T> items) {
+        return new Heap<T>(items);
+    }
+
+    /**
+     * Builds a heap ordered by the given comparator from a collection in O(n) (see insertAll).
+     * @param items the items to place in the heap
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     * @return : a heap holding every item
+     */
+    public static <T> Heap<T> fromCollection(Collection<? extends T> items, Comparator<? super T> comparator) {
+        return new Heap<T>(items, comparator);
+    }
+
+    /**
+     * Builds a max heap from an array in O(n).
+     * @param items the items to place in the heap
+     * @return : a heap holding every item
+     */
+    @SafeVarargs
+    public static <T extends Comparable<T>> Heap<T> fromArray(T... items) {
+        // the array is only read, never stored or handed on, which is what makes @SafeVarargs true
+        Heap<T> heap = new Heap<T>();
+        heap.growLevelOrder(items.length);
+        for (T item : items) {
+            heap.appendNode(heap.newNode(item));
+        }
+        heap.heapifyAll();
+        return heap;
+    }
+
+    /**
+     * Builds a max heap from everything an iterator returns, in O(n).
+     * @param items the iterator to drain
+     * @return : a heap holding every item
+     */
+    public static <T extends Comparable<T>> Heap<T> fromIterator(Iterator<? extends T> items) {
+        return fromIterator(items, null);
+    }
+
+    /**
+     * Builds a heap ordered by the given comparator from everything an iterator returns, in O(n).
+     * @param items the iterator to drain
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     * @return : a heap holding every item
+     */
+    public static <T> Heap<T> fromIterator(Iterator<? extends T> items, Comparator<? super T> comparator) {
+        Heap<T> heap = new Heap<T>(comparator);
+        while (items.hasNext()) {
+            heap.appendNode(heap.newNode(items.next()));
+        }
+        heap.heapifyAll();
+        return heap;
     }
 
     /**
@@ -46,12 +193,108 @@ public class Heap<T extends Comparable<T>> {
             throw new Exception();
         }
 
-        T max = findMax(); // find the maximum value
+        return removeRoot();
+    }
+
+    /**
+     * Removes up to n of the largest items and stores them in dst from index 0, largest first.
+     * The emptiness check and findMax call of extractMax are paid once for the whole batch.
+     * @param n the most items to remove
+     * @param dst the array to fill (at least n long)
+     * @return : the number of items removed, min(n, size())
+     */
+    @Override
+    public int extractTop(int n, T[] dst) {
+        PriorityHeap.checkBatch(n, dst);
+        int count = Math.min(n, currentSize);
+        for (int i = 0; i < count; i++) {
+            dst[i] = removeRoot();
+        }
+        return count;
+    }
+
+    /**
+     * Removes every item from the heap and adds them to the collection, largest first.
+     * @param dst the collection to add the items to
+     * @return : the number of items moved
+     */
+    @Override
+    public int drainTo(Collection<? super T> dst) {
+        int count = currentSize;
+        for (int i = 0; i < count; i++) {
+            dst.add(removeRoot());
+        }
+        return count;
+    }
+
+    /**
+     * Returns an iterator over the items from greatest to least that leaves the heap unchanged.
+     * It keeps a small frontier heap of nodes: the root to begin with, and each time a node is returned
+     * its children take its place. Every child is smaller than its parent, so the frontier's maximum is
+     * always the next item overall. The k-th item costs O(log k), and the frontier holds at most k + 1 nodes.
+     * The heap must not be modified while the iterator is in use (next then throws ConcurrentModificationException).
+     * @return : a non-destructive iterator in heap order
+     */
+    public Iterator<T> sortedIterator() {
+        ArrayHeap<Node<T>> frontier = new ArrayHeap<>((a, b) -> compare(a.getData(), b.getData()));
+        if (rootNode != null) {
+            frontier.insert(rootNode);
+        }
+        int expectedModCount = modCount;
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !frontier.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (frontier.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    Node<T> node = frontier.extractMax();
+                    if (node.getLeftChild() != null) {
+                        frontier.insert(node.getLeftChild());
+                    }
+                    if (node.getRightChild() != null) {
+                        frontier.insert(node.getRightChild());
+                    }
+                    return node.getData();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e); // the frontier was checked to be non-empty
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream over the items from greatest to least that leaves the heap unchanged (see sortedIterator).
+     * @return : a non-destructive stream in heap order
+     */
+    public Stream<T> sortedStream() {
+        return StreamSupport.stream(Spliterators.spliterator(sortedIterator(), currentSize, Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Unlinks the last node, moves its value into the root and sifts it down.
+     * @return : the item that was at the root
+     * @precondition : Heap is not empty.
+     */
+    private T removeRoot() {
+        long start = HeapStats.ENABLED ? System.nanoTime() : 0;
+        T max = rootNode.getData(); // the maximum value
 
         // if there is only one node then set the root and last node to null (empty heap)
         if (size() == 1) {
+            recycle(rootNode);
             rootNode = null;
             lastNode = null;
+            levelOrder[0] = null;
         }
         else {
             Node<T> nextLast = getNewLastNode(); // get the node that will be last next
@@ -65,125 +308,162 @@ public class Heap<T extends Comparable<T>> {
                 lastNode.getParent().setRightChild(null);
             }
             rootNode.setData(lastNode.getData()); // set the root data to the previous last node
+            levelOrder[currentSize - 1] = null; // the old last node's slot is now free
+            recycle(lastNode); // the old last node is detached (and a leaf), so it can be reused
             lastNode = nextLast; // set the new last node
 
-            heapifyRemove(); // re-order the heap recursively, starting at the rootNode
+            heapifyRemove(); // re-order the heap, starting at the rootNode
         }
 
         currentSize--; // now that the removal has occurred subtract 1 from the heap's size
+        modCount++;
 
+        if (HeapStats.ENABLED) {
+            stats.extracts++;
+            stats.recordExtractLatency(System.nanoTime() - start);
+        }
         return max;
 
     }
 
     /**
      * Reorders the heap after removing the root element.
+     * The value that was moved into the root is held aside while a "hole" travels down the tree:
+     * at each level the larger child is pulled up into the hole, and the held value is written
+     * only once, into the slot where it finally belongs.
      */
-    private void heapifyRemove() throws InterruptedException {
-        heapifyRemove(rootNode);
+    private void heapifyRemove() {
+        heapifyDown(rootNode);
     }
 
     /**
-     * Reorders the heap after removing the root element
-     * @param node
-     * @throws InterruptedException
+     * Sifts the value stored in the given node down into its subtree, using the same "hole" technique.
+     * @param start the node whose value may be smaller than one of its children
      */
-    private void heapifyRemove(Node<T> node) throws InterruptedException {
-        // if the node currently being checked is null return
-        if (node == null) {
-            return;
-        }
+    private void heapifyDown(Node<T> start) {
+        Node<T> hole = start;
+        T item = hole.getData();
+
+        while (true) {
+            Node<T> left = hole.getLeftChild();
+            // a complete binary tree has no right child without a left child, so no left child means a leaf
+            if (left == null) {
+                break;
+            }
+            Node<T> right = hole.getRightChild();
+            Node<T> next = left;
 
-        Node<T> left = node.getLeftChild();
-        Node<T> right = node.getRightChild();
-        Node<T> next = null;
+            if (HeapStats.ENABLED) {
+                stats.nodesVisited += right == null ? 1 : 2;
+            }
 
-        // assign next to the proper node
-        if (left != null && right != null) {
-            if (left.getData().compareTo(right.getData()) > 0) {
-                next = left;
-            } else {
+            // pick the larger of the two children
+            if (right != null && compare(right.getData(), left.getData()) > 0) {
                 next = right;
             }
-        } else if (left != null) {
-            next = left;
-        }
 
-        // if next is not null AND it's value is greater than the current node's then swap them and then call heapifyRemove again on the node that was just moved downwards
-        if (next != null && next.getData().compareTo(node.getData()) > 0) {
-            T temp = node.getData();
-            node.setData(next.getData());
-            next.setData(temp);
-            heapifyRemove(next);
+            // stop once the held value is at least as large as the larger child
+            if (compare(next.getData(), item) <= 0) {
+                break;
+            }
+            hole.setData(next.getData()); // pull the child up into the hole
+            if (HeapStats.ENABLED) {
+                stats.moves++;
+            }
+            hole = next;
         }
+        hole.setData(item);
     }
 
     /**
-     * Represents the starting case of the recursive function (always starts at the lastNode)
-     * @return : the new last node (needed after a removal of the rootNode)
+     * Finds the new last node (needed after a removal of the rootNode)
+     * @return : the node just before the lastNode in level order
      */
     private Node<T> getNewLastNode() {
-        return getNewLastNode(lastNode);
+        if (HeapStats.ENABLED) {
+            stats.nodesVisited++;
+        }
+        return levelOrder[currentSize - 2];
     }
 
     /**
-     * Recursive function that "does the work" for finding the new last node after a removal
-     * @param result the current node that is being checked (starts at lastNode)
-     * @return :
+     * Inserts the given item into the Heap.
+     * @param item : The item to insert into the heap.
      */
-    private Node<T> getNewLastNode(Node<T> result) {
-
-        // Set result equal to the value gotten from the getParentNode() function
-        result = getParentNode(result);
-
-        // if the current node is not equal to the rootNode then set it equal to the left child of its parent (in case it isn't already)
-        if (result != rootNode) {
-            result = result.getParent().getLeftChild();
+    public void insert(T item) {
+        long start = HeapStats.ENABLED ? System.nanoTime() : 0;
+        appendNode(newNode(item)); // place a node holding the item in the next open spot
+        heapifyInsert(); // call heapifyInsert to correct the ordering of the heap after the value is inserted to follow the rules of a max heap (each node's parent's value is greater than the node's value)
+        if (HeapStats.ENABLED) {
+            stats.recordInsertLatency(System.nanoTime() - start);
         }
+    }
 
-        // set the result equal to the rightmost node of the current node (as long as it isn't already there)
-        if (result.getRightChild() != null) {
-            result = findRightmostNode(result.getRightChild());
+    /**
+     * Inserts every item in the collection.
+     * When the batch is large compared to the heap, the new nodes are linked in without sifting and the
+     * whole tree is rebuilt bottom-up (Floyd's method, O(n + k)); otherwise each item is sifted up on its own.
+     * @param items the items to insert
+     */
+    public void insertAll(Collection<? extends T> items) {
+        int count = items.size();
+        if (!shouldRebuild(count)) {
+            for (T item : items) {
+                insert(item);
+            }
+            return;
         }
 
-        // return the value
-        return result;
+        growLevelOrder(currentSize + count);
+        for (T item : items) {
+            appendNode(newNode(item));
+        }
+        heapifyAll();
     }
 
     /**
-     * Helper function for the getNewLastNode function
-     * @param node the current node
-     * @return : The parent of the new lastNode
+     * Inserts len items of the array, starting at index off.
+     * Like insertAll, a batch that is large compared to the heap is linked in unordered and rebuilt
+     * bottom-up, and a small one is sifted up item by item.
+     * @param src the array holding the items
+     * @param off the index of the first item to insert
+     * @param len the number of items to insert
      */
-    private Node<T> getParentNode(Node<T> node) {
-        // IF the node is the rootNode OR it's the right child then return that node
-        if (node == rootNode || (node.getParent().getLeftChild() != node)) {
-            return node;
+    @Override
+    public void insertBatch(T[] src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        if (!shouldRebuild(len)) {
+            for (int i = off; i < off + len; i++) {
+                insert(src[i]);
+            }
+            return;
+        }
+
+        growLevelOrder(currentSize + len);
+        for (int i = off; i < off + len; i++) {
+            appendNode(newNode(src[i]));
         }
-        // Otherwise, call the function again on this node's parent
-        return getParentNode(node.getParent());
+        heapifyAll();
     }
 
     /**
-     * Find the furthest right node from a starting node
-     * @param node the position/node to start from
-     * @return : the node furthest to the right (that is connected to the initial node)
+     * Decides whether adding a batch is cheaper as one bottom-up rebuild than as separate sift-ups.
+     * A rebuild touches every node once (about size + count steps) while sift-ups cost up to one
+     * height per new item, so rebuild once count * height reaches the final size.
+     * @param count the number of items about to be added
+     * @return : true if the heap should be rebuilt after appending the batch
      */
-    private Node<T> findRightmostNode(Node<T> node) {
-        if (node.getRightChild() == null) {
-            return node;
-        }
-        return findRightmostNode(node.getRightChild());
+    private boolean shouldRebuild(int count) {
+        long finalSize = (long) currentSize + count;
+        int finalHeight = 63 - Long.numberOfLeadingZeros(Math.max(finalSize, 1));
+        return (long) count * finalHeight >= finalSize;
     }
 
     /**
-     * Inserts the given item into the Heap.
-     * @param item : The item to insert into the heap.
+     * Links a node into the next open spot of the complete binary tree without reordering anything.
+     * @param node the node to add
      */
-    public void insert(T item) {
-        // Create a new node that has the proper value
-        Node<T> node = new Node<T>(item);
-
+    private void appendNode(Node<T> node) {
         // If there is no rootNode then assign this node to the rootNode
         if (rootNode == null) {
             rootNode = node;
@@ -194,8 +474,8 @@ public class Heap<T extends Comparable<T>> {
             // Find the next parent
             Node<T> nextParent = getNextParent();
 
-            // If there's an open spot as a left child then assign the new node to the left child
-            if (nextParent.getLeftChild() == null) {
+            // Odd slots are left children, so if the new slot is odd assign the new node to the left child
+            if ((currentSize & 1) == 1) {
                 nextParent.setLeftChild(node);
                 node.setParent(nextParent);
             }
@@ -205,97 +485,239 @@ public class Heap<T extends Comparable<T>> {
                 node.setParent(nextParent);
             }
         }
+
+        // record the node in its level-order slot
+        if (currentSize == levelOrder.length) {
+            growLevelOrder(currentSize + 1);
+        }
+        levelOrder[currentSize] = node;
+
         lastNode = node; // set the most recent node inserted to the lastNode of the heap
         currentSize++; // increment the size of the heap by 1
+        modCount++;
 
-        heapifyInsert(); // call heapifyInsert to correct the ordering of the heap after the value is inserted to follow the rules of a max heap (each node's parent's value is greater than the node's value)
+        if (HeapStats.ENABLED) {
+            stats.inserts++;
+            stats.recordSize(currentSize);
+        }
     }
 
     /**
-     * Returns the node that will be the parent of the new node
-     * @return the node that will be the parent of the new node
+     * Returns the item at the given level-order position (index 0 is the root), for HeapSnapshot.
+     * @param index a position from 0 to size() - 1
+     * @return : the item stored there
      */
-    private Node<T> getNextParent() {
-        // If there is less than 3 levels (height) return the rootNode immediately since it should be the parent
-        if (currentSize < 3) {
-            return rootNode;
+    T levelOrderItem(int index) {
+        return levelOrder[index].getData();
+    }
+
+    /**
+     * Links the item into the next open spot of the tree as it is, without sifting (for HeapSnapshot).
+     * The caller guarantees the result stays in heap order, e.g. by appending items saved in level order.
+     * @param item the item to add
+     */
+    void appendInLevelOrder(T item) {
+        appendNode(newNode(item));
+    }
+
+    /**
+     * Returns a node holding the item: a pooled one if there is any, otherwise a new one.
+     * @param item the item the node will hold
+     * @return : a node with no parent or children
+     */
+    private Node<T> newNode(T item) {
+        Node<T> node = freeNodes;
+        if (node == null) {
+            return new Node<T>(item);
         }
-        // Otherwise, call getNextParent() always starting from the lastNode
-        return getNextParent(lastNode);
+        freeNodes = node.getParent();
+        freeNodeCount--;
+        node.setParent(null);
+        node.setData(item);
+        return node;
     }
 
     /**
-     * Recursive call that returns the node that will be the parent of the new node
-     * @param currNode the node that the function is currently visiting
-     * @return the node that will be the parent of the new node
+     * Puts a node that has just been unlinked from the tree into the pool, unless the pool is full.
+     * @param node a detached leaf (it has no children)
+     */
+    private void recycle(Node<T> node) {
+        if (freeNodeCount < freeNodeCapacity) {
+            node.setData(null); // the pool must not keep the removed item alive
+            node.setParent(freeNodes);
+            freeNodes = node;
+            freeNodeCount++;
+        }
+    }
+
+    /**
+     * Sets how many detached nodes the heap keeps for reuse. With a capacity of at least the number of items
+     * that come and go in a burst, insert reuses the nodes extractMax released and allocates nothing.
+     * Each pooled node costs one empty Node object. A capacity of 0 (the default) turns pooling off, and
+     * lowering the capacity drops the nodes above it.
+     * Pooling stays off unless asked for, because it only pays off on large heaps under churn; on small heaps
+     * the young generation reclaims nodes almost for free and the pool costs throughput.
+     * @param capacity the most nodes to keep
+     */
+    public void setNodePoolCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity < 0: " + capacity);
+        }
+        freeNodeCapacity = capacity;
+        while (freeNodeCount > capacity) {
+            freeNodes = freeNodes.getParent();
+            freeNodeCount--;
+        }
+    }
+
+    /**
+     * Returns the number of detached nodes currently kept for reuse.
+     * @return : the pool size
+     */
+    public int nodePoolSize() {
+        return freeNodeCount;
+    }
+
+    /**
+     * Checks every link in the tree against the level-order table, heap order along every edge, and that
+     * pooled nodes hold no item and no children. For the testers; it walks the whole heap and the pool.
+     * @throws IllegalStateException at the first inconsistency found
      */
-    private Node<T> getNextParent(Node<T> currNode) {
-        // If the current node is NOT the rootNode AND it is not the left child then call getNextParent again using this node's parent as the parameter
-        if (currNode != rootNode && currNode.getParent().getLeftChild() != currNode) {
-            return getNextParent(currNode.getParent());
+    void checkStructure() {
+        if (rootNode != (currentSize == 0 ? null : levelOrder[0]) || lastNode != (currentSize == 0 ? null : levelOrder[currentSize - 1])) {
+            throw new IllegalStateException("root or last node does not match the level-order table");
         }
-        // If the current node is not the root node
-        if (currNode != rootNode) {
-            // Check if the current node's parent node has an open spot in it's right child
-            if (currNode.getParent().getRightChild() == null) {
-                return currNode.getParent();
+        for (int i = 0; i < currentSize; i++) {
+            Node<T> node = levelOrder[i];
+            Node<T> parent = i == 0 ? null : levelOrder[(i - 1) >>> 1];
+            Node<T> left = 2 * i + 1 < currentSize ? levelOrder[2 * i + 1] : null;
+            Node<T> right = 2 * i + 2 < currentSize ? levelOrder[2 * i + 2] : null;
+            if (node.getParent() != parent || node.getLeftChild() != left || node.getRightChild() != right) {
+                throw new IllegalStateException("node " + i + " is linked to the wrong parent or children");
             }
-            // Otherwise, get the parent node's right child and find the leftmost node of that node
-            else {
-                currNode = currNode.getParent().getRightChild();
-                return findLeftMostNode(currNode);
+            if (parent != null && compare(node.getData(), parent.getData()) > 0) {
+                throw new IllegalStateException("node " + i + " is larger than its parent");
             }
         }
-        // If the current node IS the root node then traverse the tree to find the left most node from the root and make that the next parent
-        else {
-            currNode = findLeftMostNode(currNode);
+        for (int i = currentSize; i < levelOrder.length; i++) {
+            if (levelOrder[i] != null) {
+                throw new IllegalStateException("level-order slot " + i + " is past the last node but not empty");
+            }
+        }
+        int pooled = 0;
+        for (Node<T> node = freeNodes; node != null; node = node.getParent()) {
+            if (node.getData() != null || node.getLeftChild() != null || node.getRightChild() != null) {
+                throw new IllegalStateException("a pooled node still holds an item or children");
+            }
+            pooled++;
+        }
+        if (pooled != freeNodeCount || pooled > freeNodeCapacity) {
+            throw new IllegalStateException(pooled + " pooled nodes, expected " + freeNodeCount + " (capacity " + freeNodeCapacity + ")");
+        }
+    }
+
+    /**
+     * Releases the memory the heap holds beyond what its items need: every pooled node, and the unused
+     * slots of the level-order table. The pool capacity is unchanged, so the pool refills as items are extracted.
+     */
+    public void trimToSize() {
+        freeNodes = null; // the pooled nodes only reference each other, so the whole chain is garbage now
+        freeNodeCount = 0;
+        if (levelOrder.length > Math.max(currentSize, DEFAULT_CAPACITY)) {
+            levelOrder = Arrays.copyOf(levelOrder, Math.max(currentSize, DEFAULT_CAPACITY));
         }
+    }
 
-        // finally return the node (only reached if the current node was the root node since all others have a return statement)
-        return currNode;
+    /**
+     * Restores heap order over the whole tree bottom-up: every node that has children, from the last
+     * one back to the root, is sifted down into its (already ordered) subtrees.
+     */
+    private void heapifyAll() {
+        for (int i = (currentSize >>> 1) - 1; i >= 0; i--) {
+            heapifyDown(levelOrder[i]);
+        }
     }
 
     /**
-     * Find the node that is furthest to the left from a current spot within the complete binary tree/heap
-     * @param node the node to begin at
-     * @return : the node that is furthest to the left from the starting node
+     * Returns the node that will be the parent of the new node
+     * @return the node that will be the parent of the new node
      */
-    private Node<T> findLeftMostNode(Node<T> node) {
-        // If the current node's left child is null return the current node
-        if (node.getLeftChild() == null) {
-            return node;
+    private Node<T> getNextParent() {
+        // the new node goes into level-order slot currentSize, whose parent is slot (currentSize - 1) / 2
+        if (HeapStats.ENABLED) {
+            stats.nodesVisited++;
         }
-        // Otherwise, use recursion to continue (this time using the current node's left child)
-        return findLeftMostNode(node.getLeftChild());
+        return levelOrder[(currentSize - 1) >>> 1];
     }
 
     /**
-     * Correct ordering of the heap when a new element is inserted.  If the lastNode is not null then call the recursive version...starting with lastNode.
-     * This represents the starting case.
+     * Grows the level-order table (at least doubling it) so it has room for the given number of nodes.
+     * @param minCapacity the number of slots needed
      */
-    private void heapifyInsert() {
-        // If the lastNode is not null (no items) AND the lastNode is not the root node (1 item) then call the recursive version of heapifyInsert()...always beginning at the lastNode
-        if (lastNode != null && lastNode != rootNode) {
-            heapifyInsert(lastNode);
+    private void growLevelOrder(int minCapacity) {
+        if (minCapacity > levelOrder.length) {
+            levelOrder = Arrays.copyOf(levelOrder, Math.max(minCapacity, levelOrder.length * 2));
         }
     }
 
     /**
-     * Correct ordering of the heap when a new element is inserted...recursive version
-     * @param currNode the node that is currently being checked for re-ordering
+     * Correct ordering of the heap when a new element is inserted.
+     * The new value is held aside while a "hole" climbs from the lastNode: every parent that is
+     * smaller than the value is pulled down into the hole, and the value is written once at the end.
      */
-    private void heapifyInsert(Node<T> currNode) {
-        // If the current node is not the root node, then proceed
-        if (currNode != rootNode) {
-            Node<T> parent = currNode.getParent();
+    private void heapifyInsert() {
+        Node<T> hole = lastNode;
+        T item = hole.getData();
 
-            // if the current node's parent exists AND it's value is greater than it's parent, then swap the values of the two and call heapifyInsert on the parent to see if it needs to be moved even further up
-            if (parent != null && currNode.getData().compareTo(parent.getData()) > 0) {
-                T temp = currNode.getData();
-                currNode.setData(parent.getData());
-                parent.setData(temp);
-                heapifyInsert(parent);
+        while (hole != rootNode) {
+            Node<T> parent = hole.getParent();
+            if (HeapStats.ENABLED) {
+                stats.nodesVisited++;
+            }
+
+            // stop once the parent is at least as large as the new value
+            if (compare(item, parent.getData()) <= 0) {
+                break;
+            }
+            hole.setData(parent.getData()); // pull the parent down into the hole
+            if (HeapStats.ENABLED) {
+                stats.moves++;
             }
+            hole = parent;
+        }
+        hole.setData(item);
+    }
+
+    /**
+     * Compares two items with the heap's comparator, or their natural ordering if there is none.
+     * @return : a positive number if a belongs above b, a negative number if below, 0 if they are equal
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (HeapStats.ENABLED) {
+            stats.compares++;
+        }
+        if (comparator == null) {
+            return ((Comparable<? super T>) a).compareTo(b);
+        }
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * Returns a snapshot of this heap's instrumentation counters (all 0 unless run with -Dheap.stats=true).
+     * @return : the statistics recorded so far
+     */
+    public HeapStats stats() {
+        return HeapStats.ENABLED ? stats.snapshot(currentSize) : HeapStats.empty(currentSize);
+    }
+
+    /**
+     * Sets this heap's instrumentation counters back to 0.
+     */
+    public void resetStats() {
+        if (HeapStats.ENABLED) {
+            stats.reset();
+            stats.recordSize(currentSize); // the high-water mark starts again from the current size
         }
     }
 
@@ -322,83 +744,11 @@ public class Heap<T extends Comparable<T>> {
      * Returns the number of levels in this heap.
      * @return : The number of levels in this heap.
      */
-    public int height(){
-        return height(rootNode);
+    public int height() {
+        if (currentSize == 0) {
+            return 0;
+        }
+        // the heap is a complete binary tree, so its height is floor(log2(size)) (0 when there is only 1 node)
+        return 31 - Integer.numberOfLeadingZeros(currentSize);
     }
-
-    /**
-     * Returns the number of levels in this heap.
-     * @return : The number of levels in this heap.
-     */
-    private int height(Node<T> node) {
-        // Progress down the left side of the heap until the next node would be null (since it represents a complete binary tree doing this will reveal the height of the heap itself)
-        if (node.getLeftChild() == null) {
-            return 0; // must be 0 in order to return 0 when there is only 1 node
-        }
-        return height(node.getLeftChild()) + 1;
-    }
-
-
-
-
-    // Non-recursive versions of some methods that were used for testing/debugging purposes
-//    private void heapifyRemove() {
-//        T temp;
-//        Node<T> node = rootNode;
-//        Node<T> left = node.getLeftChild();
-//        Node<T> right = node.getRightChild();
-//        Node<T> next;
-//
-//        if ((left == null) && (right == null)) {
-//            next = null;
-//        }
-//        else if (right == null) {
-//            next = left;
-//        }
-//        else if (left.getData().compareTo(right.getData()) > 0) {
-//            next = left;
-//        }
-//        else {
-//            next = right;
-//        }
-//        temp = node.getData();
-//
-//        while ((next != null) && (next.getData().compareTo(temp) > 0)) {
-//            node.setData(next.getData());
-//            node = next;
-//            left = node.getLeftChild();
-//            right = node.getRightChild();
-//
-//            if ((left == null) && (right == null)) {
-//                next = null;
-//            } else if (right == null) {
-//                next = left;
-//            } else if (left.getData().compareTo(right.getData()) > 0) {
-//                next = left;
-//            } else {
-//                next = right;
-//            }
-//        }
-//        node.setData(temp);
-//    }
-
-//    private Node<T> getNewLastNode() {
-//        Node<T> result = lastNode;
-//
-//        while ((result != rootNode) && (result.getParent().getLeftChild() == result)) {
-//            result = result.getParent();
-//        }
-//
-//        if (result != rootNode) {
-//            result = result.getParent().getLeftChild();
-//        }
-//
-//        while (result.getRightChild() != null) {
-//            result = result.getRightChild();
-//        }
-//
-//        return result;
-//    }
 }
-
-
@@ -0,0 +1,1053 @@
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Throughput and memory benchmarks for the heap implementations.
+ * Every case is a setup and a timed body run by BenchmarkHarness: warmup iterations, then measured ones,
+ * reported as the mean (and spread) in millions of operations per second plus the bytes allocated per operation.
+ *
+ * The "matrix" suite runs every combination of its parameters, which can be narrowed on the command line:
+ *   java -Xms4g -Xmx4g HeapBenchmark matrix --sizes=1000,100000,1000000,10000000 --types=Integer,String
+ *        --orders=random,sorted,reverse --backends=linked,array,dary4
+ *        --ops=insert,extractMax,findMax,height,bulk,insertBatch,extractTop,sorter
+ * The same cells also run under JMH (mvn -P jmh package, then java -jar target/benchmarks.jar; see HeapMatrixBenchmark).
+ *
+ * Usage: java -Xms4g -Xmx4g HeapBenchmark [suite ...] [--param=value ...]   (runs every suite when none are named)
+ * A fixed heap size (-Xms equal to -Xmx) keeps heap resizing out of the measurements; add -Xlog:gc to see
+ * which rounds a collection landed in.
+ */
+public class HeapBenchmark {
+
+    private static final int[] SIZES = {1_000_000, 10_000_000};
+    private static final int FIND_CALLS = 1_000_000; // findMax / height calls per invocation
+    private static final int BATCH = 256; // items per insertBatch / extractTop call
+
+    public static void main(String[] args) throws Exception {
+        List<String> suites = new ArrayList<>();
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                params.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                suites.add(arg);
+            }
+        }
+        if (suites.isEmpty()) {
+            suites = Arrays.asList("linked", "primitive", "bulk", "matrix", "arity", "meld", "snapshot", "offheap", "lazy", "strings", "scheduler", "minmax", "pool");
+        }
+
+        for (String suite : suites) {
+            switch (suite) {
+                case "linked":
+                    linkedSuite();
+                    break;
+                case "primitive":
+                    primitiveSuite();
+                    break;
+                case "bulk":
+                    bulkSuite();
+                    break;
+                case "matrix":
+                    matrixSuite(params);
+                    break;
+                case "arity":
+                    aritySuite(params);
+                    break;
+                case "meld":
+                    meldSuite();
+                    break;
+                case "snapshot":
+                    snapshotSuite();
+                    break;
+                case "offheap":
+                    offHeapSuite(params);
+                    break;
+                case "lazy":
+                    lazySuite();
+                    break;
+                case "strings":
+                    stringSuite();
+                    break;
+                case "scheduler":
+                    schedulerSuite();
+                    break;
+                case "minmax":
+                    minMaxSuite();
+                    break;
+                case "pool":
+                    nodePoolSuite(params);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown suite: " + suite);
+            }
+        }
+    }
+
+    /**
+     * Insert then extract throughput of the linked Heap.
+     */
+    private static void linkedSuite() throws Exception {
+        System.out.println("== linked Heap: insert / extractMax ==");
+        for (int size : SIZES) {
+            Integer[] values = shuffledIntegers(size);
+            String suffix = " n=" + size;
+            BenchmarkHarness.measure("Heap insert    " + suffix, Heap<Integer>::new, heap -> insertAll(heap, values));
+            BenchmarkHarness.measure("Heap extractMax" + suffix, () -> {
+                Heap<Integer> heap = new Heap<>();
+                insertAll(heap, values);
+                return heap;
+            }, HeapBenchmark::drain);
+        }
+    }
+
+    /**
+     * Every combination of size, element type, input order, backend and operation.
+     */
+    private static void matrixSuite(Map<String, String> params) throws Exception {
+        List<String> sizes = BenchmarkHarness.listParam(params, "sizes", "1000,100000,1000000,10000000");
+        List<String> types = BenchmarkHarness.listParam(params, "types", "Integer,String");
+        List<String> orders = BenchmarkHarness.listParam(params, "orders", "random,sorted,reverse");
+        List<String> backends = BenchmarkHarness.listParam(params, "backends", "linked,array");
+        List<String> operations = BenchmarkHarness.listParam(params, "ops", "insert,extractMax,findMax,height,bulk,insertBatch,extractTop,sorter");
+
+        System.out.println("== matrix ==");
+        System.out.printf("%-10s %-8s %-8s %-8s %-11s %22s %12s%n", "size", "type", "order", "backend", "operation", "throughput", "alloc");
+        for (String sizeText : sizes) {
+            int size = Integer.parseInt(sizeText.replace("_", ""));
+            for (String type : types) {
+                for (String order : orders) {
+                    List<Comparable<?>> data = matrixData(size, type, order);
+                    byte[] lines = "String".equals(type) ? joinLines(data) : null;
+
+                    for (String backend : backends) {
+                        for (String operation : operations) {
+                            BenchmarkHarness.Case<?> cell = matrixCase(operation, backend, data, lines);
+                            if (cell == null) {
+                                continue; // the HeapSorter pipeline only sorts Strings
+                            }
+                            double[] result = BenchmarkHarness.run(cell);
+                            System.out.printf("%-10d %-8s %-8s %-8s %-11s %9.3f +/- %6.3f Mops/s %8.1f B/op%n",
+                                    size, type, order, backend, operation, result[0] / 1e6, result[1] / 1e6, result[2]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds one matrix cell, or returns null if the combination does not apply.
+     */
+    private static BenchmarkHarness.Case<?> matrixCase(String operation, String backend, List<Comparable<?>> data, byte[] lines) {
+        switch (operation) {
+            case "insert":
+                return new BenchmarkHarness.Case<>(() -> HeapBenchmark.<Comparable<?>>newHeap(backend), heap -> {
+                    for (Comparable<?> item : data) {
+                        heap.insert(item);
+                    }
+                    return data.size();
+                });
+            case "extractMax":
+                return new BenchmarkHarness.Case<>(() -> filledHeap(backend, data), heap -> {
+                    long checksum = 0;
+                    for (int i = data.size(); i > 0; i--) {
+                        checksum += heap.extractMax().hashCode();
+                    }
+                    return checksum == 42 ? data.size() + 1 : data.size();
+                });
+            case "findMax":
+            case "height":
+                boolean findMax = operation.equals("findMax");
+                return new BenchmarkHarness.Case<>(() -> filledHeap(backend, data), heap -> {
+                    long checksum = 0;
+                    for (int i = 0; i < FIND_CALLS; i++) {
+                        checksum += findMax ? heap.findMax().hashCode() : heap.height();
+                    }
+                    return checksum == 42 ? FIND_CALLS + 1 : FIND_CALLS;
+                });
+            case "bulk":
+                return new BenchmarkHarness.Case<>(() -> HeapBenchmark.<Comparable<?>>newHeap(backend), heap -> {
+                    heap.insertAll(data);
+                    return data.size();
+                });
+            case "insertBatch":
+                Comparable<?>[] source = data.toArray(new Comparable<?>[0]);
+                return new BenchmarkHarness.Case<>(() -> HeapBenchmark.<Comparable<?>>newHeap(backend), heap -> {
+                    for (int off = 0; off < source.length; off += BATCH) {
+                        heap.insertBatch(source, off, Math.min(BATCH, source.length - off));
+                    }
+                    return source.length;
+                });
+            case "extractTop":
+                Comparable<?>[] batch = new Comparable<?>[BATCH];
+                return new BenchmarkHarness.Case<>(() -> filledHeap(backend, data), heap -> {
+                    while (heap.extractTop(BATCH, batch) == BATCH) {
+                        // keep pulling full batches until the heap runs dry
+                    }
+                    return data.size();
+                });
+            case "sorter":
+                if (lines == null) {
+                    return null;
+                }
+                // the whole HeapSorter pipeline: decode, insert, extract, format and write every line
+                return new BenchmarkHarness.Case<>(() -> null, nothing -> sortLines(backend, lines, data.size()));
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+    /**
+     * Entry point for the JMH build of the matrix (jmh/heapbench/HeapMatrixBenchmark.java), which looks it up reflectively
+     * because JMH does not accept benchmarks in the default package. Each call of the returned Callable runs the cell's
+     * setup and returns its body, to be timed.
+     * @return : the cell's invocations, or null if the combination does not apply
+     */
+    static Callable<Callable<Long>> matrixInvocations(int size, String type, String order, String backend, String operation) {
+        List<Comparable<?>> data = matrixData(size, type, order);
+        BenchmarkHarness.Case<?> cell = matrixCase(operation, backend, data, "String".equals(type) ? joinLines(data) : null);
+        return cell == null ? null : cell::prepare;
+    }
+
+
+    /**
+     * DaryHeap at arity 2, 4, 8 and 16 (binary ArrayHeap as the baseline) under different insert/extract mixes.
+     * Each mix starts from a heap of --size items (default 1,000,000) and performs that many operations.
+     */
+    private static void aritySuite(Map<String, String> params) throws Exception {
+        int size = BenchmarkHarness.intParam(params, "size", 1_000_000);
+        List<String> backends = BenchmarkHarness.listParam(params, "backends", "array,dary2,dary4,dary8,dary16");
+        int[] values = shuffledInts(2 * size);
+
+        System.out.println("== d-ary heap arity sweep, n=" + size + " ==");
+        System.out.printf("%-8s %-14s %22s %12s%n", "backend", "mix", "throughput", "alloc");
+        // inserts per extract: build only, insert-heavy, balanced, extract-heavy, drain only
+        String[] mixes = {"insert-only", "3:1", "1:1", "1:3", "extract-only"};
+        int[] insertsPerCycle = {1, 3, 1, 1, 0};
+        int[] extractsPerCycle = {0, 1, 1, 3, 1};
+
+        for (String backend : backends) {
+            for (int m = 0; m < mixes.length; m++) {
+                int inserts = insertsPerCycle[m];
+                int extracts = extractsPerCycle[m];
+                // the insert-only mix builds from empty, every other mix starts from a full heap
+                int start = inserts > 0 && extracts == 0 ? 0 : size;
+                double[] result = BenchmarkHarness.run(() -> {
+                    PriorityHeap<Integer> heap = newHeap(backend);
+                    for (int i = 0; i < start; i++) {
+                        heap.insert(values[i]);
+                    }
+                    return heap;
+                }, heap -> {
+                    int next = start;
+                    long ops = 0;
+                    while (ops < size) {
+                        for (int i = 0; i < inserts; i++) {
+                            heap.insert(values[next++ % values.length]);
+                        }
+                        for (int i = 0; i < extracts && !heap.isEmpty(); i++) {
+                            heap.extractMax();
+                        }
+                        ops += inserts + extracts;
+                    }
+                    return ops;
+                });
+                System.out.printf("%-8s %-14s %9.3f +/- %6.3f Mops/s %8.1f B/op%n",
+                        backend, mixes[m], result[0] / 1e6, result[1] / 1e6, result[2]);
+            }
+        }
+    }
+
+    /**
+     * Combining per-worker shards into one heap: PairingHeap.meld against draining each shard into the
+     * first one with extractMax and insert (the only way to combine two Heaps).
+     * Throughput is items combined per second; the shards are rebuilt outside the timed region.
+     */
+    private static void meldSuite() throws Exception {
+        int shards = 8;
+        System.out.println("== combining " + shards + " shards into one heap ==");
+        for (int size : new int[] {100_000, 1_000_000}) {
+            int[] values = shuffledInts(size);
+            String suffix = " n=" + size;
+
+            BenchmarkHarness.measure("PairingHeap.meld" + suffix, () -> fillShards(PairingHeap::new, values, shards), heaps -> {
+                for (int i = 1; i < shards; i++) {
+                    heaps.get(0).meld(heaps.get(i));
+                }
+                return size;
+            });
+            // meld defers the pairing work to the extractMax calls that follow, so also time a full drain afterwards
+            BenchmarkHarness.measure("PairingHeap.meld then drain" + suffix, () -> fillShards(PairingHeap::new, values, shards), heaps -> {
+                for (int i = 1; i < shards; i++) {
+                    heaps.get(0).meld(heaps.get(i));
+                }
+                while (!heaps.get(0).isEmpty()) {
+                    heaps.get(0).extractMax();
+                }
+                return size;
+            });
+            BenchmarkHarness.measure("Heap drain and reinsert" + suffix, () -> fillShards(Heap::new, values, shards), HeapBenchmark::drainShards);
+            BenchmarkHarness.measure("ArrayHeap drain and reinsert" + suffix, () -> fillShards(ArrayHeap::new, values, shards), HeapBenchmark::drainShards);
+        }
+    }
+
+    /**
+     * Rebuilding a heap after a restart: inserting every item again against HeapSnapshot.restore*.
+     * Throughput is items restored per second; the snapshot files are written once, untimed (and
+     * are read back from the page cache, so this measures decoding rather than the disk).
+     */
+    private static void snapshotSuite() throws Exception {
+        System.out.println("== rebuild by insert vs restore from a snapshot ==");
+        Path file = Files.createTempFile("heap-snapshot-", ".bin");
+        try {
+            for (int size : SIZES) {
+                int[] values = shuffledInts(size);
+                String suffix = " n=" + size;
+
+                BenchmarkHarness.measure("Heap<Integer> insert loop" + suffix, () -> insertAll(new Heap<>(), values));
+                Heap<Integer> heap = new Heap<>();
+                insertAll(heap, values);
+                BenchmarkHarness.measure("HeapSnapshot.save(Heap)" + suffix, () -> {
+                    HeapSnapshot.save(heap, HeapSnapshot.INTEGER, file);
+                    return size;
+                });
+                BenchmarkHarness.measure("HeapSnapshot.restoreHeap" + suffix, () ->
+                        HeapSnapshot.restoreHeap(file, HeapSnapshot.INTEGER, null).size());
+                BenchmarkHarness.measure("HeapSnapshot.restoreArrayHeap" + suffix, () ->
+                        HeapSnapshot.restoreArrayHeap(file, HeapSnapshot.INTEGER, null).size());
+
+                BenchmarkHarness.measure("IntHeap insert loop" + suffix, () -> insertAll(new IntHeap(), values));
+                IntHeap ints = new IntHeap();
+                insertAll(ints, values);
+                BenchmarkHarness.measure("HeapSnapshot.save(IntHeap)" + suffix, () -> {
+                    HeapSnapshot.save(ints, file);
+                    return size;
+                });
+                BenchmarkHarness.measure("HeapSnapshot.restoreIntHeap (mapped)" + suffix, () ->
+                        HeapSnapshot.restoreIntHeap(file).size());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A large heap under a 1:1 insert/extract churn, boxed on the Java heap against primitive and off-heap
+     * storage of (key, id) pairs. Each heap starts with --size entries (default 10,000,000); alongside the
+     * throughput, the time the collectors spent over the whole case (setup included) is reported.
+     */
+    private static void offHeapSuite(Map<String, String> params) throws Exception {
+        int size = BenchmarkHarness.intParam(params, "size", 10_000_000);
+        long[] keys = new long[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextLong();
+        }
+
+        System.out.println("== on-heap vs off-heap storage, 1:1 insert/extract, n=" + size + " ==");
+        BenchmarkHarness.measureWithGc("ArrayHeap<Long> (boxed keys)", () -> {
+            ArrayHeap<Long> heap = new ArrayHeap<>(size);
+            for (long key : keys) {
+                heap.insert(key);
+            }
+            return heap;
+        }, heap -> {
+            for (int i = 0; i < size; i++) {
+                heap.insert(heap.extractMax() - keys[i] % 1024); // re-insert slightly lower, like a deadline moving on
+            }
+            return 2L * size;
+        });
+        BenchmarkHarness.measureWithGc("LongHeap (primitive keys, no ids)", () -> {
+            LongHeap heap = new LongHeap(size);
+            for (long key : keys) {
+                heap.insert(key);
+            }
+            return heap;
+        }, heap -> {
+            for (int i = 0; i < size; i++) {
+                heap.insert(heap.extractMax() - keys[i] % 1024);
+            }
+            return 2L * size;
+        });
+        // the harness closes each OffHeapHeap after its invocation, outside the timed region
+        BenchmarkHarness.measureWithGc("OffHeapHeap (keys and ids)", () -> {
+            OffHeapHeap heap = new OffHeapHeap(size);
+            for (int i = 0; i < size; i++) {
+                heap.insert(keys[i], i);
+            }
+            return heap;
+        }, heap -> {
+            for (int i = 0; i < size; i++) {
+                long key = heap.findMaxKey();
+                long id = heap.extractMax();
+                heap.insert(key - keys[i] % 1024, id);
+            }
+            return 2L * size;
+        });
+    }
+
+    /**
+     * Getting the first k results out of a full heap: draining everything into a sorted list first, against
+     * drainingIterator (extracts only k) and sortedIterator (leaves the heap intact).
+     * Reports the time until the k-th result; heaps that get consumed are rebuilt outside the timed region.
+     */
+    private static void lazySuite() throws Exception {
+        int size = 1_000_000;
+        int[] values = shuffledInts(size);
+        System.out.println("== first k of n=" + size + " in sorted order ==");
+        Heap<Integer> shared = new Heap<>();
+        insertAll(shared, values);
+
+        for (int k : new int[] {10, 1000, 100_000}) {
+            String suffix = " k=" + k;
+            reportLatency("drainTo(list), then first k" + suffix, k, BenchmarkHarness.run(() -> {
+                Heap<Integer> heap = new Heap<>();
+                insertAll(heap, values);
+                return heap;
+            }, heap -> {
+                List<Integer> sorted = new ArrayList<>(size);
+                heap.drainTo(sorted);
+                return sorted.subList(0, k).size();
+            }));
+            reportLatency("drainingIterator" + suffix, k, BenchmarkHarness.run(() -> {
+                Heap<Integer> heap = new Heap<>();
+                insertAll(heap, values);
+                return heap;
+            }, heap -> firstK(heap.drainingIterator(), k)));
+            reportLatency("sortedIterator (non-destructive)" + suffix, k, BenchmarkHarness.run(() -> shared,
+                    heap -> firstK(heap.sortedIterator(), k)));
+        }
+    }
+
+    private static long firstK(Iterator<Integer> sorted, int k) {
+        for (int i = 0; i < k; i++) {
+            sorted.next();
+        }
+        return k;
+    }
+
+    /**
+     * Prints a result of BenchmarkHarness.run() as the mean time one invocation of ops operations took.
+     */
+    private static void reportLatency(String label, int ops, double[] result) {
+        System.out.printf("%-44s %12.1f us  %10.1f B/op%n", label, ops / result[0] * 1e6, result[2]);
+    }
+
+    /**
+     * Heap<String> and ArrayHeap<String> against StringHeap (prefix keys) and StringHeap in UTF-8 mode, on
+     * log-like lines that share a long common prefix: insert and extractMax throughput, bytes retained per
+     * line, and the whole HeapSorter pipeline.
+     */
+    private static void stringSuite() throws Exception {
+        int size = 1_000_000;
+        List<String> lines = logLines(size);
+        System.out.println("== String heaps on log lines, n=" + size + " ==");
+
+        Map<String, Supplier<PriorityHeap<String>>> heaps = new LinkedHashMap<>();
+        heaps.put("Heap<String>", Heap::new);
+        heaps.put("ArrayHeap<String>", ArrayHeap::new);
+        heaps.put("StringHeap", StringHeap::new);
+        heaps.put("StringHeap (utf8)", () -> new StringHeap(true));
+
+        for (Map.Entry<String, Supplier<PriorityHeap<String>>> entry : heaps.entrySet()) {
+            Supplier<PriorityHeap<String>> factory = entry.getValue();
+            BenchmarkHarness.measure(entry.getKey() + " insert", factory::get, heap -> {
+                for (String line : lines) {
+                    heap.insert(line);
+                }
+                return size;
+            });
+            BenchmarkHarness.measure(entry.getKey() + " extractMax", () -> {
+                PriorityHeap<String> heap = factory.get();
+                heap.insertAll(lines);
+                return heap;
+            }, heap -> {
+                long checksum = 0;
+                for (int i = 0; i < size; i++) {
+                    checksum += heap.extractMax().length();
+                }
+                return checksum == 42 ? size + 1 : size;
+            });
+        }
+
+        // bytes retained per line, the lines themselves included (the heap keeps the only reference to them)
+        for (Map.Entry<String, Supplier<PriorityHeap<String>>> entry : heaps.entrySet()) {
+            double retained = BenchmarkHarness.retainedBytes(() -> {
+                PriorityHeap<String> heap = entry.getValue().get();
+                for (String line : lines) {
+                    heap.insert(new String(line.toCharArray())); // a deep copy, so the shared list does not keep the heap's lines alive
+                }
+                return heap;
+            }, size);
+            System.out.printf("%-44s %8.1f bytes/line retained%n", entry.getKey() + " footprint", retained);
+        }
+
+        byte[] input = String.join("\n", lines).concat("\n").getBytes(StandardCharsets.UTF_8);
+        for (String backend : new String[] {"linked", "array", "string", "utf8"}) {
+            BenchmarkHarness.measure("HeapSorter -Dheap.backend=" + backend, () -> sortLines(backend, input, size));
+        }
+        System.clearProperty("heap.backend");
+    }
+
+    /**
+     * Returns lines shaped like a web server log: a timestamp to the millisecond, a host, a request and a status.
+     */
+    private static List<String> logLines(int size) {
+        Random random = new Random(17);
+        List<String> lines = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            lines.add(String.format("2026-10-17T%02d:%02d:%02d.%03dZ host-%03d GET /api/v1/items/%d %d",
+                    random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000),
+                    random.nextInt(200), random.nextInt(1_000_000), random.nextBoolean() ? 200 : 404));
+        }
+        return lines;
+    }
+
+    /**
+     * Runs the whole HeapSorter pipeline on the given lines with the named backend, discarding the output.
+     */
+    private static long sortLines(String backend, byte[] lines, int count) throws Exception {
+        System.setProperty("heap.backend", backend);
+        HeapSorter.run(new String[] {"--batch", "--no-banner"}, new ByteArrayInputStream(lines), OutputStream.nullOutputStream());
+        return count;
+    }
+
+    /**
+     * HeapScheduler against ScheduledThreadPoolExecutor: schedule and cancel throughput with 1M timers
+     * pending, and how late timers fire when 1M of them come due over two seconds.
+     */
+    private static void schedulerSuite() throws Exception {
+        int size = 1_000_000;
+        System.out.println("== timers, n=" + size + " ==");
+        long[] delays = new long[size];
+        Random random = new Random(22);
+        for (int i = 0; i < size; i++) {
+            delays[i] = TimeUnit.HOURS.toNanos(1) + random.nextInt(1_000_000_000); // far enough out that none fire
+        }
+        Runnable nothing = () -> { };
+
+        // the harness closes each scheduler (and shuts down each executor) once its invocation has been timed
+        BenchmarkHarness.measure("HeapScheduler.schedule", HeapScheduler::new, scheduler -> {
+            long start = System.nanoTime();
+            for (long delay : delays) {
+                scheduler.schedule(nothing, start + delay);
+            }
+            return size;
+        });
+        BenchmarkHarness.measure("HeapScheduler.cancel (random order)", () -> {
+            HeapScheduler scheduler = new HeapScheduler();
+            Pending<HeapScheduler, HeapScheduler.Timer> pending = new Pending<>(scheduler, scheduler::close);
+            long start = System.nanoTime();
+            for (long delay : delays) {
+                pending.timers.add(pending.owner.schedule(nothing, start + delay));
+            }
+            Collections.shuffle(pending.timers, random);
+            return pending;
+        }, pending -> {
+            for (HeapScheduler.Timer timer : pending.timers) {
+                pending.owner.cancel(timer);
+            }
+            return size;
+        });
+        BenchmarkHarness.measure("ScheduledThreadPoolExecutor.schedule", ClosingExecutor::new, executor -> {
+            for (long delay : delays) {
+                executor.schedule(nothing, delay, TimeUnit.NANOSECONDS);
+            }
+            return size;
+        });
+        BenchmarkHarness.measure("ScheduledFuture.cancel (random order)", () -> {
+            ClosingExecutor executor = new ClosingExecutor();
+            Pending<ClosingExecutor, ScheduledFuture<?>> pending = new Pending<>(executor, executor::close);
+            for (long delay : delays) {
+                pending.timers.add(pending.owner.schedule(nothing, delay, TimeUnit.NANOSECONDS));
+            }
+            Collections.shuffle(pending.timers, random);
+            return pending;
+        }, pending -> {
+            for (ScheduledFuture<?> future : pending.timers) {
+                future.cancel(false);
+            }
+            return size;
+        });
+
+        // firing latency: every timer records how long after its deadline it started running
+        for (int round = 0; round < 2; round++) {
+            boolean measured = round == 1; // the first pass warms up
+            try (HeapScheduler scheduler = new HeapScheduler()) {
+                long[] lateness = fireAll(size, random, (task, deadline) -> scheduler.schedule(task, deadline));
+                if (measured) {
+                    reportLateness("HeapScheduler firing lateness", lateness);
+                }
+            }
+            try (ClosingExecutor executor = new ClosingExecutor()) {
+                long[] lateness = fireAll(size, random,
+                        (task, deadline) -> executor.schedule(task, deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+                if (measured) {
+                    reportLateness("ScheduledThreadPoolExecutor firing lateness", lateness);
+                }
+            }
+        }
+    }
+
+    /**
+     * Timers scheduled during setup, waiting to be cancelled by the timed body; closing it closes their owner.
+     */
+    private static final class Pending<O, T> implements AutoCloseable {
+        final O owner;
+        final List<T> timers = new ArrayList<>();
+        private final Runnable shutdown;
+
+        Pending(O owner, Runnable shutdown) {
+            this.owner = owner;
+            this.shutdown = shutdown;
+        }
+
+        @Override
+        public void close() {
+            shutdown.run();
+        }
+    }
+
+    /**
+     * A one-thread ScheduledThreadPoolExecutor that removes cancelled tasks at once (otherwise they stay queued until
+     * their deadline) and can be closed like a HeapScheduler.
+     */
+    private static final class ClosingExecutor extends ScheduledThreadPoolExecutor implements AutoCloseable {
+        ClosingExecutor() {
+            super(1);
+            setRemoveOnCancelPolicy(true);
+        }
+
+        @Override
+        public void close() {
+            shutdownNow();
+        }
+    }
+
+    /**
+     * Schedules size timers through the given function, due at random times between 0.5 and 2.5 seconds from now,
+     * waits for all of them to fire and returns how late each one started (in ns).
+     */
+    private static long[] fireAll(int size, Random random, ObjLongConsumer<Runnable> schedule) throws InterruptedException {
+        long[] lateness = new long[size];
+        CountDownLatch fired = new CountDownLatch(size);
+        long base = System.nanoTime() + 500_000_000L; // leaves time to schedule all of them before the first is due
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            long deadline = base + random.nextInt(2_000_000_000);
+            schedule.accept(() -> {
+                lateness[index] = System.nanoTime() - deadline;
+                fired.countDown(); // also publishes the write above to the waiting thread
+            }, deadline);
+        }
+        fired.await();
+        return lateness;
+    }
+
+    private static void reportLateness(String label, long[] lateness) {
+        long[] sorted = lateness.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-44s p50 %8.1f us  p99 %8.1f us  p99.9 %8.1f us  max %8.1f us%n", label,
+                sorted[sorted.length / 2] / 1e3, sorted[(int) (sorted.length * 0.99)] / 1e3,
+                sorted[(int) (sorted.length * 0.999)] / 1e3, sorted[sorted.length - 1] / 1e3);
+    }
+
+    /**
+     * A bounded buffer that evicts from the low end and serves from the high end: MinMaxHeap against the two-heap
+     * arrangement it replaces (a max IndexedHeap and a min IndexedHeap holding the same entries, each entry keeping
+     * its handle in the other heap so a removal from one can be mirrored in the other).
+     * The buffer is filled to the window size, then every operation inserts a new item and removes either the
+     * minimum (evict) or the maximum (serve), alternately, so the size stays the same.
+     */
+    private static void minMaxSuite() throws Exception {
+        int window = 100_000;
+        int operations = 1_000_000;
+        int[] values = shuffledInts(window + operations);
+        System.out.println("== bounded buffer: insert + alternate extractMin / extractMax, window=" + window + " ==");
+
+        Supplier<MinMaxHeap<Integer>> minMaxHeap = () -> {
+            MinMaxHeap<Integer> heap = new MinMaxHeap<>();
+            for (int i = 0; i < window; i++) {
+                heap.insert(values[i]);
+            }
+            return heap;
+        };
+        Supplier<TwoHeapBuffer> twoHeaps = () -> {
+            TwoHeapBuffer buffer = new TwoHeapBuffer();
+            for (int i = 0; i < window; i++) {
+                buffer.insert(values[i]);
+            }
+            return buffer;
+        };
+
+        BenchmarkHarness.measure("MinMaxHeap", minMaxHeap::get, heap -> {
+            long checksum = 0;
+            for (int i = 0; i < operations; i++) {
+                heap.insert(values[window + i]);
+                checksum += (i & 1) == 0 ? heap.extractMin() : heap.extractMax();
+            }
+            return checksum == 42 ? operations + 1 : operations;
+        });
+        BenchmarkHarness.measure("two IndexedHeaps with cross-deletion", twoHeaps::get, buffer -> {
+            long checksum = 0;
+            for (int i = 0; i < operations; i++) {
+                buffer.insert(values[window + i]);
+                checksum += (i & 1) == 0 ? buffer.extractMin() : buffer.extractMax();
+            }
+            return checksum == 42 ? operations + 1 : operations;
+        });
+
+        System.out.printf("%-44s %8.1f bytes/element retained%n", "MinMaxHeap footprint",
+                BenchmarkHarness.retainedBytes(minMaxHeap::get, window));
+        System.out.printf("%-44s %8.1f bytes/element retained%n", "two IndexedHeaps footprint",
+                BenchmarkHarness.retainedBytes(twoHeaps::get, window));
+    }
+
+    /**
+     * The double-ended buffer built from two single-ended heaps.
+     */
+    private static final class TwoHeapBuffer {
+        private static final class Entry {
+            final int value;
+            IndexedHeap.Handle<Entry> inMax;
+            IndexedHeap.Handle<Entry> inMin;
+
+            Entry(int value) {
+                this.value = value;
+            }
+        }
+
+        final IndexedHeap<Entry> max = new IndexedHeap<>(Comparator.comparingInt(entry -> entry.value), HeapOrder.MAX);
+        final IndexedHeap<Entry> min = new IndexedHeap<>(Comparator.comparingInt(entry -> entry.value), HeapOrder.MIN);
+
+        void insert(int value) {
+            Entry entry = new Entry(value); // boxed once, like the MinMaxHeap<Integer> it is compared with
+            entry.inMax = max.insert(entry);
+            entry.inMin = min.insert(entry);
+        }
+
+        int extractMax() throws Exception {
+            Entry entry = max.extractMax();
+            min.remove(entry.inMin);
+            return entry.value;
+        }
+
+        int extractMin() throws Exception {
+            Entry entry = min.extractMax(); // the root of a MIN-ordered heap is its minimum
+            max.remove(entry.inMax);
+            return entry.value;
+        }
+    }
+
+    /**
+     * The linked Heap under steady insert/extract churn with and without its node pool: throughput, bytes
+     * allocated per operation (JMH -prof gc's gc.alloc.rate.norm) and the collections the churn caused.
+     * The items are boxed up front, so the only allocation left in the loop is the heap's own nodes.
+     */
+    private static void nodePoolSuite(Map<String, String> params) throws Exception {
+        for (String sizeText : BenchmarkHarness.listParam(params, "sizes", "1000,1000000")) {
+            int size = Integer.parseInt(sizeText.replace("_", ""));
+            Integer[] values = shuffledIntegers(size);
+            System.out.println("== linked Heap churn, 1:1 insert/extract, n=" + size + " ==");
+            for (int capacity : new int[] {0, 16, 64}) {
+                String label = capacity == 0 ? "Heap (no node pool)" : "Heap (node pool capacity " + capacity + ")";
+                BenchmarkHarness.measureWithGc(label, () -> {
+                    Heap<Integer> heap = new Heap<>();
+                    heap.setNodePoolCapacity(capacity);
+                    insertAll(heap, values);
+                    return heap;
+                }, heap -> {
+                    // extract a burst of 64, then put the same number back, so the pool is exercised as a buffer
+                    for (int i = 0; i < size; i += 64) {
+                        int burst = Math.min(64, size - i);
+                        for (int j = 0; j < burst; j++) {
+                            heap.extractMax();
+                        }
+                        for (int j = 0; j < burst; j++) {
+                            heap.insert(values[i + j]);
+                        }
+                    }
+                    return 2L * size;
+                });
+            }
+        }
+    }
+
+    /**
+     * Boxed Heap<Integer> / ArrayHeap<Integer> against the primitive IntHeap: throughput (boxing included,
+     * since callers start from ints), bytes retained per element, and bytes allocated per extract+insert
+     * once the heap has reached its working size.
+     */
+    private static void primitiveSuite() throws Exception {
+        System.out.println("== Heap<Integer> vs IntHeap ==");
+        for (int size : SIZES) {
+            int[] values = shuffledInts(size);
+            String suffix = " n=" + size;
+            Map<String, Supplier<PriorityHeap<Integer>>> boxed = new LinkedHashMap<>();
+            boxed.put("Heap<Integer>", Heap::new);
+            boxed.put("ArrayHeap<Integer>", ArrayHeap::new);
+
+            for (Map.Entry<String, Supplier<PriorityHeap<Integer>>> entry : boxed.entrySet()) {
+                Supplier<PriorityHeap<Integer>> factory = entry.getValue();
+                BenchmarkHarness.Setup<PriorityHeap<Integer>> filled = () -> {
+                    PriorityHeap<Integer> heap = factory.get();
+                    insertAll(heap, values);
+                    return heap;
+                };
+                BenchmarkHarness.measure(entry.getKey() + " insert    " + suffix, factory::get, heap -> insertAll(heap, values));
+                BenchmarkHarness.measure(entry.getKey() + " extractMax" + suffix, filled, HeapBenchmark::drain);
+                // steady state: the heap keeps its size while items churn through it
+                BenchmarkHarness.measure(entry.getKey() + " churn     " + suffix, filled, heap -> churn(heap, values));
+                System.out.printf("%-44s %8.1f bytes/element retained%n", entry.getKey() + " footprint " + suffix,
+                        BenchmarkHarness.retainedBytes(filled, size));
+            }
+
+            BenchmarkHarness.Setup<IntHeap> filledInts = () -> {
+                IntHeap heap = new IntHeap();
+                insertAll(heap, values);
+                return heap;
+            };
+            BenchmarkHarness.measure("IntHeap insert    " + suffix, IntHeap::new, heap -> insertAll(heap, values));
+            BenchmarkHarness.measure("IntHeap extractMax" + suffix, filledInts, heap -> {
+                long checksum = 0;
+                for (int i = 0; i < size; i++) {
+                    checksum += heap.extractMax();
+                }
+                return checksum == 42 ? size + 1 : size;
+            });
+            BenchmarkHarness.measure("IntHeap churn     " + suffix, filledInts, heap -> {
+                for (int value : values) {
+                    heap.extractMax();
+                    heap.insert(value);
+                }
+                return size;
+            });
+            System.out.printf("%-44s %8.1f bytes/element retained%n", "IntHeap footprint " + suffix,
+                    BenchmarkHarness.retainedBytes(filledInts, size));
+        }
+    }
+
+    /**
+     * Building a heap with one insert per item against the bottom-up bulk build.
+     */
+    private static void bulkSuite() throws Exception {
+        System.out.println("== one insert per item vs bulk build ==");
+        for (int size : SIZES) {
+            Integer[] ascending = shuffledIntegers(size);
+            Arrays.sort(ascending); // ascending input is the worst case for one-at-a-time sift-up
+
+            bulkBuild("random", shuffledIntegers(size));
+            bulkBuild("ascending", ascending);
+        }
+    }
+
+    private static void bulkBuild(String order, Integer[] values) throws Exception {
+        String suffix = " " + order + " n=" + values.length;
+        List<Integer> list = Arrays.asList(values);
+
+        BenchmarkHarness.measure("Heap insert loop" + suffix, () -> insertAll(new Heap<>(), values));
+        BenchmarkHarness.measure("Heap.fromCollection" + suffix, () -> Heap.fromCollection(list).size());
+        BenchmarkHarness.measure("ArrayHeap insert loop" + suffix, () -> insertAll(new ArrayHeap<>(), values));
+        BenchmarkHarness.measure("new ArrayHeap(values)" + suffix, () -> new ArrayHeap<>(list).size());
+    }
+
+    private static long insertAll(PriorityHeap<Integer> heap, Integer[] values) {
+        for (Integer value : values) {
+            heap.insert(value);
+        }
+        return values.length;
+    }
+
+    private static long insertAll(PriorityHeap<Integer> heap, int[] values) {
+        for (int value : values) {
+            heap.insert(value);
+        }
+        return values.length;
+    }
+
+    private static long insertAll(IntHeap heap, int[] values) {
+        for (int value : values) {
+            heap.insert(value);
+        }
+        return values.length;
+    }
+
+    /**
+     * Extracts every item. The checksum keeps the extracted values observable to the JIT.
+     */
+    private static long drain(PriorityHeap<Integer> heap) throws Exception {
+        int size = heap.size();
+        long checksum = 0;
+        for (int i = 0; i < size; i++) {
+            checksum += heap.extractMax();
+        }
+        return checksum == 42 ? size + 1 : size;
+    }
+
+    /**
+     * One extractMax and one insert per value, so the heap keeps its size.
+     */
+    private static long churn(PriorityHeap<Integer> heap, int[] values) throws Exception {
+        for (int value : values) {
+            heap.extractMax();
+            heap.insert(value);
+        }
+        return values.length;
+    }
+
+    /**
+     * Creates an empty heap of the named backend.
+     */
+    private static <T> PriorityHeap<T> newHeap(String backend) {
+        switch (backend) {
+            case "linked":
+                return new Heap<T>();
+            case "array":
+                return new ArrayHeap<T>();
+            case "pairing":
+                return new PairingHeap<T>();
+            case "minmax":
+                return new MinMaxHeap<T>();
+            default:
+                if (backend.startsWith("dary")) {
+                    return new DaryHeap<T>(Integer.parseInt(backend.substring(4))); // e.g. dary4
+                }
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+    }
+
+    private static PriorityHeap<Comparable<?>> filledHeap(String backend, List<Comparable<?>> data) {
+        PriorityHeap<Comparable<?>> heap = newHeap(backend);
+        for (Comparable<?> item : data) {
+            heap.insert(item);
+        }
+        return heap;
+    }
+
+    private static <H extends PriorityHeap<Integer>> List<H> fillShards(Supplier<H> factory, int[] values, int shards) {
+        List<H> heaps = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            heaps.add(factory.get());
+        }
+        for (int i = 0; i < values.length; i++) {
+            heaps.get(i % shards).insert(values[i]);
+        }
+        return heaps;
+    }
+
+    /**
+     * Moves every item of the other shards into the first one.
+     * @return : the number of items in all the shards
+     */
+    private static long drainShards(List<? extends PriorityHeap<Integer>> heaps) throws Exception {
+        PriorityHeap<Integer> target = heaps.get(0);
+        for (int i = 1; i < heaps.size(); i++) {
+            PriorityHeap<Integer> shard = heaps.get(i);
+            while (!shard.isEmpty()) {
+                target.insert(shard.extractMax());
+            }
+        }
+        return target.size();
+    }
+
+    /**
+     * Returns size items of the given type in the given order. Strings are zero-padded numbers, so
+     * their order matches the numbers' and they share long common prefixes, much like log lines.
+     */
+    private static List<Comparable<?>> matrixData(int size, String type, String order) {
+        int[] numbers = shuffledInts(size);
+        switch (order) {
+            case "random":
+                break;
+            case "sorted":
+                Arrays.sort(numbers);
+                break;
+            case "reverse":
+                Arrays.sort(numbers);
+                for (int i = 0, j = size - 1; i < j; i++, j--) {
+                    int temp = numbers[i];
+                    numbers[i] = numbers[j];
+                    numbers[j] = temp;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown order: " + order);
+        }
+
+        List<Comparable<?>> data = new ArrayList<>(size);
+        for (int number : numbers) {
+            switch (type) {
+                case "Integer":
+                    data.add(number);
+                    break;
+                case "String":
+                    data.add(String.format("%012d", number));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown type: " + type);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] joinLines(List<Comparable<?>> data) {
+        StringBuilder text = new StringBuilder();
+        for (Comparable<?> item : data) {
+            text.append(item).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the numbers 1..size, boxed, in random order.
+     * @param size how many numbers to generate
+     * @return : the shuffled numbers
+     */
+    private static Integer[] shuffledIntegers(int size) {
+        ArrayList<Integer> numList = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            numList.add(i);
+        }
+        Collections.shuffle(numList);
+        return numList.toArray(new Integer[0]);
+    }
+
+    /**
+     * Returns the numbers 1..size in random order.
+     * @param size how many numbers to generate
+     * @return : the shuffled numbers
+     */
+    private static int[] shuffledInts(int size) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i + 1;
+        }
+        Random random = new Random();
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = values[i];
+            values[i] = values[j];
+            values[j] = temp;
+        }
+        return values;
+    }
+}
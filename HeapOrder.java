@@ -0,0 +1,24 @@
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Which end of the ordering a heap keeps at its root.
+ * MAX keeps the largest item on top (the default); MIN keeps the smallest item on top, so
+ * findMax/extractMax return the minimum instead.
+ */
+public enum HeapOrder {
+    MAX,
+    MIN;
+
+    /**
+     * Returns the comparator a max heap should use to give this order.
+     * @param comparator the ordering of the items, or null for their natural ordering
+     * @return : the comparator to sift with, or null for the items' natural ordering
+     */
+    <T> Comparator<? super T> applyTo(Comparator<? super T> comparator) {
+        if (this == MAX) {
+            return comparator;
+        }
+        return comparator == null ? Collections.reverseOrder() : Collections.reverseOrder(comparator);
+    }
+}
@@ -0,0 +1,316 @@
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs tasks at given deadlines, keeping the pending ones in an IndexedHeap ordered by deadline
+ * (HeapOrder.MIN, so the root is always the next timer to fire and a cancelled timer is removed in O(log n)).
+ * A single timer thread parks until the earliest deadline instead of polling. Scheduling a timer that
+ * becomes the new earliest wakes it up early, so it can go back to sleep for the shorter time.
+ * When timers are due, the thread takes up to maxBatch of them from the heap under one lock. Outside the lock
+ * it hands the batch to the dispatcher as one task, which runs the timers' tasks in deadline order. A burst
+ * of timers therefore costs one lock round trip and one executor handoff per batch, and a slow task never
+ * holds up the timer thread. It does delay the tasks after it in the same batch, so a scheduler whose tasks
+ * may block should use maxBatch 1, which gives every task its own dispatch.
+ * The default dispatcher runs every batch on its own virtual thread (Executors.newVirtualThreadPerTaskExecutor).
+ * It is looked up reflectively, so this class still compiles and runs on JDKs before 21, which use a small
+ * pool of daemon threads instead.
+ * Deadlines are System.nanoTime() values, compared by their difference as ScheduledThreadPoolExecutor does.
+ */
+public class HeapScheduler implements AutoCloseable {
+
+    private static final int DEFAULT_BATCH = 256;
+
+    /**
+     * A task scheduled for a deadline, returned by schedule. Timers with the same deadline fire in the order they were scheduled.
+     */
+    public static final class Timer implements Comparable<Timer> {
+        private final Runnable task;
+        private final long deadline;
+        private final long sequence; // breaks ties between equal deadlines
+        private IndexedHeap.Handle<Timer> handle; // set while the timer is pending; guarded by the scheduler's lock
+        private volatile boolean cancelled;
+
+        private Timer(Runnable task, long deadline, long sequence) {
+            this.task = task;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Returns the time this timer fires at.
+         * @return : the deadline, as a System.nanoTime() value
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Returns whether the timer was cancelled before it fired.
+         * @return : true if cancel succeeded for this timer
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            // the difference, not the values, so that deadlines on either side of a nanoTime wraparound still order correctly
+            int byDeadline = Long.compare(deadline - other.deadline, 0);
+            return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final IndexedHeap<Timer> timers = new IndexedHeap<>(HeapOrder.MIN);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition(); // signalled when a new earliest timer arrives or on close
+    private final Executor dispatcher;
+    private final boolean ownsDispatcher; // only a dispatcher this scheduler created is shut down by close
+    private final int maxBatch;
+    private final Thread timerThread;
+    private long nextSequence;
+    private boolean closed;
+
+    /**
+     * Construct a scheduler that runs each task on its own virtual thread (or a small daemon pool before JDK 21).
+     */
+    public HeapScheduler() {
+        this(defaultDispatcher(), DEFAULT_BATCH, true);
+    }
+
+    /**
+     * Construct a scheduler that hands due tasks to the given executor.
+     * @param dispatcher runs the tasks (close does not shut it down)
+     * @param maxBatch the most due timers taken from the heap per lock acquisition
+     */
+    public HeapScheduler(Executor dispatcher, int maxBatch) {
+        this(dispatcher, maxBatch, false);
+    }
+
+    private HeapScheduler(Executor dispatcher, int maxBatch, boolean ownsDispatcher) {
+        if (dispatcher == null) {
+            throw new NullPointerException();
+        }
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        this.dispatcher = dispatcher;
+        this.ownsDispatcher = ownsDispatcher;
+        this.maxBatch = maxBatch;
+        timerThread = new Thread(this::runTimers, "HeapScheduler");
+        timerThread.setDaemon(true);
+        timerThread.start();
+    }
+
+    /**
+     * Schedules a task to run at the given time.
+     * @param task the task to run
+     * @param deadline when to run it, as a System.nanoTime() value (a deadline already past runs as soon as possible)
+     * @return : the timer, which can be passed to cancel
+     */
+    public Timer schedule(Runnable task, long deadline) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Scheduler is closed");
+            }
+            Timer timer = new Timer(task, deadline, nextSequence++);
+            timer.handle = timers.insert(timer);
+            // only a new earliest timer changes how long the timer thread should sleep
+            if (earliest() == timer) {
+                wakeUp.signal();
+            }
+            return timer;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Schedules a task to run after the given delay.
+     * @param task the task to run
+     * @param delay how long from now to run it
+     * @param unit the unit of delay
+     * @return : the timer, which can be passed to cancel
+     */
+    public Timer schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, System.nanoTime() + unit.toNanos(delay));
+    }
+
+    /**
+     * Removes a timer that has not fired yet, so its task never runs.
+     * @param timer a timer returned by schedule
+     * @return : true if the timer was pending and is now cancelled, false if it had already fired or been cancelled
+     */
+    public boolean cancel(Timer timer) {
+        lock.lock();
+        try {
+            if (timer.handle == null || !timers.contains(timer.handle)) {
+                return false;
+            }
+            // the timer thread may wake for this deadline and find nothing due; it then parks again for the next one
+            timers.remove(timer.handle);
+            timer.handle = null;
+            timer.cancelled = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The timer thread: park until the earliest deadline, then dispatch every due timer in batches.
+     */
+    private void runTimers() {
+        lock.lock();
+        try {
+            while (!closed) {
+                Timer next = earliest();
+                if (next == null) {
+                    wakeUp.await();
+                    continue;
+                }
+                long wait = next.deadline - System.nanoTime();
+                if (wait > 0) {
+                    wakeUp.awaitNanos(wait); // an earlier timer or close signals before then
+                    continue;
+                }
+
+                List<Timer> batch = new ArrayList<>(Math.min(maxBatch, timers.size()));
+                long now = System.nanoTime();
+                while (batch.size() < maxBatch && next != null && next.deadline - now <= 0) {
+                    timers.remove(next.handle);
+                    next.handle = null;
+                    batch.add(next);
+                    next = earliest();
+                }
+
+                // hand the batch over without the lock, so schedule and cancel are never held up by the dispatcher
+                lock.unlock();
+                try {
+                    dispatch(batch);
+                } finally {
+                    lock.lock();
+                }
+            }
+        } catch (InterruptedException e) {
+            // nothing in this class interrupts the timer thread, so someone wants it gone: stop taking timers
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch(List<Timer> batch) {
+        Runnable runBatch = () -> {
+            for (Timer timer : batch) {
+                try {
+                    timer.task.run();
+                } catch (RuntimeException | Error failure) {
+                    // report it as an executor would, without skipping the rest of the batch
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, failure);
+                }
+            }
+        };
+        try {
+            dispatcher.execute(runBatch);
+        } catch (RejectedExecutionException e) {
+            runBatch.run(); // the dispatcher has been shut down: run the batch here rather than lose it
+        }
+    }
+
+    /**
+     * Returns the pending timer with the earliest deadline. Must be called with the lock held.
+     * @return : the timer, or null if none is pending
+     */
+    private Timer earliest() {
+        if (timers.isEmpty()) {
+            return null;
+        }
+        try {
+            return timers.findMax();
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // the heap was just checked to be non-empty
+        }
+    }
+
+    /**
+     * Returns the number of timers that have neither fired nor been cancelled.
+     * @return : the number of pending timers
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return timers.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the timer thread. Pending timers are discarded at once (without being marked cancelled), so size()
+     * returns 0 and their tasks can be garbage collected. Tasks already handed to the dispatcher still run, and
+     * the default dispatcher is shut down once they finish. close waits for the timer thread to exit, unless it
+     * is called from the timer thread itself (by a task run inline) or the caller is interrupted while waiting,
+     * in which case it stops waiting and restores the interrupt status. Calling close more than once has no effect.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            while (!timers.isEmpty()) {
+                Timer timer = earliest();
+                timers.remove(timer.handle);
+                timer.handle = null;
+            }
+            wakeUp.signal();
+        } finally {
+            lock.unlock();
+        }
+        // the timer thread runs a batch itself when the dispatcher rejects it, and cannot wait for itself to exit
+        if (Thread.currentThread() != timerThread) {
+            try {
+                timerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // the timer thread is already on its way out, so just stop waiting
+            }
+        }
+        if (ownsDispatcher) {
+            ((ExecutorService) dispatcher).shutdown();
+        }
+    }
+
+    /**
+     * Returns a virtual-thread-per-task executor on JDK 21 and later, or a pool of daemon threads (one per processor) before that.
+     */
+    private static ExecutorService defaultDispatcher() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // not available (or a preview feature that is not enabled) on this JDK
+        }
+        ThreadFactory daemons = task -> {
+            Thread thread = new Thread(task, "HeapScheduler-worker");
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), daemons);
+    }
+}
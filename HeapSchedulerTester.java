@@ -0,0 +1,134 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HeapSchedulerTester {
+    private static final long MILLIS = 1_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        // Timers fire in deadline order, not scheduling order, and a cancelled timer never fires
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch fired = new CountDownLatch(3);
+        HeapScheduler scheduler = new HeapScheduler();
+        long now = System.nanoTime();
+        HeapScheduler.Timer far = scheduler.schedule(() -> order.add(9), now + TimeUnit.SECONDS.toNanos(30));
+        scheduler.schedule(() -> { order.add(2); fired.countDown(); }, now + 200 * MILLIS);
+        scheduler.schedule(() -> { order.add(1); fired.countDown(); }, now + 100 * MILLIS); // the new earliest wakes the timer thread
+        HeapScheduler.Timer cancelled = scheduler.schedule(() -> order.add(7), now + 150 * MILLIS);
+        scheduler.schedule(() -> { order.add(0); fired.countDown(); }, now - 1); // already due
+        if (!scheduler.cancel(cancelled) || scheduler.cancel(cancelled) || !cancelled.isCancelled()) {
+            throw new AssertionError("cancel should succeed exactly once");
+        }
+        if (!fired.await(5, TimeUnit.SECONDS)) {
+            throw new AssertionError("due timers did not fire");
+        }
+        if (System.nanoTime() - now < 200 * MILLIS) {
+            throw new AssertionError("a timer fired before its deadline");
+        }
+        Thread.sleep(100);
+        if (!order.equals(Arrays.asList(0, 1, 2))) {
+            throw new AssertionError("timers fired in the order " + order);
+        }
+        System.out.println("deadline order and cancel: ok");
+
+        // close discards the pending timer at once: size() is 0 and cancel has nothing left to find
+        if (scheduler.size() != 1) {
+            throw new AssertionError("size " + scheduler.size() + " before close, expected 1");
+        }
+        scheduler.close();
+        scheduler.close(); // a second close has no effect
+        if (scheduler.size() != 0 || scheduler.cancel(far) || far.isCancelled()) {
+            throw new AssertionError("close left a pending timer behind");
+        }
+        try {
+            scheduler.schedule(() -> { }, 0);
+            throw new AssertionError("a closed scheduler accepted a timer");
+        } catch (IllegalStateException expected) {
+            System.out.println("close discards pending timers: ok");
+        }
+
+        // Many timers with random cancels: every timer that was not cancelled fires exactly once
+        scheduler = new HeapScheduler();
+        int n = 100_000;
+        AtomicInteger count = new AtomicInteger();
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+        List<HeapScheduler.Timer> timers = new ArrayList<>();
+        long base = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            timers.add(scheduler.schedule(count::incrementAndGet, base + random.nextInt(300) * MILLIS));
+        }
+        int cancels = 0;
+        for (int i = 0; i < n; i += 3) {
+            if (scheduler.cancel(timers.get(i))) {
+                cancels++;
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (count.get() < n - cancels && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        if (count.get() != n - cancels) {
+            throw new AssertionError(count.get() + " timers fired, expected " + (n - cancels));
+        }
+        for (HeapScheduler.Timer timer : timers) {
+            if (scheduler.cancel(timer)) {
+                throw new AssertionError("a timer could be cancelled after it fired");
+            }
+        }
+        scheduler.close();
+        System.out.println(n + " timers with " + cancels + " cancelled: ok");
+
+        // close from inside a task: on a dispatcher thread, and on the timer thread itself (a rejected batch runs
+        // there inline), where waiting for the timer thread to exit would never return
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        closeFromTask(new HeapScheduler(pool, 1), "a dispatcher thread");
+        pool.shutdown();
+        ExecutorService rejecting = Executors.newSingleThreadExecutor();
+        rejecting.shutdown(); // every batch is rejected, so it runs on the timer thread
+        closeFromTask(new HeapScheduler(rejecting, 1), "the timer thread");
+        System.out.println("close from a task, including one on the timer thread: ok");
+
+        // An interrupted close stops waiting and keeps the interrupt for the caller
+        HeapScheduler busy = new HeapScheduler(Executors.newSingleThreadExecutor(), 1);
+        CountDownLatch running = new CountDownLatch(1);
+        busy.schedule(() -> {
+            running.countDown();
+            try {
+                Thread.sleep(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 0);
+        running.await();
+        Thread.currentThread().interrupt();
+        busy.close(); // must neither throw nor swallow the interrupt
+        if (!Thread.interrupted()) {
+            throw new AssertionError("close cleared the caller's interrupt status");
+        }
+        System.out.println("interrupted close restores the interrupt status: ok");
+        System.exit(0); // the busy scheduler's executor thread is not a daemon
+    }
+
+    private static void closeFromTask(HeapScheduler scheduler, String where) throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        scheduler.schedule(() -> { }, System.nanoTime() + TimeUnit.SECONDS.toNanos(30)); // pending when close runs
+        scheduler.schedule(() -> {
+            scheduler.close();
+            closed.countDown();
+        }, 0);
+        if (!closed.await(5, TimeUnit.SECONDS)) {
+            throw new AssertionError("close from a task on " + where + " did not return");
+        }
+        if (scheduler.size() != 0) {
+            throw new AssertionError("close from a task on " + where + " left " + scheduler.size() + " timers pending");
+        }
+    }
+}
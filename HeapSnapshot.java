@@ -0,0 +1,443 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Saves a heap to a compact binary file and loads it back without re-sifting.
+ * A heap's level order (root first, then each level left to right) is already a valid heap, so a
+ * restore only has to put the items back in the same order: O(n) reads and no comparisons at all.
+ *
+ * File layout (big-endian):
+ *   int    magic "HEAP"
+ *   short  format version (1)
+ *   byte   element kind: 'I' int, 'L' long, 'D' double, 'O' objects written by a Codec
+ *   byte   reserved (0)
+ *   int    size (number of items)
+ *   ...    the items in level order: 4 or 8 bytes each for primitives, whatever the Codec writes for objects
+ *
+ * IntHeap, LongHeap and DoubleHeap are copied to and from the file in bulk, and restored through a
+ * memory-mapped FileChannel straight into the heap's new array. Object heaps go through a Codec; the
+ * restore reads the mapped file as a stream. The ordering is not saved: restore with the comparator
+ * the heap was saved with, or the result is not a valid heap.
+ * Before anything is allocated, a restore checks the size in the header against the length of the file.
+ * A truncated or corrupt snapshot therefore fails with an IOException instead of an OutOfMemoryError.
+ */
+public final class HeapSnapshot {
+
+    /**
+     * Writes and reads one item of an object heap. Every item must take at least one byte, so that a restore
+     * can reject a header that claims more items than the file could hold.
+     * @param <T> : The type of item stored in the heap.
+     */
+    public interface Codec<T> {
+        void write(T item, DataOutput out) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    /** Strings as a length-prefixed run of UTF-8 bytes (any length, unlike DataOutput.writeUTF). */
+    public static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        public void write(String item, DataOutput out) throws IOException {
+            byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Corrupt string length: " + length);
+            }
+            return new String(readBytes(in, length), StandardCharsets.UTF_8);
+        }
+    };
+
+    /** Boxed Integers as 4 bytes each. */
+    public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public void write(Integer item, DataOutput out) throws IOException {
+            out.writeInt(item);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    /** Boxed Longs as 8 bytes each. */
+    public static final Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public void write(Long item, DataOutput out) throws IOException {
+            out.writeLong(item);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    /** Boxed Doubles as 8 bytes each. */
+    public static final Codec<Double> DOUBLE = new Codec<Double>() {
+        @Override
+        public void write(Double item, DataOutput out) throws IOException {
+            out.writeDouble(item);
+        }
+
+        @Override
+        public Double read(DataInput in) throws IOException {
+            return in.readDouble();
+        }
+    };
+
+    private static final int MAGIC = 0x48454150; // "HEAP"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final byte KIND_INT = 'I';
+    private static final byte KIND_LONG = 'L';
+    private static final byte KIND_DOUBLE = 'D';
+    private static final byte KIND_OBJECT = 'O';
+
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+    private static final int MAP_WINDOW_BYTES = 1 << 30; // a single mapping cannot exceed 2 GB
+
+    private HeapSnapshot() {
+    }
+
+    /**
+     * Reads the given number of bytes, growing the array as they arrive rather than trusting the length up front,
+     * so a corrupt length runs into the end of the file (an EOFException) long before it exhausts the heap.
+     */
+    private static byte[] readBytes(DataInput in, int length) throws IOException {
+        byte[] bytes = new byte[Math.min(length, IO_BUFFER_BYTES)];
+        int filled = 0;
+        while (true) {
+            in.readFully(bytes, filled, bytes.length - filled);
+            filled = bytes.length;
+            if (filled == length) {
+                return bytes;
+            }
+            bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * filled));
+        }
+    }
+
+    /**
+     * Fills a buffer with items from index from onwards (count of them) in the primitive fast path.
+     */
+    private interface ChunkWriter {
+        void put(ByteBuffer buffer, int from, int count);
+    }
+
+    /**
+     * Copies count items starting at index from out of a mapped window of the file.
+     */
+    private interface ChunkReader {
+        void get(ByteBuffer window, int from, int count);
+    }
+
+    /**
+     * Saves a linked Heap.
+     * @param heap the heap to save (not modified)
+     * @param codec writes each item
+     * @param file the file to create or replace
+     */
+    public static <T> void save(Heap<T> heap, Codec<? super T> codec, Path file) throws IOException {
+        try (DataOutputStream out = openObjectOutput(file, heap.size())) {
+            for (int i = 0; i < heap.size(); i++) {
+                codec.write(heap.levelOrderItem(i), out);
+            }
+        }
+    }
+
+    /**
+     * Loads a linked Heap saved by save(Heap, ...), linking the nodes in their saved order without sifting.
+     * @param file the snapshot to read
+     * @param codec reads each item
+     * @param comparator the ordering the heap was saved with (null for the items' natural ordering)
+     * @return : the restored heap
+     */
+    public static <T> Heap<T> restoreHeap(Path file, Codec<? extends T> codec, Comparator<? super T> comparator) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int size = readHeader(channel, KIND_OBJECT, 1);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new MappedInput(channel, HEADER_BYTES), IO_BUFFER_BYTES));
+            Heap<T> heap = new Heap<T>(comparator);
+            for (int i = 0; i < size; i++) {
+                heap.appendInLevelOrder(codec.read(in));
+            }
+            return heap;
+        }
+    }
+
+    /**
+     * Saves an ArrayHeap.
+     * @param heap the heap to save (not modified)
+     * @param codec writes each item
+     * @param file the file to create or replace
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void save(ArrayHeap<T> heap, Codec<? super T> codec, Path file) throws IOException {
+        Object[] items = heap.levelOrder();
+        try (DataOutputStream out = openObjectOutput(file, heap.size())) {
+            for (int i = 0; i < heap.size(); i++) {
+                codec.write((T) items[i], out);
+            }
+        }
+    }
+
+    /**
+     * Loads an ArrayHeap saved by save(ArrayHeap, ...) (or save(Heap, ...): the format is the same),
+     * reading the items straight into the new heap's array.
+     * @param file the snapshot to read
+     * @param codec reads each item
+     * @param comparator the ordering the heap was saved with (null for the items' natural ordering)
+     * @return : the restored heap
+     */
+    public static <T> ArrayHeap<T> restoreArrayHeap(Path file, Codec<? extends T> codec, Comparator<? super T> comparator) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int size = readHeader(channel, KIND_OBJECT, 1);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new MappedInput(channel, HEADER_BYTES), IO_BUFFER_BYTES));
+            Object[] items = new Object[size];
+            for (int i = 0; i < size; i++) {
+                items[i] = codec.read(in);
+            }
+            return new ArrayHeap<T>(items, size, comparator);
+        }
+    }
+
+    /**
+     * Saves an IntHeap, 4 bytes per item.
+     * @param heap the heap to save (not modified)
+     * @param file the file to create or replace
+     */
+    public static void save(IntHeap heap, Path file) throws IOException {
+        int[] items = heap.levelOrder();
+        writePrimitives(file, KIND_INT, heap.size(), Integer.BYTES, (buffer, from, count) -> buffer.asIntBuffer().put(items, from, count));
+    }
+
+    /**
+     * Loads an IntHeap saved by save(IntHeap, ...), copying the mapped file straight into its array.
+     * @param file the snapshot to read
+     * @return : the restored heap
+     */
+    public static IntHeap restoreIntHeap(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int size = readHeader(channel, KIND_INT, Integer.BYTES);
+            int[] items = new int[size];
+            readPrimitives(channel, size, Integer.BYTES, (window, from, count) -> window.asIntBuffer().get(items, from, count));
+            return new IntHeap(items, size);
+        }
+    }
+
+    /**
+     * Saves a LongHeap, 8 bytes per item.
+     * @param heap the heap to save (not modified)
+     * @param file the file to create or replace
+     */
+    public static void save(LongHeap heap, Path file) throws IOException {
+        long[] items = heap.levelOrder();
+        writePrimitives(file, KIND_LONG, heap.size(), Long.BYTES, (buffer, from, count) -> buffer.asLongBuffer().put(items, from, count));
+    }
+
+    /**
+     * Loads a LongHeap saved by save(LongHeap, ...), copying the mapped file straight into its array.
+     * @param file the snapshot to read
+     * @return : the restored heap
+     */
+    public static LongHeap restoreLongHeap(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int size = readHeader(channel, KIND_LONG, Long.BYTES);
+            long[] items = new long[size];
+            readPrimitives(channel, size, Long.BYTES, (window, from, count) -> window.asLongBuffer().get(items, from, count));
+            return new LongHeap(items, size);
+        }
+    }
+
+    /**
+     * Saves a DoubleHeap, 8 bytes per item.
+     * @param heap the heap to save (not modified)
+     * @param file the file to create or replace
+     */
+    public static void save(DoubleHeap heap, Path file) throws IOException {
+        double[] items = heap.levelOrder();
+        writePrimitives(file, KIND_DOUBLE, heap.size(), Double.BYTES, (buffer, from, count) -> buffer.asDoubleBuffer().put(items, from, count));
+    }
+
+    /**
+     * Loads a DoubleHeap saved by save(DoubleHeap, ...), copying the mapped file straight into its array.
+     * @param file the snapshot to read
+     * @return : the restored heap
+     */
+    public static DoubleHeap restoreDoubleHeap(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int size = readHeader(channel, KIND_DOUBLE, Double.BYTES);
+            double[] items = new double[size];
+            readPrimitives(channel, size, Double.BYTES, (window, from, count) -> window.asDoubleBuffer().get(items, from, count));
+            return new DoubleHeap(items, size);
+        }
+    }
+
+    private static DataOutputStream openObjectOutput(Path file, int size) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_BYTES));
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        putHeader(header, KIND_OBJECT, size);
+        out.write(header.array());
+        return out;
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte kind, int size) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.put(kind);
+        buffer.put((byte) 0);
+        buffer.putInt(size);
+    }
+
+    /**
+     * Writes the header and then the items in buffer-sized chunks, each filled with one bulk put.
+     */
+    private static void writePrimitives(Path file, byte kind, int size, int width, ChunkWriter writer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_BYTES);
+            putHeader(buffer, kind, size);
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            int perChunk = IO_BUFFER_BYTES / width;
+            for (int from = 0; from < size; from += perChunk) {
+                int count = Math.min(perChunk, size - from);
+                buffer.clear();
+                writer.put(buffer, from, count); // the typed view shares the buffer's memory but not its position
+                buffer.limit(count * width);
+                writeFully(channel, buffer);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Maps the item section of the file in windows of at most MAP_WINDOW_BYTES and bulk-copies each one.
+     */
+    private static void readPrimitives(FileChannel channel, int size, int width, ChunkReader reader) throws IOException {
+        long expected = HEADER_BYTES + (long) size * width;
+        if (channel.size() != expected) {
+            throw new IOException("Snapshot is " + channel.size() + " bytes, expected " + expected);
+        }
+
+        int perWindow = MAP_WINDOW_BYTES / width;
+        for (int from = 0; from < size; from += perWindow) {
+            int count = Math.min(perWindow, size - from);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + (long) from * width, (long) count * width);
+            reader.get(window, from, count);
+        }
+    }
+
+    /**
+     * Reads and checks the header, including that the rest of the file is long enough for the items it promises.
+     * @param minItemBytes the fewest bytes one item can take
+     * @return : the number of items in the snapshot
+     */
+    private static int readHeader(FileChannel channel, byte expectedKind, int minItemBytes) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Snapshot is too short to hold a header");
+            }
+        }
+        header.flip();
+
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a heap snapshot");
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        byte kind = header.get();
+        if (kind != expectedKind) {
+            throw new IOException("Snapshot holds '" + (char) kind + "' items, expected '" + (char) expectedKind + "'");
+        }
+        header.get(); // reserved
+        int size = header.getInt();
+        if (size < 0) {
+            throw new IOException("Corrupt snapshot size: " + size);
+        }
+        long itemBytes = channel.size() - HEADER_BYTES;
+        if ((long) size * minItemBytes > itemBytes) {
+            throw new IOException("Snapshot claims " + size + " items but has only " + itemBytes + " bytes of items");
+        }
+        return size;
+    }
+
+    /**
+     * Streams a file from the given offset through read-only memory mappings, one window at a time.
+     */
+    private static final class MappedInput extends InputStream {
+        private final FileChannel channel;
+        private long position; // file offset of the start of the current window
+        private MappedByteBuffer window;
+
+        MappedInput(FileChannel channel, long offset) {
+            this.channel = channel;
+            this.position = offset;
+        }
+
+        /**
+         * Makes sure the current window has bytes left, mapping the next one if needed.
+         * @return : false at the end of the file
+         */
+        private boolean fill() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            if (window != null) {
+                position += window.capacity();
+            }
+            long remaining = channel.size() - position;
+            if (remaining <= 0) {
+                return false;
+            }
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(remaining, MAP_WINDOW_BYTES));
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? window.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, window.remaining());
+            window.get(bytes, off, count);
+            return count;
+        }
+    }
+}
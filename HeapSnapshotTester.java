@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+public class HeapSnapshotTester {
+    private static final int[] SIZES = {0, 1, 2, 1_000, 100_000};
+
+    /**
+     * A restore that is expected to throw an IOException.
+     */
+    private interface Restore {
+        void run() throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+        Path file = Files.createTempFile("heap-snapshot", ".bin");
+        try {
+            for (int size : SIZES) {
+                // Object heaps through every Codec, in both orders, as a linked Heap and as an ArrayHeap
+                roundTrip(file, size, HeapSnapshot.STRING, i -> "line " + i + " \u00e9\u20ac" + new String(Character.toChars(0x1F600)), random);
+                roundTrip(file, size, HeapSnapshot.INTEGER, i -> i - size / 2, random);
+                roundTrip(file, size, HeapSnapshot.LONG, i -> (long) i * 1_000_000_007L, random);
+                roundTrip(file, size, HeapSnapshot.DOUBLE, i -> i / 3.0 - size, random);
+
+                // Primitive heaps through the mapped bulk path
+                IntHeap ints = new IntHeap();
+                LongHeap longs = new LongHeap();
+                DoubleHeap doubles = new DoubleHeap();
+                for (int i = 0; i < size; i++) {
+                    int value = random.nextInt();
+                    ints.insert(value);
+                    longs.insert(value * 31L);
+                    doubles.insert(value / 7.0);
+                }
+                HeapSnapshot.save(ints, file);
+                IntHeap restoredInts = HeapSnapshot.restoreIntHeap(file);
+                HeapSnapshot.save(longs, file);
+                LongHeap restoredLongs = HeapSnapshot.restoreLongHeap(file);
+                HeapSnapshot.save(doubles, file);
+                DoubleHeap restoredDoubles = HeapSnapshot.restoreDoubleHeap(file);
+                if (restoredInts.size() != size || restoredLongs.size() != size || restoredDoubles.size() != size) {
+                    throw new AssertionError("a primitive restore of " + size + " items has the wrong size");
+                }
+                for (int i = 0; i < size; i++) {
+                    if (restoredInts.extractMax() != ints.extractMax() || restoredLongs.extractMax() != longs.extractMax()
+                            || Double.compare(restoredDoubles.extractMax(), doubles.extractMax()) != 0) {
+                        throw new AssertionError("a primitive restore of " + size + " items returned an item out of order");
+                    }
+                }
+            }
+            System.out.println("round trips for every Codec and heap type, sizes " + Arrays.toString(SIZES) + ": ok");
+
+            // A header that promises more items than the file holds is rejected before anything is allocated
+            IntHeap ints = new IntHeap();
+            ints.insert(1);
+            HeapSnapshot.save(ints, file);
+            setSize(file, Integer.MAX_VALUE);
+            expectIOException(() -> HeapSnapshot.restoreIntHeap(file), "int snapshot claiming Integer.MAX_VALUE items");
+            expectIOException(() -> HeapSnapshot.restoreLongHeap(file), "int snapshot restored as longs");
+
+            LongHeap longs = new LongHeap();
+            longs.insert(1);
+            HeapSnapshot.save(longs, file);
+            setSize(file, Integer.MAX_VALUE);
+            expectIOException(() -> HeapSnapshot.restoreLongHeap(file), "long snapshot claiming Integer.MAX_VALUE items");
+
+            DoubleHeap doubles = new DoubleHeap();
+            doubles.insert(1);
+            HeapSnapshot.save(doubles, file);
+            setSize(file, Integer.MAX_VALUE);
+            expectIOException(() -> HeapSnapshot.restoreDoubleHeap(file), "double snapshot claiming Integer.MAX_VALUE items");
+
+            ArrayHeap<String> strings = new ArrayHeap<>();
+            strings.insert("a");
+            HeapSnapshot.save(strings, HeapSnapshot.STRING, file);
+            setSize(file, Integer.MAX_VALUE);
+            expectIOException(() -> HeapSnapshot.restoreArrayHeap(file, HeapSnapshot.STRING, null), "object snapshot claiming Integer.MAX_VALUE items");
+            expectIOException(() -> HeapSnapshot.restoreHeap(file, HeapSnapshot.STRING, null), "object snapshot claiming Integer.MAX_VALUE items");
+            setSize(file, -1);
+            expectIOException(() -> HeapSnapshot.restoreArrayHeap(file, HeapSnapshot.STRING, null), "negative size");
+            System.out.println("corrupt header sizes rejected: ok");
+
+            // A string whose length field is corrupt, and files cut short part way through the items
+            HeapSnapshot.save(strings, HeapSnapshot.STRING, file);
+            byte[] bytes = Files.readAllBytes(file);
+            ByteBuffer.wrap(bytes).putInt(12, Integer.MAX_VALUE - 1); // the first string's length
+            Files.write(file, bytes);
+            expectIOException(() -> HeapSnapshot.restoreArrayHeap(file, HeapSnapshot.STRING, null), "string length past the end of the file");
+            ByteBuffer.wrap(bytes).putInt(12, -5);
+            Files.write(file, bytes);
+            expectIOException(() -> HeapSnapshot.restoreArrayHeap(file, HeapSnapshot.STRING, null), "negative string length");
+
+            ArrayHeap<Long> boxed = new ArrayHeap<>();
+            IntHeap many = new IntHeap();
+            for (int i = 0; i < 100; i++) {
+                boxed.insert((long) i);
+                many.insert(i);
+            }
+            HeapSnapshot.save(boxed, HeapSnapshot.LONG, file);
+            truncate(file, 12 + 50 * Long.BYTES + 3);
+            expectIOException(() -> HeapSnapshot.restoreArrayHeap(file, HeapSnapshot.LONG, null), "truncated object snapshot");
+            expectIOException(() -> HeapSnapshot.restoreHeap(file, HeapSnapshot.LONG, null), "truncated object snapshot");
+            HeapSnapshot.save(many, file);
+            truncate(file, 12 + 50 * Integer.BYTES);
+            expectIOException(() -> HeapSnapshot.restoreIntHeap(file), "truncated int snapshot");
+            truncate(file, 7);
+            expectIOException(() -> HeapSnapshot.restoreIntHeap(file), "file shorter than a header");
+            System.out.println("corrupt lengths and truncated files rejected: ok");
+
+            // Wrong magic and wrong element kind
+            HeapSnapshot.save(many, file);
+            expectIOException(() -> HeapSnapshot.restoreArrayHeap(file, HeapSnapshot.INTEGER, null), "int snapshot restored as objects");
+            bytes = Files.readAllBytes(file);
+            bytes[0] = 'X';
+            Files.write(file, bytes);
+            expectIOException(() -> HeapSnapshot.restoreIntHeap(file), "bad magic");
+            System.out.println("wrong magic and element kind rejected: ok");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Saves a Heap and an ArrayHeap of the given items (max and min ordered), restores each, and checks
+     * both drain exactly as the originals do.
+     */
+    private static <T extends Comparable<T>> void roundTrip(Path file, int size, HeapSnapshot.Codec<T> codec,
+                                                            Function<Integer, T> item, Random random) throws Exception {
+        List<T> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            items.add(item.apply(random.nextInt(Math.max(size, 1))));
+        }
+        for (Comparator<T> comparator : Arrays.asList(null, Collections.<T>reverseOrder())) {
+            Heap<T> heap = new Heap<>(comparator);
+            ArrayHeap<T> array = new ArrayHeap<>(comparator);
+            for (T t : items) {
+                heap.insert(t);
+                array.insert(t);
+            }
+            HeapSnapshot.save(heap, codec, file);
+            Heap<T> restoredHeap = HeapSnapshot.restoreHeap(file, codec, comparator);
+            ArrayHeap<T> fromLinked = HeapSnapshot.restoreArrayHeap(file, codec, comparator); // the formats are the same
+            HeapSnapshot.save(array, codec, file);
+            ArrayHeap<T> restoredArray = HeapSnapshot.restoreArrayHeap(file, codec, comparator);
+            restoredHeap.checkStructure();
+            if (restoredHeap.size() != size || restoredArray.size() != size || fromLinked.size() != size) {
+                throw new AssertionError("an object restore of " + size + " items has the wrong size");
+            }
+            for (int i = 0; i < size; i++) {
+                T expected = heap.extractMax();
+                if (!expected.equals(restoredHeap.extractMax()) || !expected.equals(fromLinked.extractMax())
+                        || !expected.equals(restoredArray.extractMax()) || !expected.equals(array.extractMax())) {
+                    throw new AssertionError("an object restore of " + size + " items returned an item out of order");
+                }
+            }
+        }
+    }
+
+    /**
+     * Overwrites the size field of a snapshot's header.
+     */
+    private static void setSize(Path file, int size) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(8, size);
+        Files.write(file, bytes);
+    }
+
+    private static void truncate(Path file, int length) throws IOException {
+        Files.write(file, Arrays.copyOf(Files.readAllBytes(file), length));
+    }
+
+    private static void expectIOException(Restore restore, String what) {
+        try {
+            restore.run();
+        } catch (IOException expected) {
+            return;
+        }
+        throw new AssertionError(what + " did not throw IOException");
+    }
+}
@@ -1,72 +1,427 @@
-import java.util.Scanner;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 public class HeapSorter {
     /**
      * Repeatedly reads from standard input,
      * line by line, until an empty line or end of input is found.
      * Takes all lines of input and sorts them,
      * using heap sort.
+     *
+     * Options:
+     *   --batch           non-interactive: no prompts, read the named files (or standard input when none
+     *                     are named) to the end, keeping empty lines, and sort every line
+     *   --no-banner       don't print the instructions banner or the heading, only the sorted entries
+     *   --external        sort inputs larger than memory by spilling sorted runs to temporary files
+     *   --memory SIZE     memory budget for --external, in bytes (suffix k, m or g allowed; default 256m)
+     *   --tmpdir DIR      directory for the temporary run files (default: the system temp directory)
+     *   --parallel N      sort with N worker threads (0 for one per processor, at most 32767); the output is
+     *                     the same. The whole input is held in memory, so it cannot be combined with --memory
+     *   --top K           only print the K greatest lines (memory stays O(K) however long the input is)
+     *
+     * Example: java HeapSorter --batch --no-banner access.log error.log > sorted.txt
      */
 
+    private static final int IO_BUFFER_CHARS = 1 << 16;
+    private static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+
     // Declare global variables
-    private static Heap heapSorterTest = new Heap(); // the heap used for the testing
-    private static String userInput; // the user's input in the form of a string
-    private static Scanner input = new Scanner(System.in); // the scanner used to get the user's input
+    private static PriorityHeap<String> heapSorterTest; // the heap used for the testing (pick with -Dheap.backend=linked|array|daryN|pairing|minmax|string|utf8)
+    private static BufferedReader input; // the reader used to get the user's input
+    private static BufferedWriter output; // all sorted output goes through this one buffer
+    private static boolean banner; // whether to print the instructions and the heading above the output
 
     public static void main(String[] args) throws Exception {
+        run(args, System.in, System.out);
+    }
+
+    /**
+     * Runs the sorter with the given options, reading standard input from in and writing to out
+     * (main uses System.in and System.out; HeapBenchmark feeds it prepared input).
+     * @param args the command line options
+     * @param in where "standard input" is read from
+     * @param out where the output is written (flushed, but not closed, when done)
+     */
+    static void run(String[] args, InputStream in, OutputStream out) throws Exception {
+        heapSorterTest = createHeap(System.getProperty("heap.backend", "linked"));
+        input = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), IO_BUFFER_CHARS);
+        output = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), IO_BUFFER_CHARS);
+        banner = true;
+
+        boolean batch = false;
+        List<String> files = new ArrayList<>();
+        boolean external = false;
+        long memoryBudget = DEFAULT_MEMORY_BUDGET;
+        boolean memoryGiven = false;
+        Path tempDirectory = null;
+        int parallelism = -1; // -1 means sort on this thread
+        int top = 0; // 0 means print every line
+
+        // Read the command line options
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--batch":
+                    batch = true;
+                    break;
+                case "--no-banner":
+                    banner = false;
+                    break;
+                case "--external":
+                    external = true;
+                    break;
+                case "--memory":
+                    memoryBudget = parseSize(optionValue(args, ++i));
+                    memoryGiven = true;
+                    break;
+                case "--tmpdir":
+                    tempDirectory = Paths.get(optionValue(args, ++i));
+                    break;
+                case "--top":
+                    top = Integer.parseInt(optionValue(args, ++i));
+                    if (top <= 0) {
+                        throw new IllegalArgumentException("--top needs a positive count");
+                    }
+                    break;
+                case "--parallel":
+                    parallelism = Integer.parseInt(optionValue(args, ++i));
+                    if (parallelism < 0 || parallelism > ParallelHeapSort.MAX_PARALLELISM) {
+                        throw new IllegalArgumentException("--parallel needs 0 (one thread per processor) to "
+                                + ParallelHeapSort.MAX_PARALLELISM + " threads");
+                    }
+                    break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    files.add(args[i]); // anything else is an input file
+            }
+        }
+        if (!files.isEmpty() && !batch) {
+            throw new IllegalArgumentException("Input files can only be given with --batch");
+        }
+        if ((external ? 1 : 0) + (parallelism >= 0 ? 1 : 0) + (top > 0 ? 1 : 0) > 1) {
+            throw new IllegalArgumentException("Only one of --external, --parallel and --top can be used");
+        }
+        if (memoryGiven && parallelism >= 0) {
+            // a budget would suggest the input may be larger than memory, which only --external can sort
+            throw new IllegalArgumentException("--memory cannot be used with --parallel, which holds the whole input in memory");
+        }
 
         // Print instructions to screen
-        System.out.println("----------------------------------------------------------------------------------------");
-        System.out.println("Please enter an empty string to output all entered strings in order (greatest to least).");
-        System.out.println("                        NOTE: all entries are compared as strings                       ");
-        System.out.println("----------------------------------------------------------------------------------------\n");
+        if (banner) {
+            printLine("----------------------------------------------------------------------------------------");
+            if (batch) {
+                printLine("Sorting every input line in order (greatest to least).");
+            } else {
+                printLine("Please enter an empty string to output all entered strings in order (greatest to least).");
+            }
+            printLine("                        NOTE: all entries are compared as strings                       ");
+            printLine("----------------------------------------------------------------------------------------");
+            output.newLine();
+            output.flush();
+        }
+
+        List<BufferedReader> readers = new ArrayList<>();
+        try {
+            // In batch mode read every line of every file; otherwise prompt until the user enters an empty string
+            Iterator<String> lines = batch ? openInputs(files, readers) : promptedLines();
 
-        // Using recursion continuously get the user's input until they enter an empty string
-        getUserInput();
+            if (external) {
+                sortExternally(lines, memoryBudget, tempDirectory);
+                return;
+            }
+            if (parallelism >= 0) {
+                sortInParallel(lines, parallelism);
+                return;
+            }
+            if (top > 0) {
+                printTop(lines, top);
+                return;
+            }
+
+            getUserInput(lines);
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
 
         /*
-            The size of the heap...(will be passed in as the parameter(s) to the printSortedHeap()
-            function)...not necessary as I could also use heapSorterTest.size() as the parameters,
+            The size of the heap...(will be passed in as the parameter to the printSortedHeap()
+            function)...not necessary as I could also use heapSorterTest.size() as the parameter,
             but this makes the code cleaner and more readable in my opinion
          */
         int sizeOfHeap = heapSorterTest.size(); // create variable to store the heap's size
 
         // Print out each item in order of greatest to least (as determined by "compareTo()")
-        System.out.println(); // for formatting
-        System.out.println("Strings in sorted order (greatest to least):\n");
-        printSortedHeap(sizeOfHeap, sizeOfHeap);
+        printHeading();
+        printSortedHeap(sizeOfHeap);
+        output.flush();
+
+        // with -Dheap.stats=true, report what the linked heap did (on stderr, so the sorted output is unchanged)
+        if (HeapStats.isEnabled() && heapSorterTest instanceof Heap) {
+            System.err.println(((Heap<?>) heapSorterTest).stats());
+        }
+    }
+
+    /**
+     * Sort the lines with ExternalHeapSort and print the result in the same format as printSortedHeap.
+     * @param lines the lines to sort
+     * @param memoryBudget roughly how many bytes of lines to hold in memory at once
+     * @param tempDirectory where to put the run files (null for the system default)
+     */
+    private static void sortExternally(Iterator<String> lines, long memoryBudget, Path tempDirectory) throws IOException {
+        long[] entryNumber = {0};
+
+        printHeading();
+        new ExternalHeapSort(memoryBudget, tempDirectory).sort(lines, line -> printEntry(++entryNumber[0], line));
+        output.flush();
+    }
+
+    /**
+     * Sort the lines with ParallelHeapSort and print the result in the same format as printSortedHeap.
+     * Every line is read into memory first (the partitions are cut from one list), unlike --external and --top.
+     * @param lines the lines to sort
+     * @param parallelism the number of worker threads (0 for one per processor)
+     */
+    private static void sortInParallel(Iterator<String> lines, int parallelism) throws IOException {
+        List<String> all = new ArrayList<>();
+        while (lines.hasNext()) {
+            all.add(lines.next());
+        }
+
+        Iterator<String> sorted = ParallelHeapSort.sort(all, null, parallelism);
+        all = null; // the sorted partitions hold the lines from here on
 
+        printHeading();
+        long entryNumber = 0;
+        while (sorted.hasNext()) {
+            printEntry(++entryNumber, sorted.next());
+        }
+        output.flush();
     }
 
     /**
-     * Get the user's input continuously until they enter an empty string.
+     * Keep only the greatest lines with a BoundedHeap and print them in the same format as printSortedHeap.
+     * @param lines the lines to choose from
+     * @param top the number of lines to print
      */
-    private static void getUserInput() {
-        // base case for recursion
-        if (userInput == "") {
-            return;
+    private static void printTop(Iterator<String> lines, int top) throws IOException {
+        BoundedHeap<String> best = new BoundedHeap<>(top);
+        while (lines.hasNext()) {
+            best.insert(lines.next());
         }
-        System.out.print("Please enter a string: "); // prompt the user for their input
-        userInput = input.nextLine();
 
-        // Don't insert the empty line into the heap...since it is meant to be the entry that symbolizes the end of user input
-        if (userInput != "") {
-            heapSorterTest.insert(userInput);
+        printHeading();
+        long entryNumber = 0;
+        for (String line : best.drainSorted()) {
+            printEntry(++entryNumber, line);
+        }
+        output.flush();
+    }
+
+    /**
+     * Returns the lines the user types, prompting before each one, up to an empty line or the end of input.
+     */
+    private static Iterator<String> promptedLines() {
+        return new Iterator<String>() {
+            private String next;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done) {
+                    try {
+                        output.write("Please enter a string: "); // prompt the user for their input
+                        output.flush();
+                        next = input.readLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    // the empty line is the entry that symbolizes the end of user input
+                    if (next == null || next.isEmpty()) {
+                        next = null;
+                        done = true;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String line = next;
+                next = null;
+                return line;
+            }
+        };
+    }
+
+    /**
+     * Returns every line of the named files in turn (standard input if there are none), to the end of each.
+     * @param files the paths to read
+     * @param readers receives each opened reader so the caller can close them
+     */
+    private static Iterator<String> openInputs(List<String> files, List<BufferedReader> readers) throws IOException {
+        if (files.isEmpty()) {
+            return ExternalHeapSort.lines(input, false);
+        }
+
+        List<Iterator<String>> parts = new ArrayList<>();
+        for (String file : files) {
+            Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8);
+            BufferedReader buffered = new BufferedReader(reader, IO_BUFFER_CHARS);
+            readers.add(buffered);
+            parts.add(ExternalHeapSort.lines(buffered, false));
+        }
+
+        Iterator<Iterator<String>> remaining = parts.iterator();
+        return new Iterator<String>() {
+            private Iterator<String> current = remaining.next();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && remaining.hasNext()) {
+                    current = remaining.next();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Returns the value that follows an option on the command line.
+     */
+    private static String optionValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * Parses a size such as 512m or 2g into bytes.
+     * @param text a number of bytes, optionally followed by k, m or g
+     * @return : the size in bytes
+     */
+    private static long parseSize(String text) {
+        String lower = text.trim().toLowerCase();
+        int shift = 0;
+        if (lower.endsWith("k")) {
+            shift = 10;
+        } else if (lower.endsWith("m")) {
+            shift = 20;
+        } else if (lower.endsWith("g")) {
+            shift = 30;
+        }
+        if (shift != 0) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        return Long.parseLong(lower) << shift;
+    }
+
+    /**
+     * Create an empty heap using the named backend.
+     * @param backend "linked" for the Node-based Heap, "array" for the array-backed ArrayHeap,
+     *                "dary" followed by the arity (such as "dary4") for a DaryHeap, "pairing" for a PairingHeap,
+     *                "minmax" for a MinMaxHeap,
+     *                "string" for a StringHeap (prefix keys) or "utf8" for a StringHeap that keeps the lines as UTF-8 bytes
+     * @return : an empty heap of the requested kind
+     */
+    private static PriorityHeap<String> createHeap(String backend) {
+        switch (backend) {
+            case "linked":
+                return new Heap<>();
+            case "array":
+                return new ArrayHeap<>();
+            case "pairing":
+                return new PairingHeap<>();
+            case "minmax":
+                return new MinMaxHeap<>();
+            case "string":
+                return new StringHeap();
+            case "utf8":
+                return new StringHeap(true);
+            default:
+                if (backend.matches("dary[0-9]+")) {
+                    return new DaryHeap<>(Integer.parseInt(backend.substring(4)));
+                }
+                throw new IllegalArgumentException("Unknown heap backend: " + backend);
+        }
+    }
+
+    /**
+     * Insert every line of input into the heap.
+     * @param lines the lines entered (or read from the input files)
+     */
+    private static void getUserInput(Iterator<String> lines) {
+        // a loop rather than recursion, so there is no limit on the number of lines
+        while (lines.hasNext()) {
+            heapSorterTest.insert(lines.next());
         }
-        getUserInput(); // recursive call
     }
 
     /**
      * Print out the contents of the heap in sorted order (greatest to least)
-     * @param initialSize the initial size (used to 'index' the order since there is no loop)
-     * @param heapSize the actual size of the heap that is updated every recursive call
+     * @param initialSize the initial size of the heap (the number of entries to print)
      */
-    private static void printSortedHeap(int initialSize, int heapSize) throws Exception {
-        // base case for recursion
-        if (heapSize == 0) {
-            return;
+    private static void printSortedHeap(int initialSize) throws Exception {
+        for (int entryNumber = 1; entryNumber <= initialSize; entryNumber++) {
+            printEntry(entryNumber, heapSorterTest.extractMax());
         }
-        System.out.println((initialSize - heapSize + 1) + ": " + heapSorterTest.extractMax()); // print out the entry # followed by the entry itself
-        printSortedHeap(initialSize, heapSize - 1); // recursive call with the same initial size and the heap size being decremented by 1
+    }
+
+    /**
+     * Print the heading above the sorted entries (unless --no-banner was given)
+     */
+    private static void printHeading() throws IOException {
+        if (banner) {
+            output.newLine(); // for formatting
+            printLine("Strings in sorted order (greatest to least):");
+            output.newLine();
+        }
+    }
+
+    /**
+     * Print a line of text followed by the platform's line separator, as printEntry does
+     */
+    private static void printLine(String line) throws IOException {
+        output.write(line);
+        output.newLine();
+    }
+
+    /**
+     * Print the entry # followed by the entry itself
+     */
+    private static void printEntry(long entryNumber, String entry) throws IOException {
+        output.write(Long.toString(entryNumber));
+        output.write(": ");
+        output.write(entry);
+        output.newLine();
     }
 
 }
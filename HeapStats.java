@@ -0,0 +1,328 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A point-in-time copy of a Heap's instrumentation counters.
+ * Counting is off unless the VM is started with -Dheap.stats=true. The switch is read once into a
+ * static final field, so when it is off the JIT drops every counting branch from Heap's hot paths
+ * and instrumentation costs nothing; when it is off every figure here is 0.
+ *
+ * compares counts calls to the comparator (or compareTo), moves counts items copied from one node to
+ * another while sifting, and nodesVisited counts nodes looked at while sifting or while finding the
+ * next parent / new last node. The latency figures come from log2 histograms, so a percentile is the
+ * upper bound of its bucket (within a factor of 2). Heap is not thread-safe and neither are its
+ * counters: a snapshot taken from another thread (such as over JMX) may be slightly out of date.
+ */
+public final class HeapStats {
+
+    /** Whether heaps record statistics, fixed for the life of the VM (-Dheap.stats=true). */
+    static final boolean ENABLED = Boolean.getBoolean("heap.stats");
+
+    private static final int BUCKETS = 64; // bucket b counts latencies in [2^b, 2^(b+1)) ns (bucket 0 also holds 0)
+
+    private final long inserts;
+    private final long extracts;
+    private final long compares;
+    private final long moves;
+    private final long nodesVisited;
+    private final int size;
+    private final int highWaterSize;
+    private final long[] insertLatencies;
+    private final long[] extractLatencies;
+
+    /**
+     * The live counters of one heap. Only Heap updates them, and only when ENABLED is true.
+     */
+    static final class Recorder {
+        long inserts;
+        long extracts;
+        long compares;
+        long moves;
+        long nodesVisited;
+        int highWaterSize;
+        long[] insertLatencies = new long[BUCKETS];
+        long[] extractLatencies = new long[BUCKETS];
+
+        void recordInsertLatency(long nanos) {
+            insertLatencies[bucket(nanos)]++;
+        }
+
+        void recordExtractLatency(long nanos) {
+            extractLatencies[bucket(nanos)]++;
+        }
+
+        void recordSize(int size) {
+            if (size > highWaterSize) {
+                highWaterSize = size;
+            }
+        }
+
+        HeapStats snapshot(int size) {
+            return new HeapStats(this, size);
+        }
+
+        void reset() {
+            inserts = 0;
+            extracts = 0;
+            compares = 0;
+            moves = 0;
+            nodesVisited = 0;
+            highWaterSize = 0;
+            insertLatencies = new long[BUCKETS];
+            extractLatencies = new long[BUCKETS];
+        }
+
+        private static int bucket(long nanos) {
+            return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+        }
+    }
+
+    /**
+     * The JMX view of one heap: every attribute read takes a fresh snapshot.
+     */
+    private static final class Bean implements HeapStatsMXBean {
+        private final Heap<?> heap;
+
+        Bean(Heap<?> heap) {
+            this.heap = heap;
+        }
+
+        @Override
+        public long getInserts() {
+            return heap.stats().getInserts();
+        }
+
+        @Override
+        public long getExtracts() {
+            return heap.stats().getExtracts();
+        }
+
+        @Override
+        public long getCompares() {
+            return heap.stats().getCompares();
+        }
+
+        @Override
+        public long getMoves() {
+            return heap.stats().getMoves();
+        }
+
+        @Override
+        public long getNodesVisited() {
+            return heap.stats().getNodesVisited();
+        }
+
+        @Override
+        public int getSize() {
+            return heap.size();
+        }
+
+        @Override
+        public int getHighWaterSize() {
+            return heap.stats().getHighWaterSize();
+        }
+
+        @Override
+        public double getComparesPerOperation() {
+            return heap.stats().getComparesPerOperation();
+        }
+
+        @Override
+        public long getInsertLatencyP50Nanos() {
+            return heap.stats().getInsertLatencyPercentile(50);
+        }
+
+        @Override
+        public long getInsertLatencyP99Nanos() {
+            return heap.stats().getInsertLatencyPercentile(99);
+        }
+
+        @Override
+        public long getExtractLatencyP50Nanos() {
+            return heap.stats().getExtractLatencyPercentile(50);
+        }
+
+        @Override
+        public long getExtractLatencyP99Nanos() {
+            return heap.stats().getExtractLatencyPercentile(99);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public void reset() {
+            heap.resetStats();
+        }
+    }
+
+    private HeapStats(Recorder recorder, int size) {
+        inserts = recorder.inserts;
+        extracts = recorder.extracts;
+        compares = recorder.compares;
+        moves = recorder.moves;
+        nodesVisited = recorder.nodesVisited;
+        this.size = size;
+        highWaterSize = recorder.highWaterSize;
+        insertLatencies = recorder.insertLatencies.clone();
+        extractLatencies = recorder.extractLatencies.clone();
+    }
+
+    /**
+     * Returns a snapshot with every figure 0 (what a heap reports while statistics are disabled).
+     * @param size the heap's current size
+     * @return : an empty snapshot
+     */
+    static HeapStats empty(int size) {
+        return new HeapStats(new Recorder(), size);
+    }
+
+    /**
+     * Returns whether statistics are being recorded in this VM.
+     * @return : true if the VM was started with -Dheap.stats=true
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Registers a heap with the platform MBean server so its statistics can be read over JMX
+     * (as HeapStatsMXBean attributes, e.g. in JConsole or VisualVM).
+     * @param heap the heap to expose
+     * @param name the ObjectName to register it under, such as "HeapSorter:type=HeapStats,name=main"
+     * @return : the registered ObjectName, to pass to unregister
+     */
+    public static ObjectName register(Heap<?> heap, String name) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new Bean(heap), objectName);
+        return objectName;
+    }
+
+    /**
+     * Removes a heap registered with register.
+     * @param name the name register returned
+     */
+    public static void unregister(ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+    /**
+     * Returns the number of items inserted (by insert, insertAll, insertBatch and so on).
+     * @return : the insert count
+     */
+    public long getInserts() {
+        return inserts;
+    }
+
+    /**
+     * Returns the number of items extracted (by extractMax, extractTop and drainTo).
+     * @return : the extract count
+     */
+    public long getExtracts() {
+        return extracts;
+    }
+
+    /**
+     * Returns the number of item comparisons.
+     * @return : the compare count
+     */
+    public long getCompares() {
+        return compares;
+    }
+
+    /**
+     * Returns the number of items moved from one node to another while sifting.
+     * @return : the move count
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Returns the number of nodes looked at while sifting or locating the next parent / new last node.
+     * @return : the visit count
+     */
+    public long getNodesVisited() {
+        return nodesVisited;
+    }
+
+    /**
+     * Returns the heap's size when the snapshot was taken.
+     * @return : the size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the largest size the heap has reached.
+     * @return : the high-water mark
+     */
+    public int getHighWaterSize() {
+        return highWaterSize;
+    }
+
+    /**
+     * Returns the average number of comparisons per insert or extract.
+     * @return : compares / (inserts + extracts), or 0 before any operation
+     */
+    public double getComparesPerOperation() {
+        long operations = inserts + extracts;
+        return operations == 0 ? 0 : (double) compares / operations;
+    }
+
+    /**
+     * Returns an upper bound on the given percentile of single-insert latency.
+     * @param percentile between 0 and 100
+     * @return : the latency in nanoseconds, or 0 if none was recorded
+     */
+    public long getInsertLatencyPercentile(double percentile) {
+        return percentile(insertLatencies, percentile);
+    }
+
+    /**
+     * Returns an upper bound on the given percentile of single-extract latency.
+     * @param percentile between 0 and 100
+     * @return : the latency in nanoseconds, or 0 if none was recorded
+     */
+    public long getExtractLatencyPercentile(double percentile) {
+        return percentile(extractLatencies, percentile);
+    }
+
+    private static long percentile(long[] histogram, double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        }
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100)); // the rank-th smallest latency
+        long seen = 0;
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            seen += histogram[bucket];
+            if (seen >= rank) {
+                return (1L << (bucket + 1)) - 1; // bucket 62 gives Long.MAX_VALUE
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HeapStats[size=%d, highWater=%d, inserts=%d, extracts=%d, compares=%d (%.2f/op), moves=%d, "
+                        + "visited=%d, insert p50/p99 <= %d/%d ns, extract p50/p99 <= %d/%d ns]",
+                size, highWaterSize, inserts, extracts, compares, getComparesPerOperation(), moves, nodesVisited,
+                getInsertLatencyPercentile(50), getInsertLatencyPercentile(99),
+                getExtractLatencyPercentile(50), getExtractLatencyPercentile(99));
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * The JMX management interface of a Heap's statistics (see HeapStats.register).
+ * Every attribute is 0 unless the VM was started with -Dheap.stats=true.
+ */
+public interface HeapStatsMXBean {
+
+    long getInserts();
+
+    long getExtracts();
+
+    long getCompares();
+
+    long getMoves();
+
+    long getNodesVisited();
+
+    int getSize();
+
+    int getHighWaterSize();
+
+    double getComparesPerOperation();
+
+    long getInsertLatencyP50Nanos();
+
+    long getInsertLatencyP99Nanos();
+
+    long getExtractLatencyP50Nanos();
+
+    long getExtractLatencyP99Nanos();
+
+    /**
+     * @return : whether statistics are being recorded (-Dheap.stats=true)
+     */
+    boolean isEnabled();
+
+    /**
+     * Sets every counter and histogram back to 0.
+     */
+    void reset();
+}
@@ -0,0 +1,89 @@
+import java.lang.management.ManagementFactory;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class HeapStatsTester {
+
+    public static void main(String[] args) throws Exception {
+        boolean enabled = HeapStats.isEnabled(); // the test phase runs this tester both with and without -Dheap.stats=true
+
+        // A small sequence whose counts follow from the tree shapes:
+        //   insert 1            root, nothing compared
+        //   insert 2            next parent found (1 visit), 2 > 1: 1 visit, 1 compare, 1 move      -> [2, 1]
+        //   insert 3            next parent found (1 visit), 3 > 2: 1 visit, 1 compare, 1 move      -> [3, 1, 2]
+        //   extractMax          new last node (1 visit), 2 sifts down past its only child 1: 1 visit, 1 compare -> [2, 1]
+        Heap<Integer> heap = new Heap<>();
+        heap.insert(1);
+        heap.insert(2);
+        heap.insert(3);
+        check(heap.stats(), enabled, 3, 0, 2, 2, 4, 3, 3, "three ascending inserts");
+        if (heap.extractMax() != 3) {
+            throw new AssertionError("extractMax returned the wrong item");
+        }
+        check(heap.stats(), enabled, 3, 1, 3, 2, 6, 2, 3, "an extractMax");
+        if (enabled && (heap.stats().getComparesPerOperation() != 0.75 || heap.stats().getInsertLatencyPercentile(50) <= 0
+                || heap.stats().getExtractLatencyPercentile(99) <= 0)) {
+            throw new AssertionError("compares per operation or latency percentiles are wrong: " + heap.stats());
+        }
+        System.out.println(enabled ? "counts for inserts and extractMax: ok" : "every count 0 while disabled: ok");
+
+        // resetStats starts every counter again, and the high-water mark from the current size:
+        //   insert 5            next parent found (1 visit), 5 > 2: 1 visit, 1 compare, 1 move      -> [5, 1, 2]
+        //   extractTop(3)       new last node (1 visit), 2 past child 1: 1 visit, 1 compare          -> [2, 1]
+        //                       new last node (1 visit), 1 is left alone as a leaf                   -> [1]
+        //                       the last node goes with nothing to visit                             -> []
+        heap.resetStats();
+        check(heap.stats(), enabled, 0, 0, 0, 0, 0, 2, 2, "resetStats");
+        heap.insert(5);
+        check(heap.stats(), enabled, 1, 0, 1, 1, 2, 3, 3, "an insert after resetStats");
+        if (heap.extractTop(3, new Integer[3]) != 3) {
+            throw new AssertionError("extractTop did not return 3 items");
+        }
+        check(heap.stats(), enabled, 1, 3, 2, 1, 5, 0, 3, "extractTop(3)");
+        System.out.println("resetStats and the high-water mark: ok");
+
+        // The MXBean reads fresh snapshots, resets through resetStats, and goes away on unregister
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = HeapStats.register(heap, "HeapStatsTester:type=HeapStats,name=main");
+        try {
+            HeapStats.register(heap, name.toString());
+            throw new AssertionError("the same name was registered twice");
+        } catch (InstanceAlreadyExistsException expected) {
+            // one bean per name
+        }
+        heap.insert(7);
+        if ((long) server.getAttribute(name, "Inserts") != (enabled ? 2 : 0) || (int) server.getAttribute(name, "Size") != 1
+                || (boolean) server.getAttribute(name, "Enabled") != enabled) {
+            throw new AssertionError("the MXBean attributes do not match the heap");
+        }
+        server.invoke(name, "reset", null, null);
+        if ((long) server.getAttribute(name, "Inserts") != 0 || (long) server.getAttribute(name, "Compares") != 0
+                || (int) server.getAttribute(name, "HighWaterSize") != (enabled ? 1 : 0)) {
+            throw new AssertionError("the MXBean's reset did not reset the heap's counters");
+        }
+        HeapStats.unregister(name);
+        if (server.isRegistered(name)) {
+            throw new AssertionError("unregister left the bean registered");
+        }
+        System.out.println("MXBean register, attributes, reset and unregister: ok");
+    }
+
+    /**
+     * Checks a snapshot against the expected counts, which are all 0 (apart from the size) while statistics are disabled.
+     */
+    private static void check(HeapStats stats, boolean enabled, long inserts, long extracts, long compares, long moves,
+                              long nodesVisited, int size, int highWaterSize, String after) {
+        long[] expected = {inserts, extracts, compares, moves, nodesVisited, size, highWaterSize};
+        long[] actual = {stats.getInserts(), stats.getExtracts(), stats.getCompares(), stats.getMoves(),
+                stats.getNodesVisited(), stats.getSize(), stats.getHighWaterSize()};
+        for (int i = 0; i < expected.length; i++) {
+            long want = enabled || i == 5 ? expected[i] : 0;
+            if (actual[i] != want) {
+                throw new AssertionError("after " + after + ": " + stats + ", expected inserts=" + inserts + ", extracts=" + extracts
+                        + ", compares=" + compares + ", moves=" + moves + ", visited=" + nodesVisited + ", size=" + size
+                        + ", highWater=" + highWaterSize);
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An addressable max heap: insert returns a Handle that stays valid while the item is in the heap,
+ * and the handle can be used to change the item's priority or remove it in O(log n).
+ * Every handle records its current index in the backing array, so any position can be sifted
+ * up or down directly instead of draining and rebuilding the heap.
+ * @param <T> : The type of item stored in the heap. It must implement
+ *           the Comparable<T> interface, so that the data structure
+ *           knows how to compare two items, unless a Comparator is supplied.
+ */
+public class IndexedHeap<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // some VMs reserve header words in an array
+
+    /**
+     * A reference to one item in an IndexedHeap.
+     * @param <T> : The type of item stored in the heap.
+     */
+    public static final class Handle<T> {
+        private final IndexedHeap<T> owner;
+        private T item;
+        private int index; // position in owner's array, or -1 once the item has left the heap
+
+        private Handle(IndexedHeap<T> owner, T item) {
+            this.owner = owner;
+            this.item = item;
+            this.index = -1;
+        }
+
+        /**
+         * Returns the item this handle refers to (still available after the item has been removed).
+         * @return : the item
+         */
+        public T getItem() {
+            return item;
+        }
+    }
+
+    private final Comparator<? super T> comparator; // the caller's ordering, null means natural ordering
+    private final HeapOrder order;
+    private Handle<T>[] handles;
+    private int currentSize;
+
+    /**
+     * Construct a max heap that is initially empty.
+     */
+    public IndexedHeap() {
+        this(null, HeapOrder.MAX);
+    }
+
+    /**
+     * Construct an empty max heap (HeapOrder.MAX) or min heap (HeapOrder.MIN) over the items' natural ordering.
+     * @param order which end of the ordering is kept at the root
+     */
+    public IndexedHeap(HeapOrder order) {
+        this(null, order);
+    }
+
+    /**
+     * Construct an empty heap that orders its items with the given comparator.
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     * @param order which end of the ordering is kept at the root
+     */
+    public IndexedHeap(Comparator<? super T> comparator, HeapOrder order) {
+        if (order == null) {
+            throw new NullPointerException();
+        }
+        this.comparator = comparator;
+        this.order = order;
+        @SuppressWarnings("unchecked") // the array only ever holds this heap's handles
+        Handle<T>[] initial = (Handle<T>[]) new Handle<?>[DEFAULT_CAPACITY];
+        handles = initial;
+        currentSize = 0;
+    }
+
+    /**
+     * Inserts the given item into the heap.
+     * @param item : The item to insert into the heap.
+     * @return : a handle that can later be used to re-prioritize or remove the item
+     */
+    public Handle<T> insert(T item) {
+        Handle<T> handle = new Handle<T>(this, item);
+        if (currentSize == handles.length) {
+            grow();
+        }
+        siftUp(currentSize++, handle);
+        return handle;
+    }
+
+    /**
+     * Returns the maximum item in the heap (the minimum for HeapOrder.MIN).
+     * @return : The maximum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    public T findMax() throws Exception {
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return handles[0].item;
+    }
+
+    /**
+     * Returns the handle of the maximum item in the heap (the minimum for HeapOrder.MIN).
+     * @return : The handle of the item findMax would return.
+     * @precondition : Heap is not empty.
+     */
+    public Handle<T> findMaxHandle() throws Exception {
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return handles[0];
+    }
+
+    /**
+     * Removes the maximum item from this heap (the minimum for HeapOrder.MIN).
+     * @return : The maximum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    public T extractMax() throws Exception {
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return removeAt(0);
+    }
+
+    /**
+     * Returns whether the handle's item is still in this heap.
+     * @param handle a handle returned by insert
+     * @return : true if the item has not been extracted or removed yet
+     */
+    public boolean contains(Handle<T> handle) {
+        return handle != null && handle.owner == this && handle.index >= 0;
+    }
+
+    /**
+     * Removes the handle's item from the heap, wherever it is.
+     * @param handle a handle of an item in this heap
+     * @return : the removed item
+     */
+    public T remove(Handle<T> handle) {
+        checkHandle(handle);
+        return removeAt(handle.index);
+    }
+
+    /**
+     * Replaces the handle's item with a new one and moves it up or down to its new place.
+     * @param handle a handle of an item in this heap
+     * @param item the replacement item (its new priority)
+     */
+    public void changePriority(Handle<T> handle, T item) {
+        checkHandle(handle);
+        T old = handle.item;
+        handle.item = item;
+
+        int index = handle.index;
+        if (compare(item, old) > 0) {
+            siftUp(index, handle);
+        } else {
+            siftDown(index, handle);
+        }
+    }
+
+    /**
+     * Replaces the handle's item with one that is not smaller (by the caller's ordering, before HeapOrder is applied).
+     * @param handle a handle of an item in this heap
+     * @param item the replacement item
+     */
+    public void increaseKey(Handle<T> handle, T item) {
+        checkHandle(handle);
+        if (compareNatural(item, handle.item) < 0) {
+            throw new IllegalArgumentException("increaseKey: new item is smaller than the current one");
+        }
+        changePriority(handle, item);
+    }
+
+    /**
+     * Replaces the handle's item with one that is not larger (by the caller's ordering, before HeapOrder is applied).
+     * With HeapOrder.MIN this is the usual Dijkstra/A* decrease-key and moves the item towards the root.
+     * @param handle a handle of an item in this heap
+     * @param item the replacement item
+     */
+    public void decreaseKey(Handle<T> handle, T item) {
+        checkHandle(handle);
+        if (compareNatural(item, handle.item) > 0) {
+            throw new IllegalArgumentException("decreaseKey: new item is larger than the current one");
+        }
+        changePriority(handle, item);
+    }
+
+    /**
+     * Removes the item at the given index: the last item fills the gap and is sifted whichever way it needs to go.
+     */
+    private T removeAt(int index) {
+        Handle<T> removed = handles[index];
+        int last = --currentSize;
+        Handle<T> moved = handles[last];
+        handles[last] = null;
+        removed.index = -1;
+
+        if (index != last) {
+            // the moved item may belong above or below the gap (it came from a different subtree)
+            if (index > 0 && compare(moved.item, handles[(index - 1) >>> 1].item) > 0) {
+                siftUp(index, moved);
+            } else {
+                siftDown(index, moved);
+            }
+        }
+        return removed.item;
+    }
+
+    /**
+     * Moves a hole up from the given index until the handle's item fits, then places the handle there.
+     */
+    private void siftUp(int index, Handle<T> handle) {
+        T item = handle.item;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            Handle<T> parentHandle = handles[parent];
+            if (compare(item, parentHandle.item) <= 0) {
+                break;
+            }
+            handles[index] = parentHandle;
+            parentHandle.index = index;
+            index = parent;
+        }
+        handles[index] = handle;
+        handle.index = index;
+    }
+
+    /**
+     * Moves a hole down from the given index until the handle's item fits, then places the handle there.
+     */
+    private void siftDown(int index, Handle<T> handle) {
+        T item = handle.item;
+        int half = currentSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            Handle<T> childHandle = handles[child];
+            int right = child + 1;
+            if (right < currentSize && compare(handles[right].item, childHandle.item) > 0) {
+                child = right;
+                childHandle = handles[right];
+            }
+            if (compare(item, childHandle.item) >= 0) {
+                break;
+            }
+            handles[index] = childHandle;
+            childHandle.index = index;
+            index = child;
+        }
+        handles[index] = handle;
+        handle.index = index;
+    }
+
+    /**
+     * Checks that every handle records its own index and belongs to this heap, that heap order holds,
+     * and that no slot past the last item is in use. For the testers; it walks the whole heap.
+     * @throws IllegalStateException at the first inconsistency found
+     */
+    void checkStructure() {
+        for (int i = 0; i < currentSize; i++) {
+            Handle<T> handle = handles[i];
+            if (handle.owner != this || handle.index != i) {
+                throw new IllegalStateException("handle at " + i + " records index " + handle.index);
+            }
+            if (i > 0 && compare(handle.item, handles[(i - 1) >>> 1].item) > 0) {
+                throw new IllegalStateException("item at " + i + " is larger than its parent");
+            }
+        }
+        for (int i = currentSize; i < handles.length; i++) {
+            if (handles[i] != null) {
+                throw new IllegalStateException("slot " + i + " is past the last item but not empty");
+            }
+        }
+    }
+
+    private void checkHandle(Handle<T> handle) {
+        if (!contains(handle)) {
+            throw new IllegalArgumentException("Handle does not refer to an item in this heap");
+        }
+    }
+
+    /**
+     * Compares two items in heap order (the caller's ordering, reversed for HeapOrder.MIN).
+     */
+    private int compare(T a, T b) {
+        int result = compareNatural(a, b);
+        return order == HeapOrder.MAX ? result : -Integer.signum(result);
+    }
+
+    /**
+     * Compares two items with the caller's comparator, or their natural ordering if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    private int compareNatural(T a, T b) {
+        if (comparator == null) {
+            return ((Comparable<? super T>) a).compareTo(b);
+        }
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * Doubles the backing array.
+     */
+    private void grow() {
+        int oldCapacity = handles.length;
+        if (oldCapacity == MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        int newCapacity = oldCapacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : oldCapacity * 2;
+        handles = Arrays.copyOf(handles, newCapacity);
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap.
+     * @return : The number of levels in this heap.
+     */
+    public int height() {
+        if (currentSize == 0) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(currentSize);
+    }
+}
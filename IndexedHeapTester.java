@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+public class IndexedHeapTester {
+    private static final int ROUNDS = 500;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // A handle is dead once its item leaves the heap, by extractMax or by remove, and every use of it then throws
+        IndexedHeap<Integer> heap = new IndexedHeap<>();
+        IndexedHeap.Handle<Integer> removed = heap.insert(5);
+        IndexedHeap.Handle<Integer> extracted = heap.insert(9);
+        heap.insert(7);
+        if (heap.remove(removed) != 5 || heap.extractMax() != 9) {
+            throw new AssertionError("remove or extractMax returned the wrong item");
+        }
+        if (heap.contains(removed) || heap.contains(extracted) || removed.getItem() != 5) {
+            throw new AssertionError("a handle still looks live after its item left the heap");
+        }
+        for (IndexedHeap.Handle<Integer> stale : Arrays.asList(removed, extracted)) {
+            expectIllegalArgument(() -> heap.remove(stale), "remove with a stale handle");
+            expectIllegalArgument(() -> heap.changePriority(stale, 1), "changePriority with a stale handle");
+            expectIllegalArgument(() -> heap.increaseKey(stale, 100), "increaseKey with a stale handle");
+            expectIllegalArgument(() -> heap.decreaseKey(stale, 0), "decreaseKey with a stale handle");
+        }
+        heap.checkStructure();
+        if (heap.size() != 1 || heap.findMax() != 7) {
+            throw new AssertionError("a stale handle changed the heap");
+        }
+
+        // A handle from another heap is rejected the same way
+        IndexedHeap<Integer> other = new IndexedHeap<>();
+        IndexedHeap.Handle<Integer> foreign = other.insert(1);
+        expectIllegalArgument(() -> heap.remove(foreign), "remove with another heap's handle");
+
+        // increaseKey and decreaseKey refuse to move the wrong way
+        IndexedHeap.Handle<Integer> seven = heap.findMaxHandle();
+        expectIllegalArgument(() -> heap.increaseKey(seven, 6), "increaseKey to a smaller item");
+        expectIllegalArgument(() -> heap.decreaseKey(seven, 8), "decreaseKey to a larger item");
+        System.out.println("stale, foreign and wrong-direction handles rejected: ok");
+
+        // Random increaseKey / decreaseKey / changePriority / remove / extractMax, checked against a list of the live handles
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean min = round % 2 == 1;
+            IndexedHeap<Integer> indexed = new IndexedHeap<>(min ? HeapOrder.MIN : HeapOrder.MAX);
+            ArrayList<IndexedHeap.Handle<Integer>> live = new ArrayList<>();
+            ArrayList<IndexedHeap.Handle<Integer>> dead = new ArrayList<>();
+            int operations = random.nextInt(300);
+            for (int op = 0; op < operations; op++) {
+                int choice = random.nextInt(7);
+                if (live.isEmpty() || choice == 0) {
+                    live.add(indexed.insert(random.nextInt(100)));
+                } else {
+                    IndexedHeap.Handle<Integer> handle = live.get(random.nextInt(live.size()));
+                    int item = handle.getItem();
+                    switch (choice) {
+                        case 1:
+                            indexed.increaseKey(handle, item + random.nextInt(20));
+                            break;
+                        case 2:
+                            indexed.decreaseKey(handle, item - random.nextInt(20));
+                            break;
+                        case 3:
+                            indexed.changePriority(handle, random.nextInt(100));
+                            break;
+                        case 4:
+                            if (indexed.remove(handle) != item) {
+                                throw new AssertionError("remove returned the wrong item");
+                            }
+                            live.remove(handle);
+                            dead.add(handle);
+                            break;
+                        default:
+                            int expected = min ? minItem(live) : maxItem(live);
+                            IndexedHeap.Handle<Integer> top = indexed.findMaxHandle();
+                            if (top.getItem() != expected || indexed.extractMax() != expected) {
+                                throw new AssertionError("extractMax returned the wrong item in round " + round);
+                            }
+                            live.remove(top);
+                            dead.add(top);
+                            break;
+                    }
+                }
+                indexed.checkStructure(); // every live handle's index must match its slot after each operation
+                if (indexed.size() != live.size()) {
+                    throw new AssertionError("size " + indexed.size() + ", expected " + live.size());
+                }
+                for (IndexedHeap.Handle<Integer> handle : live) {
+                    if (!indexed.contains(handle)) {
+                        throw new AssertionError("a live handle is not contained in its heap");
+                    }
+                }
+                if (!dead.isEmpty()) {
+                    IndexedHeap.Handle<Integer> stale = dead.get(random.nextInt(dead.size()));
+                    if (indexed.contains(stale)) {
+                        throw new AssertionError("a removed handle is still contained in its heap");
+                    }
+                    expectIllegalArgument(() -> indexed.remove(stale), "remove with a stale handle");
+                }
+            }
+
+            // drain what is left and check it comes out in order
+            ArrayList<Integer> expected = new ArrayList<>();
+            for (IndexedHeap.Handle<Integer> handle : live) {
+                expected.add(handle.getItem());
+            }
+            expected.sort(min ? null : Collections.reverseOrder());
+            for (int item : expected) {
+                if (indexed.extractMax() != item) {
+                    throw new AssertionError("draining returned an item out of order in round " + round);
+                }
+            }
+        }
+        System.out.println(ROUNDS + " random key changes and removals by handle: ok");
+    }
+
+    private static int maxItem(ArrayList<IndexedHeap.Handle<Integer>> handles) {
+        int max = Integer.MIN_VALUE;
+        for (IndexedHeap.Handle<Integer> handle : handles) {
+            max = Math.max(max, handle.getItem());
+        }
+        return max;
+    }
+
+    private static int minItem(ArrayList<IndexedHeap.Handle<Integer>> handles) {
+        int min = Integer.MAX_VALUE;
+        for (IndexedHeap.Handle<Integer> handle : handles) {
+            min = Math.min(min, handle.getItem());
+        }
+        return min;
+    }
+
+    private static void expectIllegalArgument(Runnable call, String what) {
+        try {
+            call.run();
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new AssertionError(what + " did not throw IllegalArgumentException");
+    }
+}
@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+/**
+ * A max heap of primitive ints stored implicitly in an int[].
+ * Unlike Heap<Integer>, nothing is boxed and comparisons are plain int comparisons, so once the
+ * array has grown to its working size insert and extractMax allocate nothing at all.
+ */
+public class IntHeap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // some VMs reserve header words in an array
+
+    private int[] items;
+    private int currentSize;
+
+    /**
+     * Construct a max heap that is initially empty.
+     */
+    public IntHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct a max heap that is initially empty but can hold the given number of items before growing.
+     * @param initialCapacity the number of items to reserve room for
+     */
+    public IntHeap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0: " + initialCapacity);
+        }
+        items = new int[Math.max(initialCapacity, 1)];
+        currentSize = 0;
+    }
+
+    /**
+     * Construct a heap around an array that already holds size items in valid heap order (used by HeapSnapshot).
+     * The array is adopted, not copied, and nothing is re-sifted.
+     * @param items the backing array, in level order
+     * @param size the number of items at the start of the array that belong to the heap
+     */
+    IntHeap(int[] items, int size) {
+        if (size < 0 || size > items.length) {
+            throw new IllegalArgumentException("size out of range: " + size);
+        }
+        this.items = items.length == 0 ? new int[1] : items;
+        currentSize = size;
+    }
+
+    /**
+     * Returns the backing array (not a copy): the first size() entries are the items in level order.
+     * @return : the backing array
+     */
+    int[] levelOrder() {
+        return items;
+    }
+
+    /**
+     * Returns the maximum item in the heap.
+     * @return : The maximum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    public int findMax() throws Exception {
+        // if the heap has no items/is empty throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return items[0];
+    }
+
+    /**
+     * Removes the maximum item from this heap.
+     * @return : The maximum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    public int extractMax() throws Exception {
+        // if the heap is empty then throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        int max = items[0];
+        int last = --currentSize;
+
+        // the last item fills the hole left at the root and is sifted down from there
+        if (last > 0) {
+            siftDown(0, items[last]);
+        }
+        return max;
+    }
+
+    /**
+     * Inserts the given item into the Heap.
+     * @param item : The item to insert into the heap.
+     */
+    public void insert(int item) {
+        if (currentSize == items.length) {
+            grow();
+        }
+        siftUp(currentSize, item);
+        currentSize++;
+    }
+
+    /**
+     * Moves a hole up from the given index until the item fits, then places the item there.
+     */
+    private void siftUp(int index, int item) {
+        int[] heap = items;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            int parentItem = heap[parent];
+            if (item <= parentItem) {
+                break;
+            }
+            heap[index] = parentItem;
+            index = parent;
+        }
+        heap[index] = item;
+    }
+
+    /**
+     * Moves a hole down from the given index until the item fits, then places the item there.
+     */
+    private void siftDown(int index, int item) {
+        int[] heap = items;
+        int size = currentSize;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int childItem = heap[child];
+            int right = child + 1;
+            if (right < size && heap[right] > childItem) {
+                child = right;
+                childItem = heap[right];
+            }
+            if (item >= childItem) {
+                break;
+            }
+            heap[index] = childItem;
+            index = child;
+        }
+        heap[index] = item;
+    }
+
+    /**
+     * Doubles the backing array (geometric growth keeps insert amortized O(1) apart from sifting).
+     */
+    private void grow() {
+        int oldCapacity = items.length;
+        if (oldCapacity == MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        int newCapacity = oldCapacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : oldCapacity * 2;
+        items = Arrays.copyOf(items, newCapacity);
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap.
+     * @return : The number of levels in this heap.
+     */
+    public int height() {
+        // the heap is a complete binary tree, so its height is floor(log2(size))
+        if (currentSize == 0) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(currentSize);
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * An array-backed heap that orders items by a long key pulled out of each item.
+ * The key is computed once, when the item is inserted, and cached in a long[] next to the item,
+ * so sifting compares primitive longs instead of calling compareTo (or a Comparator) at every level.
+ * @param <T> : The type of item stored in the heap.
+ */
+public class KeyedHeap<T> implements PriorityHeap<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // some VMs reserve header words in an array
+
+    private final ToLongFunction<? super T> keyExtractor;
+    private final HeapOrder order;
+
+    /*
+     * keys[i] is the (possibly inverted) key of items[i]. In MIN order the keys are stored bit-flipped
+     * (~key reverses the order of every long without overflowing), so the sifts only ever look for the max.
+     */
+    private long[] keys;
+    private Object[] items;
+    private int currentSize;
+
+    /**
+     * Construct a max heap that is initially empty and orders its items by the given key.
+     * @param keyExtractor computes the key of an item
+     */
+    public KeyedHeap(ToLongFunction<? super T> keyExtractor) {
+        this(keyExtractor, HeapOrder.MAX);
+    }
+
+    /**
+     * Construct an empty heap that keeps the item with the largest (MAX) or smallest (MIN) key at the root.
+     * @param keyExtractor computes the key of an item
+     * @param order which end of the key ordering is kept at the root
+     */
+    public KeyedHeap(ToLongFunction<? super T> keyExtractor, HeapOrder order) {
+        if (keyExtractor == null || order == null) {
+            throw new NullPointerException();
+        }
+        this.keyExtractor = keyExtractor;
+        this.order = order;
+        keys = new long[DEFAULT_CAPACITY];
+        items = new Object[DEFAULT_CAPACITY];
+        currentSize = 0;
+    }
+
+    /**
+     * Returns the item at the root of the heap.
+     * @return : The item with the largest key (smallest for HeapOrder.MIN).
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T findMax() throws Exception {
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return itemAt(0);
+    }
+
+    /**
+     * Returns the cached key of the item at the root of the heap.
+     * @return : The key of the item findMax would return.
+     * @precondition : Heap is not empty.
+     */
+    public long findMaxKey() throws Exception {
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return order == HeapOrder.MAX ? keys[0] : ~keys[0];
+    }
+
+    /**
+     * Removes the item at the root of the heap.
+     * @return : The item with the largest key (smallest for HeapOrder.MIN), which was removed.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T extractMax() throws Exception {
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        T max = itemAt(0);
+        int last = --currentSize;
+        long movedKey = keys[last];
+        Object moved = items[last];
+        items[last] = null; // drop the reference so the removed slot does not keep the item alive
+
+        if (last > 0) {
+            siftDown(0, movedKey, moved);
+        }
+        return max;
+    }
+
+    /**
+     * Inserts the given item into the heap, computing its key once.
+     * @param item : The item to insert into the heap.
+     */
+    @Override
+    public void insert(T item) {
+        long key = keyExtractor.applyAsLong(item);
+        if (order == HeapOrder.MIN) {
+            key = ~key;
+        }
+
+        if (currentSize == items.length) {
+            grow();
+        }
+        siftUp(currentSize, key, item);
+        currentSize++;
+    }
+
+    /**
+     * Moves a hole up from the given index until the key fits, then places the key and item there.
+     */
+    private void siftUp(int index, long key, Object item) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            long parentKey = keys[parent];
+            if (key <= parentKey) {
+                break;
+            }
+            keys[index] = parentKey;
+            items[index] = items[parent];
+            index = parent;
+        }
+        keys[index] = key;
+        items[index] = item;
+    }
+
+    /**
+     * Moves a hole down from the given index until the key fits, then places the key and item there.
+     */
+    private void siftDown(int index, long key, Object item) {
+        int half = currentSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            long childKey = keys[child];
+            int right = child + 1;
+            if (right < currentSize && keys[right] > childKey) {
+                child = right;
+                childKey = keys[right];
+            }
+            if (key >= childKey) {
+                break;
+            }
+            keys[index] = childKey;
+            items[index] = items[child];
+            index = child;
+        }
+        keys[index] = key;
+        items[index] = item;
+    }
+
+    /**
+     * Doubles both backing arrays.
+     */
+    private void grow() {
+        int oldCapacity = items.length;
+        if (oldCapacity == MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        int newCapacity = oldCapacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : oldCapacity * 2;
+        keys = Arrays.copyOf(keys, newCapacity);
+        items = Arrays.copyOf(items, newCapacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int index) {
+        return (T) items[index];
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    @Override
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    @Override
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap.
+     * @return : The number of levels in this heap.
+     */
+    @Override
+    public int height() {
+        if (currentSize == 0) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(currentSize);
+    }
+}
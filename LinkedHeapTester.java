@@ -0,0 +1,44 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+public class LinkedHeapTester {
+    private static final int ITEMS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // HeapTester's workload, checked instead of printed: 1 - 1,000,000 inserted in a shuffled order,
+        // then findMax, height, size and isEmpty verified before every extractMax
+        ArrayList<Integer> numList = new ArrayList<>();
+        for (int i = 1; i <= ITEMS; i++) {
+            numList.add(i);
+        }
+        Collections.shuffle(numList, random);
+        Heap<Integer> heap = new Heap<>();
+        for (Integer number : numList) {
+            heap.insert(number);
+        }
+        for (int i = ITEMS; i >= 1; i--) {
+            int height = 31 - Integer.numberOfLeadingZeros(i); // a complete binary tree of i nodes
+            if (heap.findMax() != i || heap.height() != height || heap.size() != i || heap.isEmpty()) {
+                throw new AssertionError("with " + i + " items left: max " + heap.findMax() + ", height " + heap.height()
+                        + ", size " + heap.size() + ", empty " + heap.isEmpty());
+            }
+            if (heap.extractMax() != i) {
+                throw new AssertionError("extractMax did not return " + i);
+            }
+        }
+        if (heap.size() != 0 || !heap.isEmpty()) {
+            throw new AssertionError("the heap should be empty after " + ITEMS + " extractions");
+        }
+        try {
+            heap.extractMax();
+            throw new AssertionError("extractMax on an empty heap returned");
+        } catch (AssertionError e) {
+            throw e;
+        } catch (Exception expected) {
+            System.out.println(ITEMS + " shuffled inserts drained in order, with findMax, height, size and isEmpty: ok");
+        }
+    }
+}
@@ -0,0 +1,344 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A double-ended heap (a min-max heap): findMax and findMin are O(1), and insert, extractMax and
+ * extractMin are O(log n), all on one array. Serving from the top while evicting from the bottom
+ * therefore needs neither a second heap nor cross-deletion between two heaps.
+ * The items are stored implicitly as in ArrayHeap (children of i at 2i + 1 and 2i + 2), but the levels
+ * alternate: an item on an even level (the root is level 0) is the largest in its subtree, and an item
+ * on an odd level is the smallest in its subtree. So the maximum is the root and the minimum is the
+ * smaller of the root's two children. Sifting compares an item with its grandparent (going up) or its
+ * grandchildren (going down), and only steps across a level at the very end.
+ * @param <T> : The type of item stored in the heap. It must implement
+ *           the Comparable<T> interface, so that the data structure
+ *           knows how to compare two items, unless a Comparator is supplied.
+ */
+public class MinMaxHeap<T> implements PriorityHeap<T> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // some VMs reserve header words in an array
+
+    private Object[] items;
+    private int currentSize;
+    private final Comparator<? super T> comparator; // null means the items' natural ordering
+
+    /**
+     * Construct a min-max heap that is initially empty.
+     */
+    public MinMaxHeap() {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * Construct a min-max heap that is initially empty but can hold the given number of items before growing.
+     * @param initialCapacity the number of items to reserve room for
+     */
+    public MinMaxHeap(int initialCapacity) {
+        this(initialCapacity, null);
+    }
+
+    /**
+     * Construct a min-max heap that is initially empty and orders its items with the given comparator.
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public MinMaxHeap(Comparator<? super T> comparator) {
+        this(DEFAULT_CAPACITY, comparator);
+    }
+
+    /**
+     * Construct an empty min-max heap with room for the given number of items that orders them with the given comparator.
+     * @param initialCapacity the number of items to reserve room for
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public MinMaxHeap(int initialCapacity, Comparator<? super T> comparator) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0: " + initialCapacity);
+        }
+        items = new Object[Math.max(initialCapacity, 1)];
+        currentSize = 0;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns the maximum item in the heap.
+     * @return : The maximum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T findMax() throws Exception {
+        // if the heap has no items/is empty throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return itemAt(0);
+    }
+
+    /**
+     * Returns the minimum item in the heap.
+     * @return : The minimum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    public T findMin() throws Exception {
+        // if the heap has no items/is empty throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return itemAt(minIndex());
+    }
+
+    /**
+     * Removes the maximum item from this heap.
+     * @return : The maximum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T extractMax() throws Exception {
+        // if the heap is empty then throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return removeAt(0);
+    }
+
+    /**
+     * Removes the minimum item from this heap.
+     * @return : The minimum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    public T extractMin() throws Exception {
+        // if the heap is empty then throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return removeAt(minIndex());
+    }
+
+    /**
+     * Inserts the given item into the Heap.
+     * @param item : The item to insert into the heap.
+     */
+    @Override
+    public void insert(T item) {
+        if (currentSize == items.length) {
+            grow();
+        }
+        int index = currentSize++;
+        if (index == 0) {
+            items[0] = item;
+            return;
+        }
+
+        // the new item first settles which kind of level it belongs on, by comparing it with its parent
+        int parent = (index - 1) >>> 1;
+        T parentItem = itemAt(parent);
+        if (isMaxLevel(index)) {
+            // the parent is a min node: an item smaller than it belongs among the min levels above
+            if (compare(item, parentItem) < 0) {
+                items[index] = parentItem;
+                bubbleUp(parent, item, false);
+            } else {
+                bubbleUp(index, item, true);
+            }
+        } else {
+            // the parent is a max node: an item larger than it belongs among the max levels above
+            if (compare(item, parentItem) > 0) {
+                items[index] = parentItem;
+                bubbleUp(parent, item, true);
+            } else {
+                bubbleUp(index, item, false);
+            }
+        }
+    }
+
+    /**
+     * Moves a hole up two levels at a time (from grandparent to grandparent) until the item fits, then places it.
+     * @param index the hole, on a max level if max is true and on a min level otherwise
+     * @param item the item being placed
+     * @param max whether the item is climbing the max levels (or the min levels)
+     */
+    private void bubbleUp(int index, T item, boolean max) {
+        while (index >= 3) { // indexes 0, 1 and 2 have no grandparent
+            int grandparent = (((index - 1) >>> 1) - 1) >>> 1;
+            T grandparentItem = itemAt(grandparent);
+            int order = compare(item, grandparentItem);
+            // stop once the grandparent is at least as large (max levels) or at least as small (min levels)
+            if (max ? order <= 0 : order >= 0) {
+                break;
+            }
+            items[index] = grandparentItem;
+            index = grandparent;
+        }
+        items[index] = item;
+    }
+
+    /**
+     * Removes the item at the given index, which must be the root or one of its children (where the max and min live).
+     * The last item fills the hole and trickles down from there.
+     */
+    private T removeAt(int index) {
+        T removed = itemAt(index);
+        int last = --currentSize;
+        T moved = itemAt(last);
+        items[last] = null; // let the removed item be garbage collected
+
+        if (index < last) {
+            trickleDown(index, moved, isMaxLevel(index));
+        }
+        return removed;
+    }
+
+    /**
+     * Moves a hole down from the given index until the item fits, then places it.
+     * On a max level the hole swaps with the largest of its children and grandchildren, and on a min level with
+     * the smallest. When that is a grandchild, the item may also be on the wrong side of the grandchild's parent
+     * (a node of the other kind), in which case the two trade places before the hole moves on.
+     * @param index the hole
+     * @param item the item being placed
+     * @param max whether index is on a max level
+     */
+    private void trickleDown(int index, T item, boolean max) {
+        int size = currentSize;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break; // a leaf
+            }
+
+            // find the most extreme of the (up to two) children and (up to four) grandchildren
+            int best = child;
+            if (child + 1 < size && isMoreExtreme(itemAt(child + 1), itemAt(best), max)) {
+                best = child + 1;
+            }
+            int grandchild = 2 * child + 1;
+            int lastGrandchild = Math.min(grandchild + 4, size);
+            for (int g = grandchild; g < lastGrandchild; g++) {
+                if (isMoreExtreme(itemAt(g), itemAt(best), max)) {
+                    best = g;
+                }
+            }
+
+            T bestItem = itemAt(best);
+            if (!isMoreExtreme(bestItem, item, max)) {
+                break; // the item is at least as extreme as everything below it
+            }
+            items[index] = bestItem;
+            if (best <= child + 1) {
+                // a child (of the other kind, with nothing more extreme below it): one last step down
+                index = best;
+                break;
+            }
+
+            // a grandchild: its parent sits between the two levels and may now be on the wrong side of the item
+            int parent = (best - 1) >>> 1;
+            T parentItem = itemAt(parent);
+            if (isMoreExtreme(item, parentItem, !max)) {
+                items[parent] = item;
+                item = parentItem;
+            }
+            index = best;
+        }
+        items[index] = item;
+    }
+
+    /**
+     * Returns whether a belongs strictly nearer the max end than b (max is true) or strictly nearer the min end.
+     */
+    private boolean isMoreExtreme(T a, T b, boolean max) {
+        int order = compare(a, b);
+        return max ? order > 0 : order < 0;
+    }
+
+    /**
+     * Returns the index of the minimum item: the root in a heap of one, otherwise the smaller of the root's children.
+     */
+    private int minIndex() {
+        if (currentSize == 1) {
+            return 0;
+        }
+        if (currentSize == 2 || compare(itemAt(1), itemAt(2)) <= 0) {
+            return 1;
+        }
+        return 2;
+    }
+
+    /**
+     * Returns whether the given index is on a max level (an even level, counting the root as level 0).
+     */
+    private static boolean isMaxLevel(int index) {
+        // the level is floor(log2(index + 1)), and 31 - numberOfLeadingZeros gives it directly
+        return ((31 - Integer.numberOfLeadingZeros(index + 1)) & 1) == 0;
+    }
+
+    /**
+     * Doubles the backing array (geometric growth keeps insert amortized O(1) apart from sifting).
+     */
+    private void grow() {
+        int oldCapacity = items.length;
+        if (oldCapacity == MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        int newCapacity = oldCapacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : oldCapacity * 2;
+        items = Arrays.copyOf(items, newCapacity);
+    }
+
+    /**
+     * Compares two items with the heap's comparator, or their natural ordering if there is none.
+     * @return : a positive number if a is larger, a negative number if smaller, 0 if they are equal
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator == null) {
+            return ((Comparable<? super T>) a).compareTo(b);
+        }
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * Returns the comparator this heap orders its items with.
+     * @return : the comparator, or null if the items' natural ordering is used
+     */
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int index) {
+        return (T) items[index];
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    @Override
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    @Override
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap.
+     * @return : The number of levels in this heap.
+     */
+    @Override
+    public int height() {
+        // the heap is a complete binary tree, so its height is floor(log2(size))
+        if (currentSize == 0) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(currentSize);
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+public class MinMaxHeapTester {
+    private static final int ROUNDS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // An empty heap has no max or min to find or extract
+        MinMaxHeap<Integer> empty = new MinMaxHeap<>();
+        expectEmpty(empty);
+        System.out.println("empty heap: ok");
+
+        // Every order of inserting up to three items, including duplicates, drained from either end
+        for (int size = 1; size <= 3; size++) {
+            for (int[] keys : keyCombinations(size)) {
+                for (int drain = 0; drain < (1 << size); drain++) {
+                    MinMaxHeap<Integer> heap = new MinMaxHeap<>();
+                    ArrayList<Integer> reference = new ArrayList<>();
+                    for (int key : keys) {
+                        heap.insert(key);
+                        reference.add(key);
+                    }
+                    // bit i of drain picks the end the i-th extraction comes from
+                    for (int i = 0; i < size; i++) {
+                        check(heap, reference);
+                        extract(heap, reference, (drain & (1 << i)) != 0);
+                    }
+                    expectEmpty(heap);
+                }
+            }
+        }
+        System.out.println("sizes 0-3, every insert order and drain order: ok");
+
+        // Random mixes of insert, extractMax and extractMin, over a narrow range of keys so there are many duplicates
+        for (int round = 0; round < ROUNDS; round++) {
+            MinMaxHeap<Integer> heap = new MinMaxHeap<>(1); // start tiny so grow is exercised too
+            ArrayList<Integer> reference = new ArrayList<>();
+            int operations = random.nextInt(200);
+            int range = 1 + random.nextInt(round % 2 == 0 ? 4 : 1_000);
+            for (int op = 0; op < operations; op++) {
+                // lean towards inserting so the heaps get some depth, but drain them to empty now and then
+                if (reference.isEmpty() || random.nextInt(5) < 3) {
+                    int key = random.nextInt(range);
+                    heap.insert(key);
+                    reference.add(key);
+                    Collections.sort(reference);
+                } else {
+                    extract(heap, reference, random.nextBoolean());
+                }
+                check(heap, reference);
+            }
+            while (!reference.isEmpty()) {
+                extract(heap, reference, random.nextBoolean());
+                check(heap, reference);
+            }
+            expectEmpty(heap);
+        }
+        System.out.println(ROUNDS + " random insert/extractMax/extractMin rounds: ok");
+
+        // A reversed comparator swaps the two ends
+        MinMaxHeap<Integer> reversed = new MinMaxHeap<>(Collections.reverseOrder());
+        for (int i = 0; i < 100; i++) {
+            reversed.insert(random.nextInt(10));
+        }
+        int previous = Integer.MIN_VALUE;
+        while (!reversed.isEmpty()) {
+            int next = reversed.extractMax();
+            if (next < previous) {
+                throw new AssertionError("reversed heap extractMax returned " + next + " after " + previous);
+            }
+            previous = next;
+        }
+        System.out.println("reversed comparator: ok");
+    }
+
+    /**
+     * Returns every list of the given number of keys drawn from {1, 2, 3}, so equal keys appear in every position.
+     */
+    private static ArrayList<int[]> keyCombinations(int size) {
+        ArrayList<int[]> combinations = new ArrayList<>();
+        int count = (int) Math.pow(3, size);
+        for (int n = 0; n < count; n++) {
+            int[] keys = new int[size];
+            for (int i = 0, rest = n; i < size; i++, rest /= 3) {
+                keys[i] = 1 + rest % 3;
+            }
+            combinations.add(keys);
+        }
+        return combinations;
+    }
+
+    /**
+     * Extracts from one end of the heap and checks the item against the same end of the reference.
+     */
+    private static void extract(MinMaxHeap<Integer> heap, ArrayList<Integer> reference, boolean max) throws Exception {
+        Collections.sort(reference);
+        int expected = max ? reference.remove(reference.size() - 1) : reference.remove(0);
+        int actual = max ? heap.extractMax() : heap.extractMin();
+        if (actual != expected) {
+            throw new AssertionError((max ? "extractMax" : "extractMin") + " returned " + actual + ", expected " + expected);
+        }
+    }
+
+    /**
+     * Checks size, findMax and findMin against the sorted reference.
+     */
+    private static void check(MinMaxHeap<Integer> heap, ArrayList<Integer> reference) throws Exception {
+        Collections.sort(reference);
+        if (heap.size() != reference.size()) {
+            throw new AssertionError("size " + heap.size() + ", expected " + reference.size());
+        }
+        if (reference.isEmpty()) {
+            return;
+        }
+        int max = reference.get(reference.size() - 1);
+        int min = reference.get(0);
+        if (heap.findMax() != max || heap.findMin() != min) {
+            throw new AssertionError("findMax/findMin " + heap.findMax() + "/" + heap.findMin() + ", expected " + max + "/" + min);
+        }
+    }
+
+    private static void expectEmpty(MinMaxHeap<Integer> heap) {
+        if (!heap.isEmpty() || heap.size() != 0 || heap.height() != 0) {
+            throw new AssertionError("heap should be empty, size " + heap.size());
+        }
+        for (int attempt = 0; attempt < 4; attempt++) {
+            try {
+                switch (attempt) {
+                    case 0: heap.findMax(); break;
+                    case 1: heap.findMin(); break;
+                    case 2: heap.extractMax(); break;
+                    default: heap.extractMin(); break;
+                }
+            } catch (Exception expected) {
+                continue;
+            }
+            throw new AssertionError("an empty heap did not throw");
+        }
+    }
+}
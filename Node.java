@@ -2,7 +2,7 @@
 /**
  * a node class with a parent, rightChild and leftChild pointer Node and data of type T
  */
-public class Node <T extends Comparable<T>> {
+public class Node <T> {
 
     public T data = null;
     public Node<T> parent;
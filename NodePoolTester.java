@@ -0,0 +1,231 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class NodePoolTester {
+    private static final int ROUNDS = 500;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // The pool is off until a capacity is set
+        Heap<Integer> heap = new Heap<>();
+        for (int i = 0; i < 100; i++) {
+            heap.insert(i);
+        }
+        for (int i = 0; i < 50; i++) {
+            heap.extractMax();
+        }
+        if (heap.nodePoolSize() != 0) {
+            throw new AssertionError("a heap with the default capacity pooled " + heap.nodePoolSize() + " nodes");
+        }
+        System.out.println("pool off by default: ok");
+
+        // Extracted nodes go to the pool with no item or children, and come back out as clean new nodes
+        heap = new Heap<>();
+        heap.setNodePoolCapacity(64);
+        for (int i = 0; i < 100; i++) {
+            heap.insert(i);
+        }
+        for (int i = 0; i < 80; i++) {
+            heap.extractMax();
+            heap.checkStructure();
+        }
+        if (heap.nodePoolSize() != 64) {
+            throw new AssertionError("pool holds " + heap.nodePoolSize() + " nodes, expected its capacity of 64");
+        }
+        for (int i = 0; i < 100; i++) {
+            heap.insert(random.nextInt(1_000));
+            heap.checkStructure(); // a reused node with a stale parent or child link fails here
+        }
+        if (heap.nodePoolSize() != 0) {
+            throw new AssertionError("inserts left " + heap.nodePoolSize() + " nodes in the pool");
+        }
+        System.out.println("recycled nodes start with clean links: ok");
+
+        // sortedIterator over a tree built from reused nodes, and its modCount check when a node is reused under it
+        heap = new Heap<>();
+        heap.setNodePoolCapacity(1_000);
+        ArrayList<Integer> reference = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            heap.insert(i);
+        }
+        for (int i = 0; i < 500; i++) {
+            heap.extractMax();
+        }
+        for (int i = 0; i < 300; i++) {
+            int item = random.nextInt(100);
+            heap.insert(item);
+            reference.add(item);
+        }
+        reference.sort(Collections.reverseOrder());
+        ArrayList<Integer> iterated = new ArrayList<>();
+        heap.sortedIterator().forEachRemaining(iterated::add);
+        if (!iterated.equals(reference) || heap.size() != reference.size()) {
+            throw new AssertionError("sortedIterator over reused nodes returned the wrong items");
+        }
+        heap.checkStructure();
+
+        heap.extractMax(); // puts a node in the pool...
+        Iterator<Integer> iterator = heap.sortedIterator();
+        iterator.next();
+        heap.insert(50); // ...which this insert takes back out
+        expectConcurrentModification(iterator, "insert of a pooled node");
+        iterator = heap.sortedIterator();
+        iterator.next();
+        heap.extractMax();
+        expectConcurrentModification(iterator, "extractMax into the pool");
+        System.out.println("sortedIterator and concurrent modification checks after reuse: ok");
+
+        // Random churn against a PriorityQueue, with random capacity changes and trims, in both orders
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean min = round % 2 == 1;
+            Heap<Integer> churned = new Heap<>(min ? HeapOrder.MIN : HeapOrder.MAX);
+            PriorityQueue<Integer> expected = new PriorityQueue<>(min ? null : Collections.reverseOrder());
+            churned.setNodePoolCapacity(random.nextInt(64));
+            int operations = random.nextInt(400);
+            for (int op = 0; op < operations; op++) {
+                int choice = random.nextInt(20);
+                if (choice == 0) {
+                    churned.setNodePoolCapacity(random.nextInt(64));
+                } else if (choice == 1) {
+                    churned.trimToSize();
+                } else if (choice == 2) {
+                    // insertAll takes its nodes from the pool too
+                    ArrayList<Integer> items = new ArrayList<>();
+                    for (int i = random.nextInt(40); i > 0; i--) {
+                        items.add(random.nextInt(50));
+                    }
+                    churned.insertAll(items);
+                    expected.addAll(items);
+                } else if (expected.isEmpty() || choice < 11) {
+                    int item = random.nextInt(50);
+                    churned.insert(item);
+                    expected.add(item);
+                } else {
+                    int actual = churned.extractMax();
+                    if (actual != expected.poll()) {
+                        throw new AssertionError("extractMax returned " + actual + " in round " + round);
+                    }
+                }
+                churned.checkStructure();
+                if (churned.size() != expected.size()) {
+                    throw new AssertionError("size " + churned.size() + ", expected " + expected.size());
+                }
+            }
+        }
+        System.out.println(ROUNDS + " random churn rounds with capacity changes and trims: ok");
+
+        // Batch operations: insertBatch either sifts each item up or appends the batch and rebuilds, depending on its size
+        // next to the heap (a few items into a large heap, or many into a small one); either way the heap must stay valid.
+        // extractTop returns a short count once the heap runs out, and drainTo empties it.
+        for (int round = 0; round < ROUNDS; round++) {
+            Heap<Integer> linked = new Heap<>();
+            linked.setNodePoolCapacity(random.nextInt(64)); // the batch paths take their nodes from the pool too
+            ArrayHeap<Integer> array = new ArrayHeap<>();
+            PriorityQueue<Integer> expected = new PriorityQueue<>(Collections.reverseOrder());
+            int operations = random.nextInt(60);
+            for (int op = 0; op < operations; op++) {
+                if (random.nextBoolean()) {
+                    Integer[] source = new Integer[random.nextInt(random.nextBoolean() ? 4 : 300)];
+                    for (int i = 0; i < source.length; i++) {
+                        source[i] = random.nextInt(100);
+                    }
+                    int off = source.length == 0 ? 0 : random.nextInt(source.length);
+                    int len = random.nextInt(source.length - off + 1);
+                    linked.insertBatch(source, off, len);
+                    array.insertBatch(source, off, len);
+                    for (int i = off; i < off + len; i++) {
+                        expected.add(source[i]);
+                    }
+                } else {
+                    int n = random.nextInt(40);
+                    Integer[] fromLinked = new Integer[n + random.nextInt(3)];
+                    Integer[] fromArray = new Integer[fromLinked.length];
+                    int count = Math.min(n, expected.size());
+                    if (linked.extractTop(n, fromLinked) != count || array.extractTop(n, fromArray) != count) {
+                        throw new AssertionError("extractTop(" + n + ") with " + expected.size() + " items should return " + count);
+                    }
+                    for (int i = 0; i < fromLinked.length; i++) {
+                        Integer item = i < count ? expected.poll() : null; // slots past the count are left alone
+                        if (!Objects.equals(fromLinked[i], item) || !Objects.equals(fromArray[i], item)) {
+                            throw new AssertionError("extractTop slot " + i + " holds " + fromLinked[i] + " and " + fromArray[i] + ", expected " + item);
+                        }
+                    }
+                }
+                linked.checkStructure();
+                array.checkStructure();
+                if (linked.size() != expected.size() || array.size() != expected.size()) {
+                    throw new AssertionError("sizes " + linked.size() + " and " + array.size() + ", expected " + expected.size());
+                }
+            }
+            ArrayList<Integer> drainedLinked = new ArrayList<>();
+            ArrayList<Integer> drainedArray = new ArrayList<>();
+            ArrayList<Integer> drainedExpected = new ArrayList<>();
+            while (!expected.isEmpty()) {
+                drainedExpected.add(expected.poll());
+            }
+            if (linked.drainTo(drainedLinked) != drainedExpected.size() || array.drainTo(drainedArray) != drainedExpected.size()
+                    || !drainedLinked.equals(drainedExpected) || !drainedArray.equals(drainedExpected)) {
+                throw new AssertionError("drainTo returned the wrong items or count");
+            }
+            linked.checkStructure();
+            array.checkStructure();
+            if (!linked.isEmpty() || !array.isEmpty()) {
+                throw new AssertionError("drainTo left items behind");
+            }
+        }
+        System.out.println(ROUNDS + " random insertBatch/extractTop/drainTo rounds, sifted and rebuilt: ok");
+
+        // Out-of-range batch arguments are rejected before anything changes, by the overrides and by the defaults
+        ArrayList<PriorityHeap<Integer>> heaps = new ArrayList<>();
+        heaps.add(new Heap<>());
+        heaps.add(new ArrayHeap<>());
+        heaps.add(new DaryHeap<>(3)); // PriorityHeap's default insertBatch and extractTop
+        Integer[] five = {1, 2, 3, 4, 5};
+        for (PriorityHeap<Integer> target : heaps) {
+            target.insertBatch(five, 0, five.length);
+            int[][] badRanges = {{-1, 1}, {0, -1}, {0, 6}, {4, 2}, {6, 0}, {Integer.MAX_VALUE, 1}};
+            for (int[] range : badRanges) {
+                try {
+                    target.insertBatch(five, range[0], range[1]);
+                    throw new AssertionError(target.getClass().getName() + " accepted insertBatch off " + range[0] + ", len " + range[1]);
+                } catch (IndexOutOfBoundsException expected) {
+                    // rejected
+                }
+            }
+            for (int n : new int[] {-1, 3}) {
+                try {
+                    target.extractTop(n, new Integer[2]);
+                    throw new AssertionError(target.getClass().getName() + " accepted extractTop(" + n + ") into 2 slots");
+                } catch (IllegalArgumentException expected) {
+                    // rejected
+                }
+            }
+            if (target.size() != five.length || target.findMax() != 5) {
+                throw new AssertionError(target.getClass().getName() + " changed on a rejected batch call");
+            }
+        }
+        System.out.println("out-of-range insertBatch and extractTop arguments rejected: ok");
+
+        try {
+            new Heap<Integer>().setNodePoolCapacity(-1);
+            throw new AssertionError("a negative pool capacity was accepted");
+        } catch (IllegalArgumentException expected) {
+            System.out.println("negative capacity rejected: ok");
+        }
+    }
+
+    private static void expectConcurrentModification(Iterator<Integer> iterator, String change) {
+        try {
+            iterator.next();
+        } catch (ConcurrentModificationException expected) {
+            return;
+        }
+        throw new AssertionError("sortedIterator did not notice an " + change);
+    }
+}
@@ -0,0 +1,331 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A heap of (long key, long id) entries kept outside the Java heap, in direct ByteBuffers.
+ * The garbage collector never sees the entries, so even hundreds of millions of them add nothing to
+ * GC marking or pause times, and insert and extractMax allocate nothing. The id is a payload, such
+ * as an index into the caller's own storage, that travels with its key.
+ *
+ * Entries are 16 bytes (key, then id) laid out in level order across fixed-size chunks (one
+ * ByteBuffer cannot exceed 2 GB). Chunks are allocated as the heap grows, up to the capacity given
+ * to the constructor, and released by close(); a closed heap cannot be used again.
+ */
+public class OffHeapHeap implements AutoCloseable {
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int ENTRY_SHIFT = 4; // log2(ENTRY_BYTES)
+    private static final int CHUNK_ENTRY_SHIFT = 22; // 4M entries (64 MB) per chunk
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    // sun.misc.Unsafe.invokeCleaner bound to the Unsafe instance, looked up once; null where the VM does not provide it
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final int capacity;
+    private final HeapOrder order;
+    private final int chunkEntryShift;
+    private final int chunkEntries;
+    private final int chunkMask;
+
+    /*
+     * In MIN order the keys are stored bit-flipped (~key reverses the order of every long without
+     * overflowing), so the sifts only ever look for the max, as in KeyedHeap.
+     */
+    private ByteBuffer[] chunks;
+    private int allocatedChunks;
+    private int currentSize;
+
+    /**
+     * Construct an empty heap that keeps the entry with the largest key at the root.
+     * @param capacity the most entries the heap may hold
+     */
+    public OffHeapHeap(int capacity) {
+        this(capacity, HeapOrder.MAX);
+    }
+
+    /**
+     * Construct an empty heap that keeps the entry with the largest (MAX) or smallest (MIN) key at the root.
+     * @param capacity the most entries the heap may hold
+     * @param order which end of the key ordering is kept at the root
+     */
+    public OffHeapHeap(int capacity, HeapOrder order) {
+        this(capacity, order, CHUNK_ENTRY_SHIFT);
+    }
+
+    /**
+     * Construct an empty heap with chunks of 2^chunkEntryShift entries, so that tests can cross chunk
+     * boundaries without allocating 64 MB chunks.
+     * @param capacity the most entries the heap may hold
+     * @param order which end of the key ordering is kept at the root
+     * @param chunkEntryShift log2 of the number of entries per chunk (0 to 26, since a chunk is one ByteBuffer)
+     */
+    OffHeapHeap(int capacity, HeapOrder order, int chunkEntryShift) {
+        if (order == null) {
+            throw new NullPointerException();
+        }
+        if (capacity < 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        if (chunkEntryShift < 0 || chunkEntryShift > 26) {
+            throw new IllegalArgumentException("chunkEntryShift out of range: " + chunkEntryShift);
+        }
+        this.capacity = capacity;
+        this.order = order;
+        this.chunkEntryShift = chunkEntryShift;
+        chunkEntries = 1 << chunkEntryShift;
+        chunkMask = chunkEntries - 1;
+        chunks = new ByteBuffer[(int) (((long) capacity + chunkMask) >>> chunkEntryShift)];
+        allocatedChunks = 0;
+        currentSize = 0;
+    }
+
+    /**
+     * Inserts an entry into the heap.
+     * @param key : the key the entry is ordered by
+     * @param id : the payload stored with the key
+     */
+    public void insert(long key, long id) {
+        checkOpen();
+        if (currentSize == capacity) {
+            throw new IllegalStateException("Heap is full (capacity " + capacity + ")");
+        }
+        if ((currentSize >>> chunkEntryShift) == allocatedChunks) {
+            allocateChunk();
+        }
+        siftUp(currentSize, order == HeapOrder.MAX ? key : ~key, id);
+        currentSize++;
+    }
+
+    /**
+     * Returns the id of the entry at the root of the heap.
+     * @return : The id stored with the largest key (smallest for HeapOrder.MIN).
+     * @precondition : Heap is not empty.
+     */
+    public long findMax() throws Exception {
+        checkOpen();
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return idAt(0);
+    }
+
+    /**
+     * Returns the key of the entry at the root of the heap.
+     * @return : The key of the entry findMax would return.
+     * @precondition : Heap is not empty.
+     */
+    public long findMaxKey() throws Exception {
+        checkOpen();
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return order == HeapOrder.MAX ? keyAt(0) : ~keyAt(0);
+    }
+
+    /**
+     * Removes the entry at the root of the heap.
+     * @return : The id stored with the largest key (smallest for HeapOrder.MIN), which was removed.
+     * @precondition : Heap is not empty.
+     */
+    public long extractMax() throws Exception {
+        checkOpen();
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        long maxId = idAt(0);
+        int last = --currentSize;
+
+        // the last entry fills the hole left at the root and is sifted down from there
+        if (last > 0) {
+            siftDown(0, keyAt(last), idAt(last));
+        }
+        return maxId;
+    }
+
+    /**
+     * Moves a hole up from the given index until the entry fits, then writes the entry there.
+     * @param index the index of the hole (initially the first free slot)
+     * @param key the (possibly inverted) key being placed
+     * @param id the id stored with it
+     */
+    private void siftUp(int index, long key, long id) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            long parentKey = keyAt(parent);
+            // stop once the parent's key is at least as large
+            if (key <= parentKey) {
+                break;
+            }
+            put(index, parentKey, idAt(parent)); // pull the parent down into the hole
+            index = parent;
+        }
+        put(index, key, id);
+    }
+
+    /**
+     * Moves a hole down from the given index until the entry fits, then writes the entry there.
+     * @param index the index of the hole (the root after a removal)
+     * @param key the (possibly inverted) key being placed
+     * @param id the id stored with it
+     */
+    private void siftDown(int index, long key, long id) {
+        int half = currentSize >>> 1; // entries at or past this index are leaves
+        while (index < half) {
+            int child = 2 * index + 1;
+            long childKey = keyAt(child);
+            int right = child + 1;
+            // pick the larger of the two children
+            if (right < currentSize) {
+                long rightKey = keyAt(right);
+                if (rightKey > childKey) {
+                    child = right;
+                    childKey = rightKey;
+                }
+            }
+            // stop once the key is at least as large as both children
+            if (key >= childKey) {
+                break;
+            }
+            put(index, childKey, idAt(child)); // pull the child up into the hole
+            index = child;
+        }
+        put(index, key, id);
+    }
+
+    private long keyAt(int index) {
+        return chunks[index >>> chunkEntryShift].getLong((index & chunkMask) << ENTRY_SHIFT);
+    }
+
+    private long idAt(int index) {
+        return chunks[index >>> chunkEntryShift].getLong(((index & chunkMask) << ENTRY_SHIFT) + 8);
+    }
+
+    private void put(int index, long key, long id) {
+        ByteBuffer chunk = chunks[index >>> chunkEntryShift];
+        int offset = (index & chunkMask) << ENTRY_SHIFT;
+        chunk.putLong(offset, key);
+        chunk.putLong(offset + 8, id);
+    }
+
+    /**
+     * Allocates the next chunk, only as large as the remaining capacity needs.
+     */
+    private void allocateChunk() {
+        long firstEntry = (long) allocatedChunks << chunkEntryShift;
+        int entries = (int) Math.min(chunkEntries, capacity - firstEntry);
+        // native byte order lets getLong/putLong skip the byte swap (the bytes never leave this process)
+        chunks[allocatedChunks++] = ByteBuffer.allocateDirect(entries * ENTRY_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Releases the off-heap memory right away instead of waiting for the buffers to be garbage collected.
+     * The heap cannot be used afterwards. Calling close more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (chunks == null) {
+            return;
+        }
+        ByteBuffer[] released = chunks;
+        chunks = null;
+        currentSize = 0;
+        for (int i = 0; i < allocatedChunks; i++) {
+            free(released[i]);
+        }
+        allocatedChunks = 0;
+    }
+
+    /**
+     * Frees a direct buffer through sun.misc.Unsafe.invokeCleaner when the VM provides it (the only way
+     * to do this before the foreign memory API). Otherwise the buffer is left for the garbage collector.
+     */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return; // the buffer's memory is released when it is collected
+        }
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // invokeCleaner declares no checked exceptions, so this is a RuntimeException: leave the buffer to the collector
+        }
+    }
+
+    /**
+     * Looks up sun.misc.Unsafe.invokeCleaner and binds it to the Unsafe instance.
+     * @return : a handle taking the ByteBuffer to free, or null if the VM does not allow it
+     */
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            return MethodHandles.lookup().unreflect(invokeCleaner).bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // not available on this VM
+        }
+    }
+
+    private void checkOpen() {
+        if (chunks == null) {
+            throw new IllegalStateException("Heap is closed");
+        }
+    }
+
+    /**
+     * Returns the most entries this heap can hold.
+     * @return : the capacity given to the constructor
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory currently allocated.
+     * @return : the total size of the allocated chunks
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (int i = 0; i < allocatedChunks; i++) {
+            bytes += chunks[i].capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of entries stored in this heap.
+     * @return : the number of entries stored in this heap.
+     */
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap.
+     * @return : The number of levels in this heap.
+     */
+    public int height() {
+        // the heap is a complete binary tree, so its height is floor(log2(size))
+        if (currentSize == 0) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(currentSize);
+    }
+}
@@ -0,0 +1,143 @@
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class OffHeapHeapTester {
+    private static final int ROUNDS = 300;
+    private static final long[] EDGE_KEYS = {Long.MIN_VALUE, Long.MIN_VALUE + 1, -1, 0, 1, Long.MAX_VALUE - 1, Long.MAX_VALUE};
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // Random insert / extractMax against a PriorityQueue<long[]> of (key, id), in both orders, with chunks of
+        // 1 to 16 entries so that parents and children often sit in different chunks
+        for (int round = 0; round < ROUNDS; round++) {
+            HeapOrder order = round % 2 == 0 ? HeapOrder.MAX : HeapOrder.MIN;
+            int chunkEntryShift = random.nextInt(5);
+            int capacity = 1 + random.nextInt(200);
+            randomRound(random, new OffHeapHeap(capacity, order, chunkEntryShift), order, capacity);
+        }
+        System.out.println(ROUNDS + " random rounds across chunk boundaries, MAX and MIN, extreme keys: ok");
+
+        // Chunks are allocated as the heap grows; the last one only as large as the remaining capacity
+        OffHeapHeap growing = new OffHeapHeap(20, HeapOrder.MAX, 3);
+        long[] expectedBytes = {0, 8 * 16, 16 * 16, 16 * 16, 20 * 16}; // chunks of 8, 8 and 4 entries
+        for (int size = 0; size <= 20; size += 5) {
+            while (growing.size() < size) {
+                growing.insert(growing.size(), 0);
+            }
+            if (growing.offHeapBytes() != expectedBytes[size / 5]) {
+                throw new AssertionError(size + " entries use " + growing.offHeapBytes() + " bytes, expected " + expectedBytes[size / 5]);
+            }
+        }
+        System.out.println("chunks allocated on demand: ok");
+
+        // A full heap and a closed heap reject operations; close twice is harmless
+        try {
+            growing.insert(0, 0);
+            throw new AssertionError("a full heap accepted an entry");
+        } catch (IllegalStateException expected) {
+            // capacity 20 reached
+        }
+        growing.close();
+        growing.close();
+        if (growing.size() != 0 || growing.offHeapBytes() != 0) {
+            throw new AssertionError("a closed heap still reports entries or memory");
+        }
+        expectClosed(() -> growing.insert(1, 1), "insert");
+        expectClosed(growing::findMax, "findMax");
+        expectClosed(growing::findMaxKey, "findMaxKey");
+        expectClosed(growing::extractMax, "extractMax");
+        OffHeapHeap empty = new OffHeapHeap(1);
+        try {
+            empty.extractMax();
+            throw new AssertionError("extractMax on an empty heap returned");
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception expected) {
+            empty.close();
+        }
+        System.out.println("full, empty, closed and double-closed heaps: ok");
+
+        // close() returns the memory of real 64 MB chunks to the direct buffer pool at once, not at the next GC
+        BufferPoolMXBean direct = null;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                direct = pool;
+            }
+        }
+        long before = direct.getMemoryUsed();
+        OffHeapHeap large = new OffHeapHeap((1 << 22) + 1);
+        for (int i = 0; i <= 1 << 22; i++) {
+            large.insert(i, i); // one past the first chunk, so both chunks are allocated and the root sits in the first
+        }
+        if (large.findMaxKey() != 1 << 22 || large.offHeapBytes() != ((1L << 22) + 1) * 16) {
+            throw new AssertionError("an entry past the first chunk boundary was lost");
+        }
+        large.close();
+        if (direct.getMemoryUsed() != before) {
+            throw new AssertionError("close left " + (direct.getMemoryUsed() - before) + " bytes of direct memory allocated");
+        }
+        System.out.println("close frees the chunks right away: ok");
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    private static void randomRound(Random random, OffHeapHeap heap, HeapOrder order, int capacity) throws Exception {
+        Comparator<long[]> byKey = Comparator.comparingLong(entry -> entry[0]);
+        PriorityQueue<long[]> expected = new PriorityQueue<>(order == HeapOrder.MAX ? byKey.reversed() : byKey);
+        Map<Long, Long> keyOfId = new HashMap<>();
+        long nextId = 0;
+        for (int op = random.nextInt(4 * capacity); op > 0; op--) {
+            if (random.nextInt(3) != 0 && heap.size() < capacity) {
+                long key = random.nextInt(4) == 0 ? EDGE_KEYS[random.nextInt(EDGE_KEYS.length)] : random.nextInt(30) - 15;
+                long id = nextId++;
+                heap.insert(key, id);
+                expected.add(new long[] {key, id});
+                keyOfId.put(id, key);
+            } else if (!expected.isEmpty()) {
+                checkRemoval(heap, expected, keyOfId);
+            }
+            if (heap.size() != expected.size()) {
+                throw new AssertionError("size " + heap.size() + ", expected " + expected.size());
+            }
+        }
+        while (!expected.isEmpty()) {
+            checkRemoval(heap, expected, keyOfId);
+        }
+        if (!heap.isEmpty()) {
+            throw new AssertionError("the heap still holds entries after the reference ran out");
+        }
+        heap.close();
+    }
+
+    /**
+     * Equal keys may come out in any order, so the removed id only has to be one that was stored with the expected key.
+     */
+    private static void checkRemoval(OffHeapHeap heap, PriorityQueue<long[]> expected, Map<Long, Long> keyOfId) throws Exception {
+        long key = expected.poll()[0];
+        if (heap.findMaxKey() != key) {
+            throw new AssertionError("root key " + heap.findMaxKey() + ", expected " + key);
+        }
+        long id = heap.extractMax();
+        Long storedKey = keyOfId.remove(id);
+        if (storedKey == null || storedKey != key) {
+            throw new AssertionError("extracted id " + id + " was not stored with key " + key);
+        }
+    }
+
+    private static void expectClosed(Operation operation, String name) throws Exception {
+        try {
+            operation.run();
+            throw new AssertionError(name + " worked on a closed heap");
+        } catch (IllegalStateException expected) {
+            // the heap was closed
+        }
+    }
+}
@@ -0,0 +1,262 @@
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * A max heap that can be merged with another in O(1) (a pairing heap).
+ * It is a tree of the same Nodes that Heap uses, but in left-child/right-sibling form: a node's
+ * leftChild is its first child and its rightChild is its next sibling (parent is unused).
+ * insert and meld just link two trees under the larger root; extractMax removes the root and
+ * pairs up its children (left to right, then combines the pairs right to left), which costs
+ * amortized O(log n). Neither operation copies or allocates nodes beyond the one created by insert.
+ * @param <T> : The type of item stored in the heap. It must implement
+ *           the Comparable<T> interface, so that the data structure
+ *           knows how to compare two items, unless a Comparator is supplied.
+ */
+public class PairingHeap<T> implements PriorityHeap<T> {
+
+    private Node<T> rootNode;
+    private int currentSize;
+    private final Comparator<? super T> comparator; // what sifting uses: the ordering with the HeapOrder applied
+    private final Comparator<? super T> ordering; // the caller's ordering, null means natural ordering
+    private final HeapOrder order;
+
+    /**
+     * Construct a max heap that is initially empty.
+     */
+    public PairingHeap() {
+        this(null, HeapOrder.MAX);
+    }
+
+    /**
+     * Construct an empty max heap (HeapOrder.MAX) or min heap (HeapOrder.MIN) over the items' natural ordering.
+     * @param order which end of the ordering is kept at the root
+     */
+    public PairingHeap(HeapOrder order) {
+        this(null, order);
+    }
+
+    /**
+     * Construct a max heap that is initially empty and orders its items with the given comparator.
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     */
+    public PairingHeap(Comparator<? super T> comparator) {
+        this(comparator, HeapOrder.MAX);
+    }
+
+    /**
+     * Construct an empty heap that orders its items with the given comparator.
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     * @param order which end of the ordering is kept at the root
+     */
+    public PairingHeap(Comparator<? super T> comparator, HeapOrder order) {
+        if (order == null) {
+            throw new NullPointerException();
+        }
+        rootNode = null;
+        currentSize = 0;
+        this.ordering = comparator;
+        this.order = order;
+        this.comparator = order.applyTo(comparator);
+    }
+
+    /**
+     * Returns the maximum item in the heap.
+     * @return : The maximum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T findMax() throws Exception {
+        // if the heap has no nodes/is empty throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return rootNode.getData();
+    }
+
+    /**
+     * Removes the maximum item from this heap.
+     * @return : The maximum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public T extractMax() throws Exception {
+        // if the heap is empty then throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        Node<T> oldRoot = rootNode;
+        rootNode = mergePairs(oldRoot.getLeftChild()); // the root's children become one tree again
+        oldRoot.setLeftChild(null);
+        currentSize--;
+        return oldRoot.getData();
+    }
+
+    /**
+     * Inserts the given item into the Heap.
+     * @param item : The item to insert into the heap.
+     */
+    @Override
+    public void insert(T item) {
+        Node<T> node = new Node<T>(item);
+        rootNode = rootNode == null ? node : link(rootNode, node);
+        currentSize++;
+    }
+
+    /**
+     * Moves every item of the other heap into this one in O(1), reusing its nodes. The other heap is left empty.
+     * The two heaps must have the same HeapOrder and the same ordering. Heaps over the items' natural ordering
+     * always qualify. Heaps given a comparator must have been given equal ones (by equals, which for a lambda
+     * or most comparator classes means the same instance), so share one comparator between heaps that will be melded.
+     * A heap built with this heap's comparator() also qualifies.
+     * @param other a heap with the same ordering as this one
+     * @throws IllegalArgumentException if other is this heap or orders its items differently
+     */
+    public void meld(PairingHeap<T> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("A heap cannot be melded with itself");
+        }
+        // what the callers asked for decides, since a MIN heap's comparator is a wrapper made for that heap;
+        // equal comparators (as from comparator()) give the same ordering too, however they were asked for
+        boolean sameRequest = order == other.order && Objects.equals(ordering, other.ordering);
+        if (!sameRequest && !Objects.equals(comparator, other.comparator)) {
+            throw new IllegalArgumentException("Only heaps with the same ordering can be melded");
+        }
+        if (other.rootNode == null) {
+            return;
+        }
+
+        rootNode = rootNode == null ? other.rootNode : link(rootNode, other.rootNode);
+        currentSize += other.currentSize;
+        other.rootNode = null;
+        other.currentSize = 0;
+    }
+
+    /**
+     * Makes the root with the smaller item the first child of the other root.
+     * @param a the root of a tree (with no siblings)
+     * @param b the root of another tree (with no siblings)
+     * @return : the root of the combined tree
+     */
+    private Node<T> link(Node<T> a, Node<T> b) {
+        // on a tie a stays on top
+        if (compare(b.getData(), a.getData()) > 0) {
+            Node<T> temp = a;
+            a = b;
+            b = temp;
+        }
+        b.setRightChild(a.getLeftChild()); // the old first child becomes b's next sibling
+        a.setLeftChild(b);
+        return a;
+    }
+
+    /**
+     * Combines a list of sibling trees into one: first link them in pairs from left to right, then
+     * link the pairs together from right to left. Done with loops so a long list cannot overflow the stack.
+     * @param first the first tree in the sibling list (may be null)
+     * @return : the root of the combined tree, or null if the list was empty
+     */
+    private Node<T> mergePairs(Node<T> first) {
+        Node<T> pairs = null; // the linked pairs, chained through rightChild in reverse order
+
+        while (first != null) {
+            Node<T> a = first;
+            Node<T> b = a.getRightChild();
+            if (b == null) {
+                // an odd tree out joins the pairs on its own
+                a.setRightChild(pairs);
+                pairs = a;
+                break;
+            }
+            first = b.getRightChild();
+            a.setRightChild(null);
+            b.setRightChild(null);
+            Node<T> pair = link(a, b);
+            pair.setRightChild(pairs);
+            pairs = pair;
+        }
+
+        // pairs now starts with the rightmost pair, so this combines them right to left
+        Node<T> result = null;
+        while (pairs != null) {
+            Node<T> next = pairs.getRightChild();
+            pairs.setRightChild(null);
+            result = result == null ? pairs : link(result, pairs);
+            pairs = next;
+        }
+        return result;
+    }
+
+    /**
+     * Compares two items with the heap's comparator, or their natural ordering if there is none.
+     * @return : a positive number if a belongs above b, a negative number if below, 0 if they are equal
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(T a, T b) {
+        if (comparator == null) {
+            return ((Comparable<? super T>) a).compareTo(b);
+        }
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * Returns the comparator this heap orders its items with.
+     * @return : the comparator, or null if the items' natural ordering is used
+     */
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    @Override
+    public boolean isEmpty() {
+        return rootNode == null;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    @Override
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap.
+     * A pairing heap is not balanced, so this walks the whole tree (O(n)).
+     * @return : The number of levels in this heap.
+     */
+    @Override
+    public int height() {
+        if (rootNode == null) {
+            return 0;
+        }
+
+        int height = 0;
+        // each entry is a node and its depth; siblings share their depth, first children are one deeper
+        ArrayDeque<Node<T>> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> depths = new ArrayDeque<>();
+        nodes.push(rootNode);
+        depths.push(0);
+        while (!nodes.isEmpty()) {
+            Node<T> node = nodes.pop();
+            int depth = depths.pop();
+            height = Math.max(height, depth);
+            if (node.getRightChild() != null) {
+                nodes.push(node.getRightChild());
+                depths.push(depth);
+            }
+            if (node.getLeftChild() != null) {
+                nodes.push(node.getLeftChild());
+                depths.push(depth + 1);
+            }
+        }
+        return height;
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class PairingHeapTester {
+    private static final int ROUNDS = 500;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // Heaps built the same way meld, whichever constructor made them
+        meldAndDrain(new PairingHeap<>(), new PairingHeap<>(), false);
+        meldAndDrain(new PairingHeap<>(HeapOrder.MIN), new PairingHeap<>(HeapOrder.MIN), true);
+        Comparator<Integer> byValue = (a, b) -> Integer.compare(a, b); // one instance shared by both heaps
+        meldAndDrain(new PairingHeap<>(byValue), new PairingHeap<>(byValue, HeapOrder.MAX), false);
+        meldAndDrain(new PairingHeap<>(byValue, HeapOrder.MIN), new PairingHeap<>(byValue, HeapOrder.MIN), true);
+        meldAndDrain(new PairingHeap<>(Collections.reverseOrder()), new PairingHeap<>(Collections.reverseOrder()), true);
+        System.out.println("meld of heaps with the same order and ordering: ok");
+
+        // ...and heaps that order their items differently do not
+        expectRejected(new PairingHeap<>(), new PairingHeap<>(HeapOrder.MIN), "MAX into MIN");
+        expectRejected(new PairingHeap<>(HeapOrder.MIN), new PairingHeap<>(byValue, HeapOrder.MIN), "natural into comparator ordering");
+        expectRejected(new PairingHeap<>(byValue), new PairingHeap<>((a, b) -> Integer.compare(a, b)), "two different lambdas");
+        PairingHeap<Integer> self = new PairingHeap<>();
+        expectRejected(self, self, "a heap into itself");
+        System.out.println("meld of differently ordered heaps rejected: ok");
+
+        // Long sibling lists for the two-pass merge: descending inserts leave every item a child of the root,
+        // so the first extractMax pairs up n - 1 siblings (an even and an odd count, deep enough to overflow a recursive merge)
+        for (int n : new int[] {1_000_000, 1_000_001}) {
+            PairingHeap<Integer> wide = new PairingHeap<>();
+            for (int i = n; i >= 1; i--) {
+                wide.insert(i);
+            }
+            if (wide.height() != 1) {
+                throw new AssertionError("descending inserts should leave a tree of height 1, got " + wide.height());
+            }
+            for (int i = n; i >= 1; i--) {
+                if (wide.extractMax() != i) {
+                    throw new AssertionError("two-pass merge of " + n + " siblings returned an item out of order");
+                }
+            }
+        }
+        System.out.println("two-pass merge of long sibling lists: ok");
+
+        // Random insert / extractMax / meld, against a PriorityQueue, in both orders and with many duplicates
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean min = round % 2 == 1;
+            HeapOrder order = min ? HeapOrder.MIN : HeapOrder.MAX;
+            PairingHeap<Integer> heap = new PairingHeap<>(order);
+            PriorityQueue<Integer> expected = new PriorityQueue<>(min ? null : Collections.reverseOrder());
+            int operations = random.nextInt(300);
+            for (int op = 0; op < operations; op++) {
+                int choice = random.nextInt(10);
+                if (choice == 0) {
+                    PairingHeap<Integer> other = new PairingHeap<>(order);
+                    for (int i = random.nextInt(30); i > 0; i--) {
+                        int item = random.nextInt(20);
+                        other.insert(item);
+                        expected.add(item);
+                    }
+                    heap.meld(other);
+                    if (!other.isEmpty() || other.size() != 0) {
+                        throw new AssertionError("meld left items in the other heap");
+                    }
+                } else if (expected.isEmpty() || choice < 6) {
+                    int item = random.nextInt(20);
+                    heap.insert(item);
+                    expected.add(item);
+                } else {
+                    int actual = heap.extractMax();
+                    if (actual != expected.poll()) {
+                        throw new AssertionError("extractMax returned " + actual + " in round " + round);
+                    }
+                }
+                if (heap.size() != expected.size() || (!expected.isEmpty() && heap.findMax() != expected.peek().intValue())) {
+                    throw new AssertionError("size or findMax disagrees with the reference in round " + round);
+                }
+            }
+        }
+        System.out.println(ROUNDS + " random insert/extractMax/meld rounds: ok");
+    }
+
+    /**
+     * Fills both heaps, melds b (and then an empty heap) into a and checks everything comes out of a in order.
+     */
+    private static void meldAndDrain(PairingHeap<Integer> a, PairingHeap<Integer> b, boolean min) throws Exception {
+        PriorityQueue<Integer> expected = new PriorityQueue<>(min ? null : Collections.reverseOrder());
+        for (int i = 0; i < 100; i++) {
+            a.insert(i % 7);
+            expected.add(i % 7);
+            b.insert(i % 11);
+            expected.add(i % 11);
+        }
+        a.meld(b);
+        a.meld(new PairingHeap<>(a.comparator())); // an empty heap melds as a no-op (same comparator instance)
+        if (!b.isEmpty() || a.size() != expected.size()) {
+            throw new AssertionError("meld moved the wrong number of items");
+        }
+        while (!expected.isEmpty()) {
+            if (a.extractMax() != expected.poll().intValue()) {
+                throw new AssertionError("melded heap returned an item out of order");
+            }
+        }
+        b.meld(a); // both empty
+        if (!a.isEmpty() || !b.isEmpty()) {
+            throw new AssertionError("melding two empty heaps produced items");
+        }
+    }
+
+    private static void expectRejected(PairingHeap<Integer> into, PairingHeap<Integer> from, String what) {
+        from.insert(1);
+        try {
+            into.meld(from);
+        } catch (IllegalArgumentException expected) {
+            if (from.size() != 1) {
+                throw new AssertionError("a rejected meld of " + what + " still moved items");
+            }
+            return;
+        }
+        throw new AssertionError("meld of " + what + " was accepted");
+    }
+}
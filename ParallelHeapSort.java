@@ -0,0 +1,145 @@
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Heap sort (greatest to least) spread over a ForkJoinPool.
+ * The input is cut into one contiguous partition per worker; each worker heapifies its partition
+ * bottom-up in an ArrayHeap and drains it into a sorted array. The sorted partitions are then combined
+ * lazily by a k-way merge driven by a small heap of cursors, so results can be consumed as they come.
+ * The sort is not stable: equal items from different partitions come out in partition (input) order, but
+ * within a partition the heap drain reorders them. The output is therefore identical to a single-threaded
+ * heap sort only for items whose equal values are indistinguishable, such as Strings; items that merely
+ * compare equal under the comparator may come out in any order.
+ */
+public class ParallelHeapSort {
+
+    /** The most workers a ForkJoinPool can have. */
+    public static final int MAX_PARALLELISM = 0x7fff;
+
+    private ParallelHeapSort() {
+    }
+
+    /**
+     * The read position in one sorted partition during the merge.
+     */
+    private static final class Cursor {
+        final Object[] sorted;
+        final int partition;
+        int position;
+
+        Cursor(Object[] sorted, int partition) {
+            this.sorted = sorted;
+            this.partition = partition;
+        }
+    }
+
+    /**
+     * Sorts the items from greatest to least.
+     * @param items the items to sort (not modified)
+     * @param comparator the ordering to use (null for the items' natural ordering)
+     * @param parallelism the number of workers (0 for one per available processor, at most MAX_PARALLELISM)
+     * @return : an iterator that yields the items in sorted order, merging on demand
+     */
+    public static <T> Iterator<T> sort(List<? extends T> items, Comparator<? super T> comparator, int parallelism) {
+        if (parallelism < 0 || parallelism > MAX_PARALLELISM) {
+            throw new IllegalArgumentException("parallelism must be 0 to " + MAX_PARALLELISM + ": " + parallelism);
+        }
+        int workers = parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        int partitions = Math.max(1, Math.min(workers, items.size()));
+        Object[][] sorted = new Object[partitions][];
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(workers, partitions)); // a worker without a partition would sit idle
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    RecursiveAction[] tasks = new RecursiveAction[partitions];
+                    for (int p = 0; p < partitions; p++) {
+                        final int partition = p;
+                        tasks[p] = new RecursiveAction() {
+                            @Override
+                            protected void compute() {
+                                int from = (int) ((long) items.size() * partition / partitions);
+                                int to = (int) ((long) items.size() * (partition + 1) / partitions);
+                                sorted[partition] = sortPartition(items.subList(from, to), comparator);
+                            }
+                        };
+                    }
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+
+        return merge(sorted, comparator);
+    }
+
+    /**
+     * Heapifies one partition and drains it into an array, greatest first.
+     */
+    private static <T> Object[] sortPartition(List<? extends T> partition, Comparator<? super T> comparator) {
+        ArrayHeap<T> heap = new ArrayHeap<T>(partition.size(), comparator);
+        heap.insertAll(partition);
+
+        Object[] result = new Object[partition.size()];
+        try {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = heap.extractMax();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // exactly size() items are extracted
+        }
+        return result;
+    }
+
+    /**
+     * k-way merge of the sorted partitions: the cursor heap always yields the partition with the greatest
+     * current item, and among equal items the earliest partition.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Iterator<T> merge(Object[][] sorted, Comparator<? super T> comparator) {
+        Comparator<T> order = comparator == null
+                ? (a, b) -> ((Comparable<? super T>) a).compareTo(b)
+                : (Comparator<T>) comparator;
+        ArrayHeap<Cursor> cursors = new ArrayHeap<>(sorted.length, (a, b) -> {
+            int result = order.compare((T) a.sorted[a.position], (T) b.sorted[b.position]);
+            return result != 0 ? result : Integer.compare(b.partition, a.partition);
+        });
+        for (int p = 0; p < sorted.length; p++) {
+            if (sorted[p].length > 0) {
+                cursors.insert(new Cursor(sorted[p], p));
+            }
+        }
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !cursors.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (cursors.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    Cursor cursor = cursors.extractMax();
+                    T item = (T) cursor.sorted[cursor.position];
+                    cursor.sorted[cursor.position] = null; // let merged items be collected as the output is consumed
+                    cursor.position++;
+                    if (cursor.position < cursor.sorted.length) {
+                        cursors.insert(cursor);
+                    }
+                    return item;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e); // the cursor heap was checked to be non-empty
+                }
+            }
+        };
+    }
+}
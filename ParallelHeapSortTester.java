@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+public class ParallelHeapSortTester {
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // Empty and single-item input, with every kind of parallelism
+        int[] parallelisms = {0, 1, 3, 64, ParallelHeapSort.MAX_PARALLELISM};
+        for (int parallelism : parallelisms) {
+            checkSameAsSequential(new ArrayList<>(), parallelism);
+            checkSameAsSequential(List.of("only"), parallelism);
+        }
+        System.out.println("empty and single-item input: ok");
+
+        // Random lines with many duplicates, from fewer items than workers to many items per worker
+        for (int round = 0; round < ROUNDS; round++) {
+            List<String> lines = new ArrayList<>();
+            for (int i = random.nextInt(round % 2 == 0 ? 40 : 2_000); i > 0; i--) {
+                lines.add(Integer.toString(random.nextInt(50)));
+            }
+            checkSameAsSequential(lines, parallelisms[round % parallelisms.length]);
+        }
+        System.out.println(ROUNDS + " random inputs against the sequential heap sort: ok");
+
+        // A comparator that ties distinguishable items still sorts by it (their relative order is not specified)
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            words.add("x".repeat(random.nextInt(10)) + i);
+        }
+        Comparator<String> byLength = Comparator.comparingInt(String::length);
+        List<String> sorted = drain(ParallelHeapSort.sort(words, byLength, 3));
+        if (!sameItems(sorted, words)) {
+            throw new AssertionError("sorting by a comparator lost or duplicated items");
+        }
+        for (int i = 1; i < sorted.size(); i++) {
+            if (byLength.compare(sorted.get(i - 1), sorted.get(i)) < 0) {
+                throw new AssertionError("comparator order broken at " + i + ": " + sorted.get(i - 1) + ", " + sorted.get(i));
+            }
+        }
+        System.out.println("custom comparator: ok");
+
+        // Parallelism out of range is rejected, and the iterator ends like any other
+        for (int parallelism : new int[] {-1, ParallelHeapSort.MAX_PARALLELISM + 1}) {
+            try {
+                ParallelHeapSort.sort(words, null, parallelism);
+                throw new AssertionError("parallelism " + parallelism + " was accepted");
+            } catch (IllegalArgumentException expected) {
+                // rejected before any worker starts
+            }
+        }
+        Iterator<String> exhausted = ParallelHeapSort.sort(List.of("a"), null, 2);
+        exhausted.next();
+        try {
+            exhausted.next();
+            throw new AssertionError("next() past the end returned an item");
+        } catch (NoSuchElementException expected) {
+            System.out.println("bad parallelism and exhausted iterator: ok");
+        }
+    }
+
+    /**
+     * The output must be exactly what a single-threaded heap sort of the same lines gives.
+     */
+    private static void checkSameAsSequential(List<String> lines, int parallelism) throws Exception {
+        Heap<String> heap = new Heap<>();
+        for (String line : lines) {
+            heap.insert(line);
+        }
+        List<String> expected = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            expected.add(heap.extractMax());
+        }
+        List<String> actual = drain(ParallelHeapSort.sort(lines, null, parallelism));
+        if (!actual.equals(expected)) {
+            throw new AssertionError(lines.size() + " lines with parallelism " + parallelism + " gave " + actual + ", expected " + expected);
+        }
+    }
+
+    private static List<String> drain(Iterator<String> sorted) {
+        List<String> result = new ArrayList<>();
+        sorted.forEachRemaining(result::add);
+        return result;
+    }
+
+    private static boolean sameItems(List<String> a, List<String> b) {
+        List<String> left = new ArrayList<>(a);
+        List<String> right = new ArrayList<>(b);
+        left.sort(null);
+        right.sort(null);
+        return left.equals(right);
+    }
+}
@@ -0,0 +1,124 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+public class PrimitiveHeapTester {
+    private static final int ROUNDS = 500;
+    private static final int STEADY_OPERATIONS = 1_000_000;
+    private static final double[] SPECIAL_DOUBLES = {
+        Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.0, -0.0,
+        Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE, -Double.MIN_VALUE
+    };
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // Random items (with duplicates and both extremes) drained against a sorted copy, from initial capacities
+        // below and above the item count so the array grows
+        for (int round = 0; round < ROUNDS; round++) {
+            int n = random.nextInt(300);
+            int capacity = random.nextInt(20);
+            int[] ints = new int[n];
+            long[] longs = new long[n];
+            double[] doubles = new double[n];
+            IntHeap intHeap = new IntHeap(capacity);
+            LongHeap longHeap = new LongHeap(capacity);
+            DoubleHeap doubleHeap = new DoubleHeap(capacity);
+            for (int i = 0; i < n; i++) {
+                ints[i] = random.nextInt(10) == 0 ? (random.nextBoolean() ? Integer.MIN_VALUE : Integer.MAX_VALUE) : random.nextInt(50) - 25;
+                longs[i] = random.nextInt(10) == 0 ? (random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE) : random.nextLong() >> random.nextInt(64);
+                doubles[i] = random.nextInt(4) == 0 ? SPECIAL_DOUBLES[random.nextInt(SPECIAL_DOUBLES.length)] : random.nextInt(20) - 10.5;
+                intHeap.insert(ints[i]);
+                longHeap.insert(longs[i]);
+                doubleHeap.insert(doubles[i]);
+            }
+            if (intHeap.size() != n || longHeap.size() != n || doubleHeap.size() != n) {
+                throw new AssertionError("sizes " + intHeap.size() + ", " + longHeap.size() + ", " + doubleHeap.size() + ", expected " + n);
+            }
+            int height = n == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(n);
+            if (intHeap.height() != height || longHeap.height() != height || doubleHeap.height() != height) {
+                throw new AssertionError("height of " + n + " items should be " + height);
+            }
+            Arrays.sort(ints);
+            Arrays.sort(longs);
+            Arrays.sort(doubles); // the same total order as Double.compare: -0.0 below 0.0, NaN above everything
+            for (int i = n - 1; i >= 0; i--) {
+                if (intHeap.extractMax() != ints[i]) {
+                    throw new AssertionError("IntHeap out of order at " + i);
+                }
+                if (longHeap.extractMax() != longs[i]) {
+                    throw new AssertionError("LongHeap out of order at " + i);
+                }
+                double item = doubleHeap.extractMax();
+                if (Double.compare(item, doubles[i]) != 0) {
+                    throw new AssertionError("DoubleHeap returned " + item + ", expected " + doubles[i]);
+                }
+            }
+            expectEmpty(intHeap::extractMax, "IntHeap");
+            expectEmpty(longHeap::extractMax, "LongHeap");
+            expectEmpty(doubleHeap::extractMax, "DoubleHeap");
+        }
+        System.out.println(ROUNDS + " random rounds against a sorted copy, with growth: ok");
+
+        // DoubleHeap drains in the same order as Heap<Double>, special values included
+        DoubleHeap doubleHeap = new DoubleHeap();
+        Heap<Double> boxed = new Heap<>();
+        for (int i = 0; i < 200; i++) {
+            double item = SPECIAL_DOUBLES[random.nextInt(SPECIAL_DOUBLES.length)];
+            doubleHeap.insert(item);
+            boxed.insert(item);
+        }
+        while (!boxed.isEmpty()) {
+            double expected = boxed.extractMax();
+            double actual = doubleHeap.extractMax();
+            if (Double.compare(actual, expected) != 0) {
+                throw new AssertionError("DoubleHeap returned " + actual + " where Heap<Double> returned " + expected);
+            }
+        }
+        System.out.println("DoubleHeap order matches Heap<Double> for NaN, -0.0, 0.0 and infinities: ok");
+
+        // Once the array has grown, insert + extractMax allocate nothing
+        IntHeap intHeap = new IntHeap();
+        LongHeap longHeap = new LongHeap();
+        doubleHeap = new DoubleHeap();
+        for (int i = 0; i < 10_000; i++) {
+            intHeap.insert(random.nextInt());
+            longHeap.insert(random.nextLong());
+            doubleHeap.insert(random.nextDouble());
+        }
+        for (int pass = 0; pass < 3; pass++) { // the first passes also warm up the JIT
+            long before = allocatedBytes();
+            for (int i = 0; i < STEADY_OPERATIONS; i++) {
+                intHeap.insert(intHeap.extractMax() ^ i);
+                longHeap.insert(longHeap.extractMax() ^ i);
+                doubleHeap.insert(doubleHeap.extractMax() * 0.5);
+            }
+            // reading the counter allocates a few hundred bytes itself, which rounds away over this many operations
+            long bytesPerOperation = (allocatedBytes() - before) / STEADY_OPERATIONS;
+            if (pass == 2 && bytesPerOperation != 0) {
+                throw new AssertionError(bytesPerOperation + " bytes allocated per steady-state insert + extractMax");
+            }
+        }
+        System.out.println("no allocation in steady-state insert + extractMax: ok");
+    }
+
+    private interface Extract {
+        Object run() throws Exception;
+    }
+
+    private static void expectEmpty(Extract extract, String name) {
+        try {
+            extract.run();
+            throw new AssertionError(name + " returned an item after it was drained");
+        } catch (AssertionError e) {
+            throw e;
+        } catch (Exception expected) {
+            // empty heap
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
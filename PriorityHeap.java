@@ -0,0 +1,162 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The operations shared by every heap backend, so that callers (such as HeapSorter)
+ * can swap one implementation for another without any other code changes.
+ * @param <T> : The type of item stored in the heap.
+ */
+public interface PriorityHeap<T> {
+
+    /**
+     * Inserts the given item into the heap.
+     * @param item : The item to insert into the heap.
+     */
+    void insert(T item);
+
+    /**
+     * Inserts every item in the collection. Backends that can build in bulk override this.
+     * @param items : The items to insert into the heap.
+     */
+    default void insertAll(Collection<? extends T> items) {
+        for (T item : items) {
+            insert(item);
+        }
+    }
+
+    /**
+     * Inserts len items of the array, starting at index off. Backends that can build in bulk override this
+     * and choose between a bottom-up rebuild and separate sift-ups by how big the batch is next to the heap.
+     * @param src : the array holding the items
+     * @param off : the index of the first item to insert
+     * @param len : the number of items to insert
+     */
+    default void insertBatch(T[] src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        for (int i = off; i < off + len; i++) {
+            insert(src[i]);
+        }
+    }
+
+    /**
+     * Removes up to n of the largest items and stores them in dst from index 0, largest first.
+     * Unlike calling extractMax in a loop, running out of items is not an error: fewer are returned.
+     * @param n : the most items to remove
+     * @param dst : the array to fill (at least n long)
+     * @return : the number of items removed, min(n, size())
+     */
+    default int extractTop(int n, T[] dst) {
+        checkBatch(n, dst);
+        int count = Math.min(n, size());
+        try {
+            for (int i = 0; i < count; i++) {
+                dst[i] = extractMax();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // only count = min(n, size()) items are extracted
+        }
+        return count;
+    }
+
+    /**
+     * Removes every item from the heap and adds them to the collection, largest first.
+     * @param dst : the collection to add the items to
+     * @return : the number of items moved
+     */
+    default int drainTo(Collection<? super T> dst) {
+        int count = size();
+        try {
+            for (int i = 0; i < count; i++) {
+                dst.add(extractMax());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // exactly size() items are extracted
+        }
+        return count;
+    }
+
+    /**
+     * Returns an iterator that removes and returns the maximum item each time next is called, so the
+     * first results are available after O(log n) work each instead of after draining the whole heap.
+     * The heap shrinks as the iterator advances; items inserted meanwhile are returned in their turn.
+     * @return : an iterator over the items from greatest to least that empties the heap as it goes
+     */
+    default Iterator<T> drainingIterator() {
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return extractMax();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e); // the heap was checked to be non-empty
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream that extracts items on demand (see drainingIterator), so
+     * heap.drainingStream().limit(10) only removes the 10 greatest items.
+     * @return : a stream of the items from greatest to least that empties the heap as it is consumed
+     */
+    default Stream<T> drainingStream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(drainingIterator(), Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Checks the arguments of extractTop.
+     * @param n : the most items to remove
+     * @param dst : the array to fill
+     */
+    static void checkBatch(int n, Object[] dst) {
+        if (n < 0 || n > dst.length) {
+            throw new IllegalArgumentException("n must be between 0 and dst.length (" + dst.length + "): " + n);
+        }
+    }
+
+    /**
+     * Returns the maximum item in the heap.
+     * @return : The maximum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    T findMax() throws Exception;
+
+    /**
+     * Removes the maximum item from this heap.
+     * @return : The maximum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    T extractMax() throws Exception;
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    int size();
+
+    /**
+     * Returns the number of levels in this heap (0 when there is a single item).
+     * @return : The number of levels in this heap.
+     */
+    int height();
+}
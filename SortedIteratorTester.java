@@ -0,0 +1,184 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class SortedIteratorTester {
+    private static final int ROUNDS = 300;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        // sortedIterator and sortedStream return the items in extraction order and leave the heap unchanged,
+        // for ArrayHeap (natural, MIN and comparator orderings) and Heap
+        Comparator<Integer> byLastDigit = Comparator.comparingInt((Integer item) -> Math.floorMod(item, 10)).thenComparing(item -> item);
+        for (int round = 0; round < ROUNDS; round++) {
+            int n = random.nextInt(round % 2 == 0 ? 10 : 500);
+            int range = 1 + random.nextInt(round % 3 == 0 ? 5 : 100_000);
+            List<Integer> items = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                items.add(random.nextInt(range) - range / 2);
+            }
+            checkSorted(new ArrayHeap<>(), items, Collections.reverseOrder());
+            checkSorted(new ArrayHeap<>(HeapOrder.MIN), items, Comparator.naturalOrder());
+            checkSorted(new ArrayHeap<>(byLastDigit), items, byLastDigit.reversed());
+            checkSorted(new Heap<>(), items, Collections.reverseOrder());
+        }
+        System.out.println(ROUNDS + " random heaps iterated in order without being changed: ok");
+
+        // Changing the heap under a sorted iterator makes its next call fail
+        checkModificationDetected(ArrayHeap::new);
+        checkModificationDetected(Heap::new);
+        System.out.println("ConcurrentModificationException after insert, extractMax, insertAll and extractTop: ok");
+
+        // The draining iterator and stream (PriorityHeap's defaults) remove exactly what they return
+        checkDraining(random, ArrayHeap::new);
+        checkDraining(random, Heap::new);
+        checkDraining(random, () -> new DaryHeap<>(4));
+        checkDraining(random, PairingHeap::new);
+        System.out.println("drainingIterator and drainingStream().limit(k): ok");
+
+        // ArrayHeap's frontier holds int indexes, so iterating boxes nothing: all it allocates is the frontier's array
+        ArrayHeap<Integer> large = new ArrayHeap<>();
+        for (int i = 0; i < 100_000; i++) {
+            large.insert(1_000 + random.nextInt(1 << 30)); // outside the Integer cache
+        }
+        for (int pass = 0; pass < 3; pass++) { // the first passes also warm up the JIT
+            long before = allocatedBytes();
+            long checksum = 0;
+            for (Iterator<Integer> iterator = large.sortedIterator(); iterator.hasNext(); ) {
+                checksum += iterator.next();
+            }
+            double bytesPerItem = (double) (allocatedBytes() - before) / large.size();
+            if (pass == 2 && bytesPerItem >= 8) {
+                throw new AssertionError("sortedIterator allocated " + bytesPerItem + " bytes per item (checksum " + checksum + ")");
+            }
+        }
+        System.out.println("ArrayHeap.sortedIterator does not box: ok");
+    }
+
+    private static void checkSorted(PriorityHeap<Integer> heap, List<Integer> items, Comparator<Integer> extractionOrder) throws Exception {
+        for (Integer item : items) {
+            heap.insert(item);
+        }
+        List<Integer> expected = new ArrayList<>(items);
+        expected.sort(extractionOrder);
+
+        List<Integer> iterated = new ArrayList<>();
+        Iterator<Integer> iterator = sortedIterator(heap);
+        while (iterator.hasNext()) {
+            iterated.add(iterator.next());
+        }
+        try {
+            iterator.next();
+            throw new AssertionError("next() past the end returned an item");
+        } catch (NoSuchElementException expectedEnd) {
+            // exhausted
+        }
+        List<Integer> streamed = (heap instanceof Heap ? ((Heap<Integer>) heap).sortedStream() : ((ArrayHeap<Integer>) heap).sortedStream())
+                .collect(Collectors.toList());
+        if (!iterated.equals(expected) || !streamed.equals(expected)) {
+            throw new AssertionError(heap.getClass().getName() + " iterated " + iterated + ", expected " + expected);
+        }
+
+        // the heap still holds everything and drains in the same order
+        if (heap.size() != items.size()) {
+            throw new AssertionError("iterating changed the size to " + heap.size());
+        }
+        List<Integer> drained = new ArrayList<>();
+        heap.drainTo(drained);
+        if (!drained.equals(expected)) {
+            throw new AssertionError("iterating damaged the heap: it drained as " + drained);
+        }
+    }
+
+    private static void checkModificationDetected(Supplier<PriorityHeap<Integer>> create) throws Exception {
+        for (int change = 0; change < 4; change++) {
+            PriorityHeap<Integer> heap = create.get();
+            for (int i = 0; i < 20; i++) {
+                heap.insert(i);
+            }
+            Iterator<Integer> iterator = sortedIterator(heap);
+            iterator.next();
+            String name;
+            switch (change) {
+                case 0:
+                    heap.insert(5);
+                    name = "insert";
+                    break;
+                case 1:
+                    heap.extractMax();
+                    name = "extractMax";
+                    break;
+                case 2:
+                    heap.insertAll(List.of(1, 2, 3));
+                    name = "insertAll";
+                    break;
+                default:
+                    heap.extractTop(2, new Integer[2]);
+                    name = "extractTop";
+                    break;
+            }
+            try {
+                iterator.next();
+                throw new AssertionError(heap.getClass().getName() + ": next() after " + name + " did not fail");
+            } catch (ConcurrentModificationException expected) {
+                // the iterator noticed
+            }
+        }
+    }
+
+    private static void checkDraining(Random random, Supplier<PriorityHeap<Integer>> create) throws Exception {
+        for (int round = 0; round < 50; round++) {
+            PriorityHeap<Integer> heap = create.get();
+            List<Integer> items = new ArrayList<>();
+            for (int i = random.nextInt(100); i > 0; i--) {
+                int item = random.nextInt(30);
+                heap.insert(item);
+                items.add(item);
+            }
+            items.sort(Collections.reverseOrder());
+            int k = random.nextInt(items.size() + 5);
+            List<Integer> top = heap.drainingStream().limit(k).collect(Collectors.toList());
+            int taken = Math.min(k, items.size());
+            if (!top.equals(items.subList(0, taken)) || heap.size() != items.size() - taken) {
+                throw new AssertionError(heap.getClass().getName() + ": limit(" + k + ") took " + top + " and left " + heap.size() + " items");
+            }
+
+            // an item inserted during the drain comes out in its turn
+            heap.insert(1_000);
+            List<Integer> rest = new ArrayList<>();
+            Iterator<Integer> draining = heap.drainingIterator();
+            while (draining.hasNext()) {
+                rest.add(draining.next());
+            }
+            List<Integer> expectedRest = new ArrayList<>(items.subList(taken, items.size()));
+            expectedRest.add(0, 1_000);
+            if (!rest.equals(expectedRest) || !heap.isEmpty()) {
+                throw new AssertionError(heap.getClass().getName() + ": drainingIterator returned " + rest + ", expected " + expectedRest);
+            }
+            try {
+                draining.next();
+                throw new AssertionError("next() on a drained heap returned an item");
+            } catch (NoSuchElementException expected) {
+                // empty
+            }
+        }
+    }
+
+    private static Iterator<Integer> sortedIterator(PriorityHeap<Integer> heap) {
+        return heap instanceof Heap ? ((Heap<Integer>) heap).sortedIterator() : ((ArrayHeap<Integer>) heap).sortedIterator();
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
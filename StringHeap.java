@@ -0,0 +1,548 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A max heap of Strings that orders them exactly as String.compareTo does, but compares most pairs
+ * without touching the strings at all.
+ * Next to every entry the heap keeps an 8-byte prefix key in a long[]. A sift compares two keys
+ * first and only looks at the strings themselves when the keys are equal. Lines such as log entries
+ * often all start the same way (a date, a host name), so the heap tracks the prefix that every line
+ * in it shares, and the key starts just after that prefix. The key holds the next 8 characters,
+ * one byte each, as long as they are ASCII (below U+007F). The first character that is not becomes
+ * the byte 0x7F, and the bytes after it are 0, as are the bytes after the end of a shorter string.
+ * So whenever two keys differ, the strings compare the same way. Equal keys only mean "compare the
+ * strings". The shared prefix can only get shorter while the heap has items. When an insert makes
+ * it shorter, every key is recomputed, which costs O(n). Without a limit that could happen once for
+ * each character of the tracked prefix (up to MAX_COMMON_PREFIX times). So every insert earns credit
+ * for REKEY_CREDIT entries, and a rekey is paid for out of it. A shrink the credit cannot cover drops
+ * the prefix to nothing in one last rekey, after which it cannot shrink again. All the rekeying
+ * therefore costs at most O(REKEY_CREDIT) per insert plus one O(n) pass. The prefix is tracked afresh
+ * once the heap has been emptied.
+ *
+ * In UTF-8 mode the heap does not keep String objects. Every line is encoded into one large byte[]
+ * and each entry is just an offset and a length into it, which saves the object header, the
+ * separate array and the reference for each line. Strings are only rebuilt when they are returned.
+ * Ties are broken by comparing the bytes directly (Arrays.mismatch), and UTF-16 order is restored
+ * for the one character where the two slices first differ. A lone surrogate, which UTF-8 cannot
+ * normally encode, is written as its 3-byte form (as WTF-8 does), so any String comes back unchanged.
+ * In this mode the shared prefix and the key are counted in bytes instead of characters.
+ * A non-ASCII byte becomes 0x7F exactly as a non-ASCII character does, so the keys stay correct.
+ * Bytes of extracted lines become garbage in the buffer. When the buffer fills up, it is copied into
+ * a new one holding only the live lines, so it never grows to more than about twice the live bytes.
+ */
+public class StringHeap implements PriorityHeap<String> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int DEFAULT_BUFFER_BYTES = 1 << 12;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // some VMs reserve header words in an array
+    private static final int SATURATED = 0x7F; // the key byte for the first character outside ASCII (or DEL)
+    private static final int MAX_COMMON_PREFIX = 256; // the longest shared prefix tracked
+    private static final int REKEY_CREDIT = 8; // the entries each insert may pay to rekey
+
+    private long[] prefixes; // the prefix key of each entry, in level order
+    private int currentSize;
+    private int commonPrefix; // the number of chars (bytes in UTF-8 mode) every entry starts with; keys begin after them
+    private char[] reference; // String mode: a copy of the common prefix (not the line, which may be far longer)
+    private byte[] referenceBytes; // UTF-8 mode: a copy of the common prefix
+    private long rekeyCredit; // the entries that can still be rekeyed before the common prefix is given up
+
+    // String mode: the entries themselves
+    private String[] strings;
+
+    // UTF-8 mode: each entry is buffer[offsets[i], offsets[i] + lengths[i])
+    private final boolean utf8;
+    private int[] offsets;
+    private int[] lengths;
+    private byte[] buffer;
+    private int bufferEnd; // the next free byte (everything from here on is unused)
+    private long liveBytes; // the bytes still used by entries in the heap
+
+    /**
+     * Construct a max heap that is initially empty and keeps each line as a String.
+     */
+    public StringHeap() {
+        this(false);
+    }
+
+    /**
+     * Construct a max heap that is initially empty.
+     * @param utf8 true to keep the lines as UTF-8 bytes in one shared buffer instead of as Strings
+     */
+    public StringHeap(boolean utf8) {
+        this.utf8 = utf8;
+        prefixes = new long[DEFAULT_CAPACITY];
+        if (utf8) {
+            offsets = new int[DEFAULT_CAPACITY];
+            lengths = new int[DEFAULT_CAPACITY];
+            buffer = new byte[DEFAULT_BUFFER_BYTES];
+        } else {
+            strings = new String[DEFAULT_CAPACITY];
+        }
+        currentSize = 0;
+    }
+
+    /**
+     * Returns the maximum item in the heap.
+     * @return : The maximum item in the heap.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public String findMax() throws Exception {
+        // if the heap has no items/is empty throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        return entryAt(0);
+    }
+
+    /**
+     * Removes the maximum item from this heap.
+     * @return : The maximum item, which was removed.
+     * @precondition : Heap is not empty.
+     */
+    @Override
+    public String extractMax() throws Exception {
+        // if the heap is empty then throw an exception
+        if (isEmpty()) {
+            throw new Exception();
+        }
+
+        String max = entryAt(0);
+        if (utf8) {
+            liveBytes -= lengths[0];
+        }
+        int last = --currentSize;
+
+        // the last entry fills the hole left at the root and is sifted down from there
+        if (last > 0) {
+            siftDown(0, prefixes[last], utf8 ? null : strings[last], utf8 ? offsets[last] : 0, utf8 ? lengths[last] : 0);
+        }
+        if (!utf8) {
+            strings[last] = null; // let the removed string be garbage collected
+        }
+        if (last == 0) {
+            // the next insert starts a new prefix, so the old one is no longer needed
+            reference = null;
+            referenceBytes = null;
+        }
+        return max;
+    }
+
+    /**
+     * Inserts the given item into the Heap.
+     * @param item : The item to insert into the heap.
+     */
+    @Override
+    public void insert(String item) {
+        if (item == null) {
+            throw new NullPointerException(); // as String.compareTo would when the item is first compared
+        }
+        if (currentSize == prefixes.length) {
+            grow();
+        }
+
+        if (utf8) {
+            int offset = encode(item);
+            int length = bufferEnd - offset;
+            liveBytes += length;
+            trackCommonPrefix(offset, length);
+            siftUp(currentSize, prefixOf(buffer, offset + commonPrefix, length - commonPrefix), null, offset, length);
+        } else {
+            trackCommonPrefix(item);
+            siftUp(currentSize, prefixOf(item, commonPrefix), item, 0, 0);
+        }
+        currentSize++;
+    }
+
+    /**
+     * Shortens the common prefix (String mode) to the part the new line shares, rekeying every entry if it changed.
+     * In an empty heap the new line's own first characters become the prefix.
+     */
+    private void trackCommonPrefix(String item) {
+        if (currentSize == 0) {
+            commonPrefix = Math.min(item.length(), MAX_COMMON_PREFIX);
+            reference = new char[commonPrefix];
+            item.getChars(0, commonPrefix, reference, 0);
+            rekeyCredit = 0;
+            return;
+        }
+        rekeyCredit += REKEY_CREDIT;
+        int limit = Math.min(commonPrefix, item.length());
+        int shared = 0;
+        while (shared < limit && item.charAt(shared) == reference[shared]) {
+            shared++;
+        }
+        if (shared < commonPrefix) {
+            commonPrefix = affordableRekey(shared);
+            for (int i = 0; i < currentSize; i++) {
+                prefixes[i] = prefixOf(strings[i], commonPrefix);
+            }
+        }
+    }
+
+    /**
+     * The UTF-8 mode version of trackCommonPrefix, for the line just appended to the buffer.
+     */
+    private void trackCommonPrefix(int offset, int length) {
+        if (currentSize == 0) {
+            commonPrefix = Math.min(length, MAX_COMMON_PREFIX);
+            referenceBytes = Arrays.copyOfRange(buffer, offset, offset + commonPrefix);
+            rekeyCredit = 0;
+            return;
+        }
+        rekeyCredit += REKEY_CREDIT;
+        int limit = Math.min(commonPrefix, length);
+        int shared = Arrays.mismatch(buffer, offset, offset + limit, referenceBytes, 0, limit);
+        if (shared < 0) {
+            shared = limit;
+        }
+        if (shared < commonPrefix) {
+            commonPrefix = affordableRekey(shared);
+            for (int i = 0; i < currentSize; i++) {
+                prefixes[i] = prefixOf(buffer, offsets[i] + commonPrefix, lengths[i] - commonPrefix);
+            }
+        }
+    }
+
+    /**
+     * Pays for rekeying every entry out of the insert credit.
+     * @param shared the prefix the new line shares with the entries
+     * @return : shared if the credit covers the rekey, otherwise 0 (the prefix is given up, so it never shrinks again)
+     */
+    private int affordableRekey(int shared) {
+        if (rekeyCredit < currentSize) {
+            return 0;
+        }
+        rekeyCredit -= currentSize;
+        return shared;
+    }
+
+    /**
+     * Moves a hole up from the given index until the entry fits, then places the entry there.
+     * In String mode the entry is string; in UTF-8 mode it is the slice at offset (string is null).
+     */
+    private void siftUp(int index, long key, String string, int offset, int length) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            // stop once the parent is at least as large
+            if (compareTo(key, string, offset, length, parent) <= 0) {
+                break;
+            }
+            move(parent, index); // pull the parent down into the hole
+            index = parent;
+        }
+        place(index, key, string, offset, length);
+    }
+
+    /**
+     * Moves a hole down from the given index until the entry fits, then places the entry there.
+     */
+    private void siftDown(int index, long key, String string, int offset, int length) {
+        int size = currentSize;
+        int half = size >>> 1; // entries at or past this index are leaves
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            // pick the larger of the two children
+            if (right < size && compareEntries(right, child) > 0) {
+                child = right;
+            }
+            // stop once the entry is at least as large as both children
+            if (compareTo(key, string, offset, length, child) >= 0) {
+                break;
+            }
+            move(child, index); // pull the child up into the hole
+            index = child;
+        }
+        place(index, key, string, offset, length);
+    }
+
+    private void move(int from, int to) {
+        prefixes[to] = prefixes[from];
+        if (utf8) {
+            offsets[to] = offsets[from];
+            lengths[to] = lengths[from];
+        } else {
+            strings[to] = strings[from];
+        }
+    }
+
+    private void place(int index, long key, String string, int offset, int length) {
+        prefixes[index] = key;
+        if (utf8) {
+            offsets[index] = offset;
+            lengths[index] = length;
+        } else {
+            strings[index] = string;
+        }
+    }
+
+    /**
+     * Compares an entry that is not in the arrays (being sifted) with the entry at index.
+     * @return : a positive number if the entry is greater, a negative number if it is smaller, 0 if they are equal
+     */
+    private int compareTo(long key, String string, int offset, int length, int index) {
+        long otherKey = prefixes[index];
+        if (key != otherKey) {
+            return key < otherKey ? -1 : 1; // keys never have the sign bit set, so a signed compare is fine
+        }
+        if (utf8) {
+            return compareSlices(offset, length, offsets[index], lengths[index]);
+        }
+        return string.compareTo(strings[index]);
+    }
+
+    private int compareEntries(int a, int b) {
+        return compareTo(prefixes[a], utf8 ? null : strings[a], utf8 ? offsets[a] : 0, utf8 ? lengths[a] : 0, b);
+    }
+
+    /**
+     * Compares two lines in the buffer the way String.compareTo compares the Strings they encode.
+     * UTF-8 bytes sort in code point order, which is the same as UTF-16 order except that UTF-16 puts
+     * supplementary characters (as surrogate pairs starting 0xD800-0xDBFF) before U+E000-U+FFFF. So
+     * only the first character that differs needs to be decoded.
+     */
+    private int compareSlices(int offsetA, int lengthA, int offsetB, int lengthB) {
+        int common = Math.min(lengthA, lengthB);
+        int skip = commonPrefix; // both lines start with these bytes
+        int i = Arrays.mismatch(buffer, offsetA + skip, offsetA + common, buffer, offsetB + skip, offsetB + common);
+        if (i < 0) {
+            // one line is a prefix of the other, so the shorter one is smaller
+            return lengthA - lengthB;
+        }
+        i += skip;
+
+        // back up to the first byte of the character that differs (the bytes before i are the same in both)
+        while (i > 0 && (buffer[offsetA + i] & 0xC0) == 0x80) {
+            i--;
+        }
+        int a = codePointAt(offsetA + i);
+        int b = codePointAt(offsetB + i);
+        char unitA = a >= Character.MIN_SUPPLEMENTARY_CODE_POINT ? Character.highSurrogate(a) : (char) a;
+        char unitB = b >= Character.MIN_SUPPLEMENTARY_CODE_POINT ? Character.highSurrogate(b) : (char) b;
+        if (unitA != unitB) {
+            return unitA - unitB;
+        }
+        if (a >= Character.MIN_SUPPLEMENTARY_CODE_POINT && b >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            return Character.lowSurrogate(a) - Character.lowSurrogate(b);
+        }
+        // a lone high surrogate against a pair that starts with the same unit: compare the Strings themselves
+        return decode(offsetA, lengthA).compareTo(decode(offsetB, lengthB));
+    }
+
+    /**
+     * Decodes the character that starts at the given byte of the buffer.
+     */
+    private int codePointAt(int index) {
+        int lead = buffer[index] & 0xFF;
+        if (lead < 0x80) {
+            return lead;
+        }
+        if (lead < 0xE0) {
+            return (lead & 0x1F) << 6 | (buffer[index + 1] & 0x3F);
+        }
+        if (lead < 0xF0) {
+            return (lead & 0x0F) << 12 | (buffer[index + 1] & 0x3F) << 6 | (buffer[index + 2] & 0x3F);
+        }
+        return (lead & 0x07) << 18 | (buffer[index + 1] & 0x3F) << 12 | (buffer[index + 2] & 0x3F) << 6 | (buffer[index + 3] & 0x3F);
+    }
+
+    /**
+     * Returns the prefix key of a String: the 8 characters from index from on, one byte each, as described above.
+     * @param s the string
+     * @param from the index of the first character in the key
+     * @return : the key (never negative)
+     */
+    static long prefixOf(String s, int from) {
+        long key = 0;
+        int count = 0;
+        int end = Math.min(s.length() - from, 8);
+        while (count < end) {
+            char c = s.charAt(from + count++);
+            if (c >= SATURATED) {
+                key = key << 8 | SATURATED; // nothing after this character can be in the key
+                break;
+            }
+            key = key << 8 | c;
+        }
+        return count == 0 ? 0 : key << (8 * (8 - count)); // the bytes past the end are 0
+    }
+
+    /**
+     * Returns the prefix key of UTF-8 bytes: up to 8 of them, with the same rule as for characters
+     * (every byte of a non-ASCII character is 0x80 or more, so the first one ends the key).
+     * @param bytes the array holding the bytes
+     * @param from the index of the first byte in the key
+     * @param length the number of bytes from there to the end of the line
+     * @return : the key (never negative)
+     */
+    static long prefixOf(byte[] bytes, int from, int length) {
+        long key = 0;
+        int count = 0;
+        int end = Math.min(length, 8);
+        while (count < end) {
+            int b = bytes[from + count++] & 0xFF;
+            if (b >= SATURATED) {
+                key = key << 8 | SATURATED;
+                break;
+            }
+            key = key << 8 | b;
+        }
+        return count == 0 ? 0 : key << (8 * (8 - count));
+    }
+
+    /**
+     * Appends the UTF-8 form of s to the buffer, growing or compacting it first if needed.
+     * @return : the offset of the first byte written (bufferEnd is moved past the last one)
+     */
+    private int encode(String s) {
+        int length = s.length();
+        if ((long) bufferEnd + 3L * length > buffer.length) {
+            growBuffer(3L * length); // a char never takes more than 3 bytes (a surrogate pair takes 4 for 2 chars)
+        }
+
+        byte[] bytes = buffer;
+        int start = bufferEnd;
+        int position = start;
+        int i = 0;
+        // most lines are all ASCII, so copy those characters in a tight loop first
+        while (i < length) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            bytes[position++] = (byte) c;
+            i++;
+        }
+        while (i < length) {
+            char c = s.charAt(i++);
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | c >> 6);
+                bytes[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(s.charAt(i))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(i++));
+                bytes[position++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                // the rest of the BMP, including lone surrogates, takes 3 bytes
+                bytes[position++] = (byte) (0xE0 | c >> 12);
+                bytes[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        bufferEnd = position;
+        return start;
+    }
+
+    /**
+     * Turns a line in the buffer back into a String.
+     */
+    private String decode(int offset, int length) {
+        byte[] bytes = buffer;
+        int end = offset + length;
+        int i = offset;
+        while (i < end && bytes[i] >= 0) {
+            i++;
+        }
+        if (i == end) {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1); // all ASCII: one copy, no decoding
+        }
+
+        char[] chars = new char[length]; // never more UTF-16 units than UTF-8 bytes
+        int count = 0;
+        for (i = offset; i < end; ) {
+            int codePoint = codePointAt(i);
+            int lead = bytes[i] & 0xFF;
+            i += lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+            count += Character.toChars(codePoint, chars, count);
+        }
+        return new String(chars, 0, count);
+    }
+
+    private String entryAt(int index) {
+        return utf8 ? decode(offsets[index], lengths[index]) : strings[index];
+    }
+
+    /**
+     * Doubles the entry arrays (geometric growth keeps insert amortized O(1) apart from sifting).
+     */
+    private void grow() {
+        int oldCapacity = prefixes.length;
+        if (oldCapacity == MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap capacity exceeded");
+        }
+        int newCapacity = oldCapacity > MAX_CAPACITY / 2 ? MAX_CAPACITY : oldCapacity * 2;
+        prefixes = Arrays.copyOf(prefixes, newCapacity);
+        if (utf8) {
+            offsets = Arrays.copyOf(offsets, newCapacity);
+            lengths = Arrays.copyOf(lengths, newCapacity);
+        } else {
+            strings = Arrays.copyOf(strings, newCapacity);
+        }
+    }
+
+    /**
+     * Replaces the buffer with one that holds just the live lines plus room for at least needed more bytes,
+     * leaving behind the bytes of every extracted line. The lines are copied in level order.
+     * @param needed the number of bytes about to be appended
+     */
+    private void growBuffer(long needed) {
+        long wanted = Math.max(2 * (liveBytes + needed), DEFAULT_BUFFER_BYTES);
+        if (liveBytes + needed > MAX_CAPACITY) {
+            throw new OutOfMemoryError("Heap buffer capacity exceeded");
+        }
+        byte[] compacted = new byte[(int) Math.min(wanted, MAX_CAPACITY)];
+        int position = 0;
+        for (int i = 0; i < currentSize; i++) {
+            System.arraycopy(buffer, offsets[i], compacted, position, lengths[i]);
+            offsets[i] = position;
+            position += lengths[i];
+        }
+        buffer = compacted;
+        bufferEnd = position;
+    }
+
+    /**
+     * Returns whether the lines are kept as UTF-8 bytes rather than as Strings.
+     * @return : true in UTF-8 mode
+     */
+    public boolean isUtf8() {
+        return utf8;
+    }
+
+    /**
+     * Returns whether or not the heap is empty.
+     * @return : true if heap is empty and false otherwise.
+     */
+    @Override
+    public boolean isEmpty() {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of items stored in this heap.
+     * @return : the number of items stored in this heap.
+     */
+    @Override
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Returns the number of levels in this heap.
+     * @return : The number of levels in this heap.
+     */
+    @Override
+    public int height() {
+        // the heap is a complete binary tree, so its height is floor(log2(size))
+        if (currentSize == 0) {
+            return 0;
+        }
+        return 31 - Integer.numberOfLeadingZeros(currentSize);
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+public class StringHeapTester {
+    private static final int ROUNDS = 300;
+
+    // building blocks for the random lines: ASCII on both sides of the key's cut-off (0x7F), 2- and 3-byte
+    // UTF-8 characters, a surrogate pair, lone high and low surrogates (WTF-8 in UTF-8 mode) and U+FFFF,
+    // which sorts above every surrogate in UTF-16 but below the pair's code point in UTF-8
+    private static final String[] PIECES = {
+            "a", "b", "z", "~", String.valueOf((char) 0x7F), "\u00e9", "\u0800", "\u20ac",
+            new String(Character.toChars(0x1F600)), String.valueOf((char) 0xD800), String.valueOf((char) 0xDBFF),
+            String.valueOf((char) 0xDC00), String.valueOf((char) 0xDFFF), String.valueOf((char) 0xFFFF)
+    };
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42);
+
+        for (boolean utf8 : new boolean[] {false, true}) {
+            String mode = utf8 ? "UTF-8 " : "String";
+
+            // Lines sharing a prefix longer than the tracked maximum, which differ only after it
+            String longPrefix = repeat("2024-01-01T00:00:00.000 host-01 ", 10); // 320 chars
+            ArrayList<String> lines = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                lines.add(longPrefix + randomLine(random, 20));
+            }
+            checkOrder(mode + " shared prefix past the tracked maximum", utf8, lines);
+
+            // Lines equal for well past the 8-byte key after the common prefix, so every tie goes to the strings
+            lines.clear();
+            for (int i = 0; i < 2_000; i++) {
+                lines.add("prefix " + repeat("k", 8 + random.nextInt(16)) + randomLine(random, 6));
+            }
+            checkOrder(mode + " ties broken past the 8-byte key", utf8, lines);
+
+            // A common prefix that shrinks one step at a time: each insert shares less with the earlier lines
+            lines.clear();
+            String base = repeat("abcdefgh", 40);
+            for (int cut = base.length(); cut >= 0; cut--) {
+                lines.add(base.substring(0, cut) + "!" + randomLine(random, 4));
+                lines.add(base.substring(0, cut) + randomLine(random, 4));
+            }
+            checkOrder(mode + " common prefix shrinking on every insert (rekeying)", utf8, lines);
+
+            // Non-ASCII text, surrogate pairs and lone surrogates everywhere, with and without a shared prefix
+            lines.clear();
+            for (int i = 0; i < 2_000; i++) {
+                lines.add(randomLine(random, 12));
+                lines.add("\u00e9t\u00e9 " + randomLine(random, 12));
+            }
+            checkOrder(mode + " non-ASCII text and unpaired surrogates", utf8, lines);
+
+            // The empty string and lines that are prefixes of each other
+            lines.clear();
+            for (String piece : PIECES) {
+                lines.add("");
+                lines.add(piece);
+                lines.add(piece + piece);
+                lines.add("x" + piece);
+            }
+            checkOrder(mode + " empty lines and lines that are prefixes of others", utf8, lines);
+
+            // Random mixes of inserts and extractions, draining to empty now and then so the prefix is tracked afresh
+            for (int round = 0; round < ROUNDS; round++) {
+                StringHeap heap = new StringHeap(utf8);
+                ArrayList<String> reference = new ArrayList<>();
+                String shared = round % 2 == 0 ? "" : repeat(PIECES[random.nextInt(PIECES.length)], random.nextInt(20));
+                int operations = random.nextInt(300);
+                for (int op = 0; op < operations; op++) {
+                    if (reference.isEmpty() || random.nextInt(3) != 0) {
+                        String line = shared + randomLine(random, random.nextInt(30));
+                        heap.insert(line);
+                        reference.add(line);
+                    } else {
+                        expectNext(heap, reference);
+                    }
+                }
+                while (!reference.isEmpty()) {
+                    expectNext(heap, reference);
+                }
+                if (!heap.isEmpty()) {
+                    throw new AssertionError(mode + " heap should be empty, size " + heap.size());
+                }
+            }
+            System.out.println(mode + " " + ROUNDS + " random insert/extractMax rounds: ok");
+        }
+    }
+
+    /**
+     * Inserts every line, then checks that they come out exactly as String.compareTo orders them (largest first).
+     */
+    private static void checkOrder(String label, boolean utf8, ArrayList<String> lines) throws Exception {
+        ArrayList<String> shuffled = new ArrayList<>(lines);
+        Collections.shuffle(shuffled, new Random(lines.size()));
+        StringHeap heap = new StringHeap(utf8);
+        for (String line : shuffled) {
+            heap.insert(line);
+        }
+        ArrayList<String> expected = new ArrayList<>(lines);
+        expected.sort(Collections.reverseOrder());
+        for (int i = 0; i < expected.size(); i++) {
+            String actual = heap.extractMax();
+            if (!actual.equals(expected.get(i))) {
+                throw new AssertionError(label + ": extraction " + i + " returned " + escape(actual) + ", expected " + escape(expected.get(i)));
+            }
+        }
+        if (!heap.isEmpty()) {
+            throw new AssertionError(label + ": heap should be empty, size " + heap.size());
+        }
+        System.out.println(label + ": ok");
+    }
+
+    /**
+     * Extracts the maximum and checks it (and the size) against the largest line in the reference.
+     */
+    private static void expectNext(StringHeap heap, ArrayList<String> reference) throws Exception {
+        String expected = Collections.max(reference);
+        reference.remove(expected);
+        String actual = heap.extractMax();
+        if (!actual.equals(expected)) {
+            throw new AssertionError("extractMax returned " + escape(actual) + ", expected " + escape(expected));
+        }
+        if (heap.size() != reference.size()) {
+            throw new AssertionError("size " + heap.size() + ", expected " + reference.size());
+        }
+    }
+
+    private static String randomLine(Random random, int pieces) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            // mostly ASCII, as real lines are, so the keys decide many comparisons and the fallbacks still get hit
+            line.append(random.nextInt(3) == 0 ? PIECES[random.nextInt(PIECES.length)] : PIECES[random.nextInt(4)]);
+        }
+        return line.toString();
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(s);
+        }
+        return repeated.toString();
+    }
+
+    /**
+     * Shows non-ASCII characters as \\uXXXX, so a failure message can be read whatever the terminal.
+     */
+    private static String escape(String s) {
+        StringBuilder escaped = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            escaped.append(c >= 0x20 && c < 0x7F ? String.valueOf(c) : String.format("\\u%04x", (int) c));
+        }
+        return escaped.append('"').toString();
+    }
+}
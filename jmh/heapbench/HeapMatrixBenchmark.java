@@ -0,0 +1,78 @@
+package heapbench;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The HeapBenchmark matrix under JMH. Each invocation times one whole operation over the cell's data (for example,
+ * inserting every item into an empty heap), and the setup before it is not timed. Results are reported as time per
+ * invocation, with the same cells HeapBenchmark runs. Narrow the matrix with -p, for example:
+ *   mvn -P jmh package
+ *   java -Xms4g -Xmx4g -jar target/benchmarks.jar -p size=1000000 -p backend=linked -p operation=insert -prof gc
+ *
+ * The heap classes live in the default package, which JMH cannot generate code for (and a named package cannot
+ * import), so the cell is looked up once per trial through HeapBenchmark.matrixInvocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class HeapMatrixBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"Integer", "String"})
+    public String type;
+
+    @Param({"random", "sorted", "reverse"})
+    public String order;
+
+    @Param({"linked", "array"})
+    public String backend;
+
+    @Param({"insert", "extractMax", "findMax", "height", "bulk", "insertBatch", "extractTop", "sorter"})
+    public String operation;
+
+    private Callable<Callable<Long>> invocations;
+    private Callable<Long> body;
+
+    @Setup(Level.Trial)
+    public void lookUpCell() throws Exception {
+        Method factory = Class.forName("HeapBenchmark").getDeclaredMethod("matrixInvocations",
+                int.class, String.class, String.class, String.class, String.class);
+        factory.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        Callable<Callable<Long>> cell = (Callable<Callable<Long>>) factory.invoke(null, size, type, order, backend, operation);
+        if (cell == null) {
+            throw new IllegalArgumentException(operation + " does not apply to " + type); // JMH reports it and moves on to the next cell
+        }
+        invocations = cell;
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() throws Exception {
+        body = invocations.call();
+    }
+
+    @Benchmark
+    public long run() throws Exception {
+        return body.call();
+    }
+}